@@ -0,0 +1,136 @@
+package com.livingobjects.neo4j;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.livingobjects.neo4j.loader.Action;
+import com.livingobjects.neo4j.loader.BulkDeleter;
+import com.livingobjects.neo4j.loader.ScopeAdmission;
+import com.livingobjects.neo4j.model.result.BulkDeleteResult;
+import com.livingobjects.neo4j.model.result.Neo4jErrorResult;
+import com.livingobjects.neo4j.schema.SchemaMetadataService;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Deletes the elements whose tags are posted, one per line, and their children according to the given {@link Action}.
+ * Answers in newline delimited JSON : {@code {"deleted":..., "total":...}} after each committed transaction, then
+ * {@code {"result":...}}, or {@code {"error":...}} when the deletion fails.
+ */
+@Path("/bulk-delete")
+public final class BulkDeleteExtension {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final String PARAM_ACTION = "action";
+    private static final String PARAM_SCOPE_TAG = "scopeTag";
+
+    private final GraphDatabaseService graphDb;
+    private final SchemaMetadataService schemaMetadataService;
+    private final ScopeAdmission scopeAdmission;
+    private final Log log;
+
+    public BulkDeleteExtension(@Context DatabaseManagementService dbms, @Context Log log) {
+        this.graphDb = dbms.database(dbms.listDatabases().get(0));
+        this.schemaMetadataService = SchemaMetadataService.of(dbms, graphDb);
+        this.scopeAdmission = ScopeAdmission.of(graphDb);
+        this.log = log;
+    }
+
+    @POST
+    @Consumes({MediaType.TEXT_PLAIN})
+    public Response delete(@QueryParam(PARAM_ACTION) String strAction,
+                           @QueryParam(PARAM_SCOPE_TAG) String scopeTag,
+                           @QueryParam(LoadCSVExtension.PARAM_SCOPE) List<String> scopes,
+                           InputStream is) throws IOException {
+        try {
+            Action action = strAction == null ? Action.DELETE_NO_CASCADE : Action.fromString(strAction)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown action : " + strAction));
+            Set<String> tags = readTags(is);
+            if (scopeTag != null) {
+                tags.add(scopeTag);
+            }
+            // The deletion of a scope holds it, the other deletions only hold the stated scopes
+            List<String> admittedScopes = scopeTag == null ? scopes : ImmutableList.<String>builder().addAll(scopes).add(scopeTag).build();
+
+            StreamingOutput stream = outputStream -> {
+                try (ScopeAdmission.Permit ignored = scopeAdmission.admit(admittedScopes);
+                     JsonGenerator generator = JSON_MAPPER.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+                    generator.setRootValueSeparator(null);
+                    try {
+                        BulkDeleteResult result = new BulkDeleter(graphDb, schemaMetadataService.get(), log)
+                                .delete(tags, action, (deleted, total) -> progress(generator, deleted, total));
+                        writeLine(generator, "result", result);
+                    } catch (RuntimeException e) {
+                        // The answer has started, the failure can only end the stream
+                        log.error("Bulk delete of " + tags.size() + " tag(s) failed.", e);
+                        writeLine(generator, "error", new Neo4jErrorResult(e.getClass().getName(), e.getMessage()));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the scopes " + admittedScopes);
+                }
+            };
+            return Response.ok().entity(stream).type(LoadCSVExtension.APPLICATION_NDJSON).build();
+        } catch (IllegalArgumentException e) {
+            String ex = JSON_MAPPER.writeValueAsString(new Neo4jErrorResult(e.getClass().getSimpleName(), e.getLocalizedMessage()));
+            return Response.status(Status.BAD_REQUEST).entity(ex).type(MediaType.APPLICATION_JSON_TYPE).build();
+        }
+    }
+
+    private static Set<String> readTags(InputStream is) throws IOException {
+        Set<String> tags = Sets.newLinkedHashSet();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String tag = line.trim();
+                if (!tag.isEmpty()) {
+                    tags.add(tag);
+                }
+            }
+        }
+        return tags;
+    }
+
+    private static void writeLine(JsonGenerator generator, String field, Object value) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(field);
+        JSON_MAPPER.writeValue(generator, value);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void progress(JsonGenerator generator, int deleted, int total) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("deleted", deleted);
+            generator.writeNumberField("total", total);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
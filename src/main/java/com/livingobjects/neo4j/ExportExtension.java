@@ -38,6 +38,8 @@ import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
 import com.livingobjects.neo4j.model.iwan.Labels;
 import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
 import com.livingobjects.neo4j.model.result.Neo4jErrorResult;
+import com.livingobjects.neo4j.schema.SchemaMetadata;
+import com.livingobjects.neo4j.schema.SchemaMetadataService;
 import com.opencsv.CSVWriter;
 import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.graphdb.Direction;
@@ -111,12 +113,11 @@ public final class ExportExtension {
 
     public ExportExtension(@Context DatabaseManagementService dbms, @Context Log log) {
         this.graphDb = dbms.database(dbms.listDatabases().get(0));
-        this.templatedPlanetFactory = new TemplatedPlanetFactory(graphDb);
+        SchemaMetadata schemaMetadata = SchemaMetadataService.of(dbms, graphDb).get();
+        this.templatedPlanetFactory = new TemplatedPlanetFactory(graphDb, schemaMetadata.planetTemplates);
         this.planetFactory = new PlanetFactory(graphDb);
         this.log = log;
-        try (Transaction tx = graphDb.beginTx()) {
-            this.metaSchema = new MetaSchema(tx);
-        }
+        this.metaSchema = schemaMetadata.metaSchema;
     }
 
     @GET
@@ -345,14 +346,12 @@ public final class ExportExtension {
 
     private PaginatedLineages extract(FullQuery initQuery) {
         try (Transaction tx = graphDb.beginTx()) {
-            MetaSchema metaSchema = new MetaSchema(tx);
-
             // to be sure we isolate scopes, always add a filter on scope for each individual query
             List<ExportQuery> queriesWithScopeFilter = initQuery.exportQueries.stream()
                     .map(q -> {
                         // any requiredAttributes is neither global or sp
                         boolean isClientScope = q.requiredAttributes.stream()
-                                .map(attr -> metaSchema.getAuthorizedScopes(tx, attr))
+                                .map(attr -> metaSchema.getAuthorizedScopes(attr))
                                 .anyMatch(scope -> !scope.contains(SCOPE_GLOBAL_ATTRIBUTE));
                         if (q.scopes.isEmpty() || !isClientScope) {
                             return q;
@@ -744,7 +743,7 @@ public final class ExportExtension {
             // check if previousRel is satisfied
             previousRel.ifPresent(pair -> {
                 String destType = pair.first.direction == INCOMING ? pair.second.originType : pair.second.destinationType;
-                ImmutableList<ImmutableList<String>> upwardPaths = metaSchema.getUpwardPath(tx, nodeType, destType);
+                ImmutableList<ImmutableList<String>> upwardPaths = metaSchema.getUpwardPath(nodeType, destType);
                 AtomicBoolean relRes = new AtomicBoolean(false);
                 for (ImmutableList<String> path : upwardPaths) {
                     Optional<Node> optParent = getNodeFromPath(node, path);
@@ -758,7 +757,7 @@ public final class ExportExtension {
             // check if nextRel is satisfied
             nextRel.ifPresent(pair -> {
                 String destType = pair.first.direction == INCOMING ? pair.second.destinationType : pair.second.originType;
-                ImmutableList<ImmutableList<String>> upwardPaths = metaSchema.getUpwardPath(tx, nodeType, destType);
+                ImmutableList<ImmutableList<String>> upwardPaths = metaSchema.getUpwardPath(nodeType, destType);
                 AtomicBoolean relRes = new AtomicBoolean(false);
                 for (ImmutableList<String> path : upwardPaths) {
                     Optional<Node> optParent = getNodeFromPath(node, path);
@@ -896,7 +895,7 @@ public final class ExportExtension {
 
     private Lineages initLineages(ExportQuery exportQuery, Set<String> commonChildren,
                                   ImmutableList<String> relAttrToExport, Transaction tx) {
-        return new Lineages(tx, metaSchema, exportQuery, commonChildren, relAttrToExport);
+        return new Lineages(metaSchema, exportQuery, commonChildren, relAttrToExport);
     }
 
     private Set<Lineage> rewindLineage(Node currentNode, Lineages lineages) {
@@ -0,0 +1,35 @@
+package com.livingobjects.neo4j;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.livingobjects.neo4j.loader.ScopeAdmission;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+
+/**
+ * The imports running and waiting on each client scope, see {@link ScopeAdmission}.
+ */
+@Path("/import-admission")
+public final class ImportAdmissionExtension {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final ScopeAdmission scopeAdmission;
+
+    public ImportAdmissionExtension(@Context DatabaseManagementService dbms) {
+        GraphDatabaseService graphDb = dbms.database(dbms.listDatabases().get(0));
+        this.scopeAdmission = ScopeAdmission.of(graphDb);
+    }
+
+    @GET
+    public Response status() throws IOException {
+        String json = JSON_MAPPER.writeValueAsString(scopeAdmission.status());
+        return Response.ok().entity(json).type(MediaType.APPLICATION_JSON).build();
+    }
+}
@@ -0,0 +1,176 @@
+package com.livingobjects.neo4j;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.livingobjects.neo4j.loader.CsvImportOptions;
+import com.livingobjects.neo4j.loader.CsvTopologyLoader;
+import com.livingobjects.neo4j.loader.ImportJob;
+import com.livingobjects.neo4j.loader.ImportJobs;
+import com.livingobjects.neo4j.loader.ScopeAdmission;
+import com.livingobjects.neo4j.model.result.ImportJobStatus;
+import com.livingobjects.neo4j.model.result.Neo4jErrorResult;
+import com.livingobjects.neo4j.model.result.Neo4jLoadResult;
+import com.livingobjects.neo4j.schema.SchemaMetadataService;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_ADAPTIVE_BATCH_SIZE;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_BATCH_SIZE;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_CHARSET;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_COMPRESSION;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_DRY_RUN;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_ISOLATE_FAILURES;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_MAX_ERRORS;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_RESULT_MODE;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_SCOPE;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_SCOPE_WRITERS;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_SKIP_UNCHANGED;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_TOKENIZER;
+import static com.livingobjects.neo4j.LoadCSVExtension.PARAM_UPLOAD_ID;
+
+/**
+ * Same import as {@link LoadCSVExtension}, run in background : the submission returns the id of the job, which can then
+ * be followed, cancelled and its report read once finished.
+ */
+@Path("/import-jobs")
+public final class ImportJobExtension {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final GraphDatabaseService graphDb;
+    private final SchemaMetadataService schemaMetadataService;
+    private final ImportJobs importJobs;
+    private final ScopeAdmission scopeAdmission;
+    private final Log log;
+
+    public ImportJobExtension(@Context DatabaseManagementService dbms, @Context Log log) {
+        this.graphDb = dbms.database(dbms.listDatabases().get(0));
+        this.schemaMetadataService = SchemaMetadataService.of(dbms, graphDb);
+        this.importJobs = ImportJobs.of(graphDb);
+        this.scopeAdmission = ScopeAdmission.of(graphDb);
+        this.log = log;
+    }
+
+    @POST
+    @Consumes({MediaType.APPLICATION_OCTET_STREAM})
+    public Response submit(@HeaderParam("X-User") String username,
+                           @HeaderParam(HttpHeaders.CONTENT_ENCODING) String contentEncoding,
+                           @QueryParam(PARAM_ISOLATE_FAILURES) String strIsolateFailures,
+                           @QueryParam(PARAM_BATCH_SIZE) String strBatchSize,
+                           @QueryParam(PARAM_ADAPTIVE_BATCH_SIZE) String strAdaptiveBatchSize,
+                           @QueryParam(PARAM_SKIP_UNCHANGED) String strSkipUnchanged,
+                           @QueryParam(PARAM_DRY_RUN) String strDryRun,
+                           @QueryParam(PARAM_RESULT_MODE) String strResultMode,
+                           @QueryParam(PARAM_MAX_ERRORS) String strMaxErrors,
+                           @QueryParam(PARAM_COMPRESSION) String strCompression,
+                           @QueryParam(PARAM_CHARSET) String strCharset,
+                           @QueryParam(PARAM_TOKENIZER) String strTokenizer,
+                           @QueryParam(PARAM_SCOPE_WRITERS) String strScopeWriters,
+                           @QueryParam(PARAM_SCOPE) List<String> scopes,
+                           @QueryParam(PARAM_UPLOAD_ID) String uploadId,
+                           InputStream is) throws IOException {
+        try {
+            CsvImportOptions options = LoadCSVExtension.importOptions(strIsolateFailures, strBatchSize, strAdaptiveBatchSize, strSkipUnchanged, strDryRun,
+                    strResultMode, strMaxErrors, strCompression, contentEncoding, strCharset, strTokenizer, strScopeWriters,
+                    uploadId);
+            if (options.resultMode == CsvImportOptions.ResultMode.STREAM) {
+                throw new IllegalArgumentException("The report of an import job is read once finished, it cannot be streamed.");
+            }
+            ImportJob job = importJobs.submit(username, is, (csv, progress) -> {
+                // The job waits for its scopes once started, a dry run writes nothing and does not wait
+                try (ScopeAdmission.Permit ignored = options.dryRun ? null : scopeAdmission.admit(scopes)) {
+                    return new CsvTopologyLoader(graphDb, schemaMetadataService.get(), log).loadFromStream(csv, username, options, progress);
+                }
+            }, log);
+            log.info("Import job %s submitted by %s.", job.id, username);
+            return jsonResponse(Status.ACCEPTED, job.status());
+        } catch (IllegalArgumentException e) {
+            return errorResponse(Status.BAD_REQUEST, e);
+        } catch (RejectedExecutionException e) {
+            return errorResponse(Status.SERVICE_UNAVAILABLE, new IllegalStateException("Too many import jobs are waiting, retry later."));
+        }
+    }
+
+    @GET
+    public Response list() throws IOException {
+        List<ImportJobStatus> statuses = importJobs.list().stream()
+                .map(ImportJob::status)
+                .collect(Collectors.toList());
+        return jsonResponse(Status.OK, statuses);
+    }
+
+    @GET
+    @Path("{id}")
+    public Response status(@PathParam("id") String id) throws IOException {
+        Optional<ImportJob> job = importJobs.get(id);
+        if (job.isEmpty()) {
+            return notFound(id);
+        }
+        return jsonResponse(Status.OK, job.get().status());
+    }
+
+    @DELETE
+    @Path("{id}")
+    public Response cancel(@PathParam("id") String id) throws IOException {
+        Optional<ImportJob> job = importJobs.cancel(id);
+        if (job.isEmpty()) {
+            return notFound(id);
+        }
+        log.info("Import job %s cancelled.", id);
+        return jsonResponse(Status.OK, job.get().status());
+    }
+
+    @GET
+    @Path("{id}/result")
+    public Response result(@PathParam("id") String id) throws IOException {
+        Optional<ImportJob> job = importJobs.get(id);
+        if (job.isEmpty()) {
+            return notFound(id);
+        }
+        ImportJob.State state = job.get().state();
+        if (state == ImportJob.State.FAILED) {
+            return jsonResponse(Status.INTERNAL_SERVER_ERROR, new Neo4jErrorResult(state.name(), job.get().error()));
+        }
+        Neo4jLoadResult result = job.get().result();
+        if (result == null) {
+            return errorResponse(Status.CONFLICT, new IllegalStateException(String.format("Import job %s is %s, no result yet.", id, state)));
+        }
+        StreamingOutput stream = outputStream -> JSON_MAPPER.writeValue(outputStream, result);
+        return Response.ok().entity(stream).type(MediaType.APPLICATION_JSON).build();
+    }
+
+    private Response notFound(String id) throws IOException {
+        return errorResponse(Status.NOT_FOUND, new NoSuchElementException("Import job " + id + " not found."));
+    }
+
+    private Response jsonResponse(Status status, Object entity) throws IOException {
+        String json = JSON_MAPPER.writeValueAsString(entity);
+        return Response.status(status).entity(json).type(MediaType.APPLICATION_JSON).build();
+    }
+
+    private Response errorResponse(Status status, Exception cause) throws IOException {
+        return jsonResponse(status, new Neo4jErrorResult(cause.getClass().getSimpleName(), cause.getLocalizedMessage()));
+    }
+}
@@ -2,9 +2,15 @@ package com.livingobjects.neo4j;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Stopwatch;
+import com.livingobjects.neo4j.loader.CsvImportOptions;
 import com.livingobjects.neo4j.loader.CsvTopologyLoader;
+import com.livingobjects.neo4j.loader.ImportProgress;
+import com.livingobjects.neo4j.loader.NdjsonImportListener;
+import com.livingobjects.neo4j.loader.ScopeAdmission;
 import com.livingobjects.neo4j.model.result.Neo4jErrorResult;
 import com.livingobjects.neo4j.model.result.Neo4jLoadResult;
+import com.livingobjects.neo4j.schema.SchemaMetadataService;
+import com.opencsv.exceptions.CsvValidationException;
 import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
@@ -13,41 +19,88 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Set;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Path("/load-csv")
 public final class LoadCSVExtension {
 
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    static final String PARAM_ISOLATE_FAILURES = "isolateFailures";
+    static final String PARAM_BATCH_SIZE = "batchSize";
+    static final String PARAM_ADAPTIVE_BATCH_SIZE = "adaptiveBatchSize";
+    static final String PARAM_SKIP_UNCHANGED = "skipUnchanged";
+    static final String PARAM_DRY_RUN = "dryRun";
+    static final String PARAM_RESULT_MODE = "resultMode";
+    static final String PARAM_MAX_ERRORS = "maxErrors";
+    static final String PARAM_COMPRESSION = "compression";
+    static final String PARAM_CHARSET = "charset";
+    static final String PARAM_TOKENIZER = "tokenizer";
+    static final String PARAM_SCOPE_WRITERS = "scopeWriters";
+    static final String PARAM_SCOPE = "scope";
+    static final String PARAM_UPLOAD_ID = "uploadId";
+    static final String APPLICATION_NDJSON = "application/x-ndjson";
 
     private final GraphDatabaseService graphDb;
+    private final SchemaMetadataService schemaMetadataService;
+    private final ScopeAdmission scopeAdmission;
     private final Log log;
 
     public LoadCSVExtension(@Context DatabaseManagementService dbms, @Context Log log) {
         this.graphDb = dbms.database(dbms.listDatabases().get(0));
+        this.schemaMetadataService = SchemaMetadataService.of(dbms, graphDb);
+        this.scopeAdmission = ScopeAdmission.of(graphDb);
         this.log = log;
     }
 
 
     @POST
     @Consumes({MediaType.APPLICATION_OCTET_STREAM})
-    public Response loadCSV(@HeaderParam("X-User") String username, InputStream is) throws IOException {
+    public Response loadCSV(@HeaderParam("X-User") String username,
+                            @HeaderParam(HttpHeaders.CONTENT_ENCODING) String contentEncoding,
+                            @QueryParam(PARAM_ISOLATE_FAILURES) String strIsolateFailures,
+                            @QueryParam(PARAM_BATCH_SIZE) String strBatchSize,
+                            @QueryParam(PARAM_ADAPTIVE_BATCH_SIZE) String strAdaptiveBatchSize,
+                            @QueryParam(PARAM_SKIP_UNCHANGED) String strSkipUnchanged,
+                            @QueryParam(PARAM_DRY_RUN) String strDryRun,
+                            @QueryParam(PARAM_RESULT_MODE) String strResultMode,
+                            @QueryParam(PARAM_MAX_ERRORS) String strMaxErrors,
+                            @QueryParam(PARAM_COMPRESSION) String strCompression,
+                            @QueryParam(PARAM_CHARSET) String strCharset,
+                            @QueryParam(PARAM_TOKENIZER) String strTokenizer,
+                            @QueryParam(PARAM_SCOPE_WRITERS) String strScopeWriters,
+                            @QueryParam(PARAM_SCOPE) List<String> scopes,
+                            @QueryParam(PARAM_UPLOAD_ID) String uploadId,
+                            InputStream is) throws IOException {
         Stopwatch sWatch = Stopwatch.createStarted();
 
         long importedElementsCounter = 0;
+        boolean streamed = false;
         try {
-            Neo4jLoadResult result = new CsvTopologyLoader(graphDb, log).loadFromStream(is, username);
-            importedElementsCounter = result.importedElementsByScope.values()
-                    .stream()
-                    .mapToInt(Set::size)
-                    .sum();
+            CsvImportOptions options = importOptions(strIsolateFailures, strBatchSize, strAdaptiveBatchSize, strSkipUnchanged, strDryRun,
+                    strResultMode, strMaxErrors, strCompression, contentEncoding, strCharset, strTokenizer, strScopeWriters,
+                    uploadId);
+            if (options.resultMode == CsvImportOptions.ResultMode.STREAM) {
+                streamed = true;
+                return streamResponse(username, options, scopes, is, sWatch);
+            }
+            Neo4jLoadResult result;
+            try (ScopeAdmission.Permit ignored = admit(options, scopes)) {
+                result = new CsvTopologyLoader(graphDb, schemaMetadataService.get(), log).loadFromStream(is, username, options);
+            }
+            importedElementsCounter = importedElements(result);
             String json = JSON_MAPPER.writeValueAsString(result);
             return Response.ok().entity(json).type(MediaType.APPLICATION_JSON).build();
         } catch (IllegalArgumentException e) {
@@ -57,10 +110,77 @@ public final class LoadCSVExtension {
             return errorResponse(e);
 
         } finally {
-            log.info("Import %d element(s) in %d ms.", importedElementsCounter, sWatch.elapsed(TimeUnit.MILLISECONDS));
+            if (!streamed) {
+                log.info("Import %d element(s) in %d ms.", importedElementsCounter, sWatch.elapsed(TimeUnit.MILLISECONDS));
+            }
         }
     }
 
+    /**
+     * The imported elements and the failing lines are written as they are committed, the result comes last. The import
+     * runs while the response is written, its failure ends the stream with an error line instead of the result.
+     */
+    private Response streamResponse(String username, CsvImportOptions options, List<String> scopes, InputStream is, Stopwatch sWatch) {
+        StreamingOutput stream = outputStream -> {
+            try (ScopeAdmission.Permit ignored = admit(options, scopes);
+                 NdjsonImportListener listener = new NdjsonImportListener(JSON_MAPPER, outputStream)) {
+                try {
+                    Neo4jLoadResult result = new CsvTopologyLoader(graphDb, schemaMetadataService.get(), log)
+                            .loadFromStream(is, username, options, new ImportProgress(), listener);
+                    listener.result(result);
+                    log.info("Import %d element(s) in %d ms.", importedElements(result), sWatch.elapsed(TimeUnit.MILLISECONDS));
+                } catch (IOException | CsvValidationException | RuntimeException e) {
+                    // The answer has started, the failure can only end the stream
+                    log.error("Streamed import failed after " + sWatch.elapsed(TimeUnit.MILLISECONDS) + " ms.", e);
+                    listener.error(new Neo4jErrorResult(e.getClass().getName(), e.getMessage()));
+                }
+            }
+        };
+        return Response.ok().entity(stream).type(APPLICATION_NDJSON).build();
+    }
+
+    /**
+     * Waits for the scopes of the import, see {@link ScopeAdmission}. A dry run writes nothing and is admitted at once.
+     */
+    private ScopeAdmission.Permit admit(CsvImportOptions options, List<String> scopes) throws IOException {
+        if (options.dryRun) {
+            return null;
+        }
+        try {
+            return scopeAdmission.admit(scopes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the scopes " + scopes);
+        }
+    }
+
+    private static long importedElements(Neo4jLoadResult result) {
+        return result.importedCountByScope.values()
+                .stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    static CsvImportOptions importOptions(String strIsolateFailures, String strBatchSize, String strAdaptiveBatchSize,
+                                          String strSkipUnchanged, String strDryRun, String strResultMode, String strMaxErrors,
+                                          String strCompression, String contentEncoding, String strCharset, String strTokenizer,
+                                          String strScopeWriters, String uploadId) {
+        return CsvImportOptions.builder()
+                .isolateFailures(Boolean.parseBoolean(strIsolateFailures))
+                .batchSize(strBatchSize == null ? CsvImportOptions.DEFAULT_BATCH_SIZE : Integer.parseInt(strBatchSize))
+                .adaptiveBatchSize(Boolean.parseBoolean(strAdaptiveBatchSize))
+                .skipUnchanged(Boolean.parseBoolean(strSkipUnchanged))
+                .dryRun(Boolean.parseBoolean(strDryRun))
+                .resultMode(strResultMode == null ? CsvImportOptions.ResultMode.ELEMENTS : CsvImportOptions.ResultMode.valueOf(strResultMode.toUpperCase()))
+                .maxErrors(strMaxErrors == null ? Integer.MAX_VALUE : Integer.parseInt(strMaxErrors))
+                .compression(CsvImportOptions.Compression.fromEncoding(strCompression == null ? contentEncoding : strCompression))
+                .charset(strCharset == null ? StandardCharsets.UTF_8 : Charset.forName(strCharset))
+                .tokenizer(strTokenizer == null ? CsvImportOptions.Tokenizer.OPENCSV : CsvImportOptions.Tokenizer.valueOf(strTokenizer.toUpperCase()))
+                .scopeWriters(strScopeWriters == null ? 1 : Integer.parseInt(strScopeWriters))
+                .uploadId(uploadId)
+                .build();
+    }
+
     private Response errorResponse(Throwable cause) throws IOException {
         String code = cause.getClass().getName();
         Neo4jErrorResult error = new Neo4jErrorResult(code, cause.getMessage());
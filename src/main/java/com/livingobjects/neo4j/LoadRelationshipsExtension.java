@@ -3,13 +3,17 @@ package com.livingobjects.neo4j;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import com.livingobjects.neo4j.loader.AdaptiveBatchSizer;
+import com.livingobjects.neo4j.loader.ScopeAdmission;
 import com.livingobjects.neo4j.loader.TopologyLoader;
 import com.livingobjects.neo4j.model.iwan.Relationship;
 import com.livingobjects.neo4j.model.iwan.RelationshipStatus;
 import com.livingobjects.neo4j.model.result.Neo4jErrorResult;
+import com.livingobjects.neo4j.schema.SchemaMetadataService;
 import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +27,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 @Path("/load-relationships")
@@ -30,28 +36,44 @@ public final class LoadRelationshipsExtension {
 
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
     private static final String PARAM_UPDATE_ONLY = "updateOnly";
+    private static final String PARAM_BATCH_SIZE = "batchSize";
+    private static final String PARAM_ADAPTIVE_BATCH_SIZE = "adaptiveBatchSize";
+    private static final String PARAM_SCOPE = "scope";
+    private static final int DEFAULT_BATCH_SIZE = 10000;
 
     private final ObjectMapper json = new ObjectMapper();
     private final TopologyLoader topologyLoader;
+    private final ScopeAdmission scopeAdmission;
     private final Log log;
 
     public LoadRelationshipsExtension(@Context DatabaseManagementService dbms, @Context Log log) {
-        this.topologyLoader = new TopologyLoader(dbms.database(dbms.listDatabases().get(0)));
+        GraphDatabaseService graphDb = dbms.database(dbms.listDatabases().get(0));
+        this.topologyLoader = new TopologyLoader(graphDb, SchemaMetadataService.of(dbms, graphDb).get());
+        this.scopeAdmission = ScopeAdmission.of(graphDb);
         this.log = log;
     }
 
     @POST
     @Consumes("application/json")
-    public Response load(String jsonBody, @QueryParam(PARAM_UPDATE_ONLY) String strUpdateOnly) throws IOException {
+    public Response load(String jsonBody,
+                         @QueryParam(PARAM_UPDATE_ONLY) String strUpdateOnly,
+                         @QueryParam(PARAM_BATCH_SIZE) String strBatchSize,
+                         @QueryParam(PARAM_ADAPTIVE_BATCH_SIZE) String strAdaptiveBatchSize,
+                         @QueryParam(PARAM_SCOPE) List<String> scopes) throws IOException {
         try {
             boolean updateOnly = Boolean.parseBoolean(strUpdateOnly);
+            int batchSize = strBatchSize == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(strBatchSize);
+            boolean adaptiveBatchSize = Boolean.parseBoolean(strAdaptiveBatchSize);
+            AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(batchSize, adaptiveBatchSize);
 
             List<RelationshipStatus> status = Lists.newArrayList();
             try (JsonParser jsonParser = json.getFactory().createParser(jsonBody)) {
                 TypeReference<List<Relationship>> type = new TypeReference<>() {
                 };
                 List<Relationship> relationships = jsonParser.readValueAs(type);
-                load(relationships, status::add, updateOnly);
+                try (ScopeAdmission.Permit ignored = scopeAdmission.admit(scopes)) {
+                    load(relationships, status::add, updateOnly, batchSizer);
+                }
             }
             String result = JSON_MAPPER.writeValueAsString(status);
             return Response.ok().entity(result)
@@ -70,10 +92,33 @@ public final class LoadRelationshipsExtension {
         }
     }
 
-    private void load(Iterable<Relationship> relationships, Consumer<RelationshipStatus> relationshipStatusConsumer, boolean updateOnly) {
-        for (List<Relationship> batch : Lists.partition(ImmutableList.copyOf(relationships), 10000)) {
-            topologyLoader.loadRelationships(batch, relationshipStatusConsumer, updateOnly);
+    private void load(List<Relationship> relationships, Consumer<RelationshipStatus> relationshipStatusConsumer, boolean updateOnly,
+                      AdaptiveBatchSizer batchSizer) {
+        Stopwatch sWatch = Stopwatch.createStarted();
+        int start = 0;
+        while (start < relationships.size()) {
+            int end = start;
+            long stateBytes = 0;
+            while (end < relationships.size() && !batchSizer.isFull(end - start, stateBytes)) {
+                // the relationship, its attributes and its update date
+                stateBytes += AdaptiveBatchSizer.estimateStateBytes(relationships.get(end).attributes.size() + 2);
+                end++;
+            }
+            OptionalLong commitNanos = topologyLoader.loadRelationships(relationships.subList(start, end), relationshipStatusConsumer, updateOnly);
+            if (commitNanos.isPresent()) {
+                batchSizer.committed(end - start, stateBytes, commitNanos.getAsLong());
+                log.debug("Committed %d relationship(s) in %d ms, next transaction of %d relationship(s).",
+                        end - start, TimeUnit.NANOSECONDS.toMillis(commitNanos.getAsLong()), batchSizer.batchSize());
+            } else {
+                batchSizer.failed();
+                log.debug("Unable to commit %d relationship(s), next transaction of %d relationship(s).", end - start, batchSizer.batchSize());
+            }
+            start = end;
         }
+        log.info("Load %d relationship(s) in %d ms, %d transaction(s) retried after a deadlock or a lock timeout.",
+                relationships.size(), sWatch.elapsed(TimeUnit.MILLISECONDS), topologyLoader.transientRetries());
+        log.debug("Resolved %d element(s) from cache, %d from database.",
+                topologyLoader.getTagCache().hits(), topologyLoader.getTagCache().misses());
     }
 
     private Response errorResponse(Throwable cause) throws IOException {
@@ -34,7 +34,15 @@ public final class OverridableElementFactory {
         this.extraLabel = ImmutableSet.copyOf(extraLabels);
     }
 
+    /**
+     * Finds the element of the scope, or creates it as an override of the element of an upper scope.
+     * <p>
+     * The elements of a key are spread over the scopes, without uniqueness constraint : the lookup and the creation are
+     * serialized by the write lock of the scope node, held until the transaction ends, so that concurrent imports of a
+     * scope cannot both create the element.
+     */
     public UniqueEntity<Node> getOrOverride(Scope scope, String keyProperty, Object keyValue, String username, Transaction tx) {
+        lockScope(scope, tx);
         ImmutableList<String> tmpScopes = ImmutableList.of(scope.tag, SP_SCOPE.tag, GLOBAL_SCOPE.tag);
         ImmutableList<String> scopes = tmpScopes.subList(tmpScopes.lastIndexOf(scope.tag), tmpScopes.size());
         ImmutableMap.Builder<String, Node> expandsBldr = ImmutableMap.builder();
@@ -74,6 +82,17 @@ public final class OverridableElementFactory {
         }
     }
 
+    private void lockScope(Scope scope, Transaction tx) {
+        Node scopeNode = tx.findNode(Labels.SCOPE, GraphModelConstants.TAG, scope.tag);
+        if (scopeNode == null) {
+            // Scope created by the current line, not visible to the other transactions until it commits
+            scopeNode = tx.findNode(Labels.SCOPE, GraphModelConstants.TAG, GLOBAL_SCOPE.tag);
+        }
+        if (scopeNode != null) {
+            tx.acquireWriteLock(scopeNode);
+        }
+    }
+
     private String getElementScopeFromPlanet(String keyProperty, Object keyValue, Node node) {
         Relationship planetRelationship = node.getSingleRelationship(RelationshipTypes.ATTRIBUTE, Direction.OUTGOING);
         if (planetRelationship == null) {
@@ -1,17 +1,32 @@
 package com.livingobjects.neo4j.helper;
 
 import com.google.common.collect.*;
+import com.google.common.primitives.Ints;
 import com.livingobjects.neo4j.model.exception.InsufficientContextException;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Chooses the planet template of an element from its attributes.
+ * <p>
+ * The templates are compiled into an index of the planets by attribute name and value : matching an element only reads
+ * the attributes referenced by the templates, and counts the matching attributes of each planet in an array.
+ */
 public final class PlanetByContext {
 
     private final ImmutableMap<String, ImmutableMap<String, ImmutableSet<AttributeMatch>>> planets;
 
+    private final String[] planetNames;
+    // planet index -> number of distinct attributes of the planet
+    private final int[] attributeCounts;
+    // attribute name -> attribute value -> indexes of the planets having this attribute value
+    private final ImmutableMap<String, ImmutableMap<String, int[]>> planetsByAttributeValue;
+    private final ImmutableSet<String> propertyNames;
+
     public PlanetByContext(Map<String, ImmutableSet<String>> planetAttributes) {
 
         ImmutableMap.Builder<String, ImmutableMap<String, ImmutableSet<AttributeMatch>>> planetAttributeMatchesBuilder = ImmutableMap.builder();
@@ -30,76 +45,136 @@ public final class PlanetByContext {
             planetAttributeMatchesBuilder.put(planet, mapBuilder.build());
         }
         this.planets = planetAttributeMatchesBuilder.build();
+
+        this.planetNames = new String[planets.size()];
+        this.attributeCounts = new int[planets.size()];
+        Map<String, Map<String, List<Integer>>> index = Maps.newHashMap();
+        int planetIndex = 0;
+        for (Map.Entry<String, ImmutableMap<String, ImmutableSet<AttributeMatch>>> entry : planets.entrySet()) {
+            planetNames[planetIndex] = entry.getKey();
+            attributeCounts[planetIndex] = entry.getValue().size();
+            for (ImmutableSet<AttributeMatch> attributeMatches : entry.getValue().values()) {
+                for (AttributeMatch attributeMatch : attributeMatches) {
+                    index.computeIfAbsent(attributeMatch.name, k -> Maps.newHashMap())
+                            .computeIfAbsent(((AttributeMatch.Value) attributeMatch).value, k -> Lists.newArrayList())
+                            .add(planetIndex);
+                }
+            }
+            planetIndex++;
+        }
+        this.planetsByAttributeValue = ImmutableMap.copyOf(Maps.transformValues(index, planetsByValue ->
+                ImmutableMap.copyOf(Maps.transformValues(planetsByValue, Ints::toArray))));
+        this.propertyNames = ImmutableSet.copyOf(Sets.filter(planetsByAttributeValue.keySet(), name -> !name.startsWith("_")));
     }
 
+    /**
+     * @param elementContext the attributes of the element, formatted as {@code name:value}.
+     */
     public String bestMatchingContext(Set<String> elementContext) {
-
-        SortedMap<MatchScore, Set<String>> matchingPlanetsByScore = Maps.newTreeMap();
-
-        for (Map.Entry<String, ImmutableMap<String, ImmutableSet<AttributeMatch>>> entry : planets.entrySet()) {
-            String planet = entry.getKey();
-            ImmutableMap<String, ImmutableSet<AttributeMatch>> planetAttributes = entry.getValue();
-            MatchScore score = computeScore(planetAttributes, elementContext);
-            Set<String> matches = matchingPlanetsByScore.computeIfAbsent(score, k -> Sets.newHashSet());
-            matches.add(planet);
+        int[] matchingAttributes = new int[planetNames.length];
+        for (String contextAttribute : elementContext) {
+            AttributeMatch.Value attributeMatchValue = AttributeMatch.value(contextAttribute);
+            ImmutableMap<String, int[]> planetsByValue = planetsByAttributeValue.get(attributeMatchValue.name);
+            if (planetsByValue != null) {
+                countMatches(planetsByValue, attributeMatchValue.value, matchingAttributes);
+            }
         }
+        return bestMatch(matchingAttributes);
+    }
 
-        return getBestMacthesIfNoConflicts(matchingPlanetsByScore);
+    /**
+     * Same as {@link #bestMatchingContext(Set)} for an element of the given keytype, only reading the element
+     * properties referenced by the planet templates.
+     *
+     * @param keyType    the keytype of the element, formatted as {@code name:value}.
+     * @param properties the value of an element property by name, null if absent.
+     */
+    public String bestMatchingContext(String keyType, Function<String, Object> properties) {
+        int separator = keyType.indexOf(':');
+        int[] matchingAttributes = new int[planetNames.length];
+        for (Map.Entry<String, ImmutableMap<String, int[]>> entry : planetsByAttributeValue.entrySet()) {
+            String name = entry.getKey();
+            String propertyValue = null;
+            if (!name.startsWith("_")) {
+                Object value = properties.apply(name);
+                if (value != null) {
+                    propertyValue = String.valueOf(value);
+                    countMatches(entry.getValue(), propertyValue, matchingAttributes);
+                }
+            }
+            if (separator == name.length() && keyType.startsWith(name)) {
+                String keyTypeValue = keyType.substring(separator + 1);
+                if (!keyTypeValue.equals(propertyValue)) {
+                    countMatches(entry.getValue(), keyTypeValue, matchingAttributes);
+                }
+            }
+        }
+        return bestMatch(matchingAttributes);
     }
 
     public ImmutableSet<String> allPlanets() {
         return planets.keySet();
     }
 
-    private MatchScore computeScore(ImmutableMap<String, ImmutableSet<AttributeMatch>> planetAttributes, Set<String> elementContext) {
-        int matchingAttributes = 0;
-        int matchingAttributeTypes = 0;
-        for (String contextAttribute : elementContext) {
-            AttributeMatch.Value attributeMatchValue = AttributeMatch.value(contextAttribute);
-            ImmutableSet<AttributeMatch> matches = planetAttributes.get(attributeMatchValue.name);
-            if (matches != null) {
-                boolean matchValue = false;
-                boolean matchType = false;
-                for (AttributeMatch match : matches) {
-                    if (match.matchValue(attributeMatchValue.value)) {
-                        if (match.matchAll(attributeMatchValue.value)) {
-                            matchType = true;
-                        } else {
-                            matchValue = true;
-                            break;
-                        }
-                    }
-                }
-                if (matchValue) {
-                    matchingAttributes++;
-                } else {
-                    if (matchType) matchingAttributeTypes++;
-                }
+    /**
+     * @return the element properties read by {@link #bestMatchingContext(String, Function)} : the planet of an element
+     * cannot change as long as these properties keep their value.
+     */
+    public ImmutableSet<String> propertyNames() {
+        return propertyNames;
+    }
+
+    private static void countMatches(ImmutableMap<String, int[]> planetsByValue, String value, int[] matchingAttributes) {
+        int[] matchingPlanets = planetsByValue.get(value);
+        if (matchingPlanets != null) {
+            for (int planet : matchingPlanets) {
+                matchingAttributes[planet]++;
             }
         }
-        int notFoundAttributes = planetAttributes.keySet().size() - (matchingAttributes + matchingAttributeTypes);
-        return new MatchScore(matchingAttributes, matchingAttributeTypes, notFoundAttributes);
     }
 
-    private String getBestMacthesIfNoConflicts(SortedMap<MatchScore, Set<String>> matchingPlanetsByScore) {
-        String bestMatch = null;
-        for (Map.Entry<MatchScore, Set<String>> matchEntry : matchingPlanetsByScore.entrySet()) {
-            if (matchEntry.getKey().matches()) {
-                if (matchEntry.getValue().size() == 1) {
-                    bestMatch = Iterables.getOnlyElement(matchEntry.getValue());
-                    break;
-                } else {
-                    throw new InsufficientContextException("Multiple PlanetTemplate eligible but no sufficient context to choose certainty !", distinctAttributes(matchEntry.getValue()));
-                }
+    /**
+     * The best planet has the most matching attributes, then the least attributes not found in the element.
+     */
+    private String bestMatch(int[] matchingAttributes) {
+        int best = -1;
+        int conflicts = 0;
+        for (int planet = 0; planet < planetNames.length; planet++) {
+            if (matchingAttributes[planet] == 0) {
+                continue;
+            }
+            int compare = (best < 0) ? -1 : compare(planet, best, matchingAttributes);
+            if (compare < 0) {
+                best = planet;
+                conflicts = 0;
+            } else if (compare == 0) {
+                conflicts++;
             }
         }
-        if (bestMatch == null) {
+        if (best < 0) {
             throw new InsufficientContextException("No PlanetTemplate eligible for this context !", ImmutableSet.copyOf(planets.values().stream()
                     .flatMap(stringImmutableSetImmutableMap -> stringImmutableSetImmutableMap.values().stream()
                             .flatMap(v -> v.stream().map(AttributeMatch::toString)))
                     .collect(Collectors.toList())));
         }
-        return bestMatch;
+        if (conflicts > 0) {
+            Set<String> conflictingPlanets = Sets.newHashSet();
+            for (int planet = 0; planet < planetNames.length; planet++) {
+                if (matchingAttributes[planet] > 0 && compare(planet, best, matchingAttributes) == 0) {
+                    conflictingPlanets.add(planetNames[planet]);
+                }
+            }
+            throw new InsufficientContextException("Multiple PlanetTemplate eligible but no sufficient context to choose certainty !", distinctAttributes(conflictingPlanets));
+        }
+        return planetNames[best];
+    }
+
+    private int compare(int planet, int other, int[] matchingAttributes) {
+        int compare = matchingAttributes[other] - matchingAttributes[planet];
+        if (compare == 0) {
+            compare = (attributeCounts[planet] - matchingAttributes[planet]) - (attributeCounts[other] - matchingAttributes[other]);
+        }
+        return compare;
     }
 
     ImmutableSet<String> distinctAttributes(Set<String> conflictingPlanets) {
@@ -131,10 +206,6 @@ public final class PlanetByContext {
 
         public final String name;
 
-        abstract boolean matchAll(String testValue);
-
-        abstract boolean matchValue(String testValue);
-
         public static AttributeMatch parse(String attributeDefinition) {
                 return value(attributeDefinition);
         }
@@ -166,16 +237,6 @@ public final class PlanetByContext {
             public String toString() {
                 return name + ":" + value;
             }
-
-            @Override
-            boolean matchAll(String testValue) {
-                return false;
-            }
-
-            @Override
-            boolean matchValue(String testValue) {
-                return value.equals(testValue);
-            }
         }
 
     }
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Floats;
 import com.google.common.primitives.Ints;
@@ -24,6 +25,9 @@ public final class PropertyConverter {
 
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
 
+    // Integers read as a long without overflow
+    private static final int MAX_LONG_DIGITS = 18;
+
     private static final TypeReference STRING_LIST_TYPE = new TypeReference<String[]>() {
     };
     private static final TypeReference BOOLEAN_LIST_TYPE = new TypeReference<Boolean[]>() {
@@ -40,6 +44,29 @@ public final class PropertyConverter {
         }
     }
 
+    /**
+     * Conversion of the values of a column, same as {@link #convert(String, PropertyType, boolean)}.
+     */
+    @FunctionalInterface
+    public interface Converter {
+        Object convert(String value);
+    }
+
+    /**
+     * @return the converter of a column type : the usual numbers, booleans and JSON arrays are parsed directly, the
+     * other values going through {@link #convert(String, PropertyType, boolean)}.
+     */
+    public static Converter converter(PropertyType propertyType, boolean isArray) {
+        switch (propertyType) {
+            case BOOLEAN:
+                return isArray ? PropertyConverter::convertBooleanArray : PropertyConverter::convertBoolean;
+            case NUMBER:
+                return isArray ? PropertyConverter::convertNumberArray : PropertyConverter::convertNumber;
+            default:
+                return isArray ? PropertyConverter::convertStringArray : PropertyConverter::convertString;
+        }
+    }
+
     public static Object convert(String value, PropertyType propertyType, boolean isArray) {
         if (value.equals(KEEP_VALUE_TOKEN)) {
             return value;
@@ -59,6 +86,311 @@ public final class PropertyConverter {
         }
     }
 
+    private static Object convertString(String value) {
+        if (value.equals(KEEP_VALUE_TOKEN)) {
+            return value;
+        }
+        return isBlank(value) ? null : value;
+    }
+
+    private static Object convertBoolean(String value) {
+        if (value.equals(KEEP_VALUE_TOKEN)) {
+            return value;
+        }
+        return isBlank(value) ? null : Boolean.parseBoolean(value);
+    }
+
+    private static Object convertNumber(String value) {
+        if (value.equals(KEEP_VALUE_TOKEN)) {
+            return value;
+        }
+        if (isBlank(value)) {
+            return null;
+        }
+        int length = value.length();
+        if (value.charAt(0) == '.') {
+            if (length > 1 && digitsEnd(value, 1, length) == length) {
+                return Double.parseDouble(value);
+            }
+        } else if (numberEnd(value, 0, length) == length) {
+            if (isInteger(value, 0, length)) {
+                if (length - (value.charAt(0) == '-' ? 1 : 0) <= MAX_LONG_DIGITS) {
+                    long number = parseLong(value, 0, length);
+                    return (number == (int) number) ? (Object) (int) number : (Object) number;
+                }
+            } else {
+                return Double.parseDouble(value);
+            }
+        }
+        return convert(value, PropertyType.NUMBER, false);
+    }
+
+    /**
+     * A JSON array of numbers is read as the array of the type of its first number, as Jackson reads it.
+     */
+    private static Object convertNumberArray(String value) {
+        if (value.equals(KEEP_VALUE_TOKEN)) {
+            return value;
+        }
+        if (isBlank(value)) {
+            return null;
+        }
+        int length = value.length();
+        int count = 0;
+        // 0 : int, 1 : long, 2 : double
+        int arrayType = -1;
+        int position = skipWhitespaces(value, 0, length);
+        if (position < length && value.charAt(position) == '[') {
+            position = skipWhitespaces(value, position + 1, length);
+            boolean closed = position < length && value.charAt(position) == ']';
+            while (!closed) {
+                int end = numberEnd(value, position, length);
+                if (end < 0) {
+                    return convert(value, PropertyType.NUMBER, true);
+                }
+                int numberType = 2;
+                if (isInteger(value, position, end)) {
+                    if (end - position - (value.charAt(position) == '-' ? 1 : 0) > MAX_LONG_DIGITS) {
+                        return convert(value, PropertyType.NUMBER, true);
+                    }
+                    long number = parseLong(value, position, end);
+                    numberType = (number == (int) number) ? 0 : 1;
+                }
+                if (arrayType < 0) {
+                    arrayType = numberType;
+                }
+                count++;
+                position = skipWhitespaces(value, end, length);
+                if (position < length && value.charAt(position) == ',') {
+                    position = skipWhitespaces(value, position + 1, length);
+                } else {
+                    closed = position < length && value.charAt(position) == ']';
+                    if (!closed) {
+                        return convert(value, PropertyType.NUMBER, true);
+                    }
+                }
+            }
+            if (skipWhitespaces(value, position + 1, length) == length) {
+                return readNumbers(value, count, arrayType);
+            }
+        }
+        return convert(value, PropertyType.NUMBER, true);
+    }
+
+    private static Object readNumbers(String value, int count, int arrayType) {
+        int[] ints = arrayType <= 0 ? new int[count] : null;
+        long[] longs = arrayType == 1 ? new long[count] : null;
+        double[] doubles = arrayType == 2 ? new double[count] : null;
+        int length = value.length();
+        int position = skipWhitespaces(value, value.indexOf('[') + 1, length);
+        for (int i = 0; i < count; i++) {
+            int end = numberEnd(value, position, length);
+            if (isInteger(value, position, end)) {
+                long number = parseLong(value, position, end);
+                if (ints != null) {
+                    ints[i] = (int) number;
+                } else if (longs != null) {
+                    longs[i] = number;
+                } else {
+                    doubles[i] = number;
+                }
+            } else {
+                double number = Double.parseDouble(value.substring(position, end));
+                if (ints != null) {
+                    ints[i] = (int) number;
+                } else if (longs != null) {
+                    longs[i] = (long) number;
+                } else {
+                    doubles[i] = number;
+                }
+            }
+            position = skipWhitespaces(value, skipWhitespaces(value, end, length) + 1, length);
+        }
+        return ints != null ? ints : longs != null ? longs : doubles;
+    }
+
+    private static Object convertBooleanArray(String value) {
+        if (value.equals(KEEP_VALUE_TOKEN)) {
+            return value;
+        }
+        if (isBlank(value)) {
+            return null;
+        }
+        List<Boolean> booleans = Lists.newArrayList();
+        int length = value.length();
+        int position = skipWhitespaces(value, 0, length);
+        if (position < length && value.charAt(position) == '[') {
+            position = skipWhitespaces(value, position + 1, length);
+            boolean closed = position < length && value.charAt(position) == ']';
+            while (!closed) {
+                int end;
+                if (value.startsWith("true", position)) {
+                    booleans.add(Boolean.TRUE);
+                    end = position + 4;
+                } else if (value.startsWith("false", position)) {
+                    booleans.add(Boolean.FALSE);
+                    end = position + 5;
+                } else {
+                    return convert(value, PropertyType.BOOLEAN, true);
+                }
+                position = skipWhitespaces(value, end, length);
+                if (position < length && value.charAt(position) == ',') {
+                    position = skipWhitespaces(value, position + 1, length);
+                } else {
+                    closed = position < length && value.charAt(position) == ']';
+                    if (!closed) {
+                        return convert(value, PropertyType.BOOLEAN, true);
+                    }
+                }
+            }
+            if (skipWhitespaces(value, position + 1, length) == length) {
+                return booleans.toArray(new Boolean[0]);
+            }
+        }
+        return convert(value, PropertyType.BOOLEAN, true);
+    }
+
+    /**
+     * Only JSON strings without escape sequences are read directly.
+     */
+    private static Object convertStringArray(String value) {
+        if (value.equals(KEEP_VALUE_TOKEN)) {
+            return value;
+        }
+        if (isBlank(value)) {
+            return null;
+        }
+        List<String> strings = Lists.newArrayList();
+        int length = value.length();
+        int position = skipWhitespaces(value, 0, length);
+        if (position < length && value.charAt(position) == '[') {
+            position = skipWhitespaces(value, position + 1, length);
+            boolean closed = position < length && value.charAt(position) == ']';
+            while (!closed) {
+                if (position == length || value.charAt(position) != '"') {
+                    return convert(value, PropertyType.STRING, true);
+                }
+                int end = position + 1;
+                while (end < length && value.charAt(end) != '"' && value.charAt(end) != '\\' && value.charAt(end) >= ' ') {
+                    end++;
+                }
+                if (end == length || value.charAt(end) != '"') {
+                    return convert(value, PropertyType.STRING, true);
+                }
+                strings.add(value.substring(position + 1, end));
+                position = skipWhitespaces(value, end + 1, length);
+                if (position < length && value.charAt(position) == ',') {
+                    position = skipWhitespaces(value, position + 1, length);
+                } else {
+                    closed = position < length && value.charAt(position) == ']';
+                    if (!closed) {
+                        return convert(value, PropertyType.STRING, true);
+                    }
+                }
+            }
+            if (skipWhitespaces(value, position + 1, length) == length) {
+                return strings.toArray(new String[0]);
+            }
+        }
+        return convert(value, PropertyType.STRING, true);
+    }
+
+    /**
+     * Same as {@code value.trim().isEmpty()}.
+     */
+    private static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespaces(String value, int from, int to) {
+        int position = from;
+        while (position < to && isJsonWhitespace(value.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isJsonWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static int digitsEnd(String value, int from, int to) {
+        int position = from;
+        while (position < to && value.charAt(position) >= '0' && value.charAt(position) <= '9') {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @return the end of the JSON number starting at from, or -1 if there is none.
+     */
+    private static int numberEnd(String value, int from, int to) {
+        int position = from;
+        if (position < to && value.charAt(position) == '-') {
+            position++;
+        }
+        if (position == to) {
+            return -1;
+        }
+        if (value.charAt(position) == '0') {
+            position++;
+        } else {
+            int end = digitsEnd(value, position, to);
+            if (end == position) {
+                return -1;
+            }
+            position = end;
+        }
+        if (position < to && value.charAt(position) == '.') {
+            int end = digitsEnd(value, position + 1, to);
+            if (end == position + 1) {
+                return -1;
+            }
+            position = end;
+        }
+        if (position < to && (value.charAt(position) == 'e' || value.charAt(position) == 'E')) {
+            position++;
+            if (position < to && (value.charAt(position) == '+' || value.charAt(position) == '-')) {
+                position++;
+            }
+            int end = digitsEnd(value, position, to);
+            if (end == position) {
+                return -1;
+            }
+            position = end;
+        }
+        // A number directly followed by a digit ("01") is not a JSON number
+        if (position < to && value.charAt(position) >= '0' && value.charAt(position) <= '9') {
+            return -1;
+        }
+        return position;
+    }
+
+    private static boolean isInteger(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseLong(String value, int from, int to) {
+        boolean negative = value.charAt(from) == '-';
+        long number = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            number = number * 10 + (value.charAt(i) - '0');
+        }
+        return negative ? -number : number;
+    }
+
     private static Object readStringField(boolean isArray, String field) throws IOException {
         if (field != null && !field.trim().isEmpty()) {
             if (isArray) {
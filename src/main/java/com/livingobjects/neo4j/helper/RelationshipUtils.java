@@ -8,6 +8,7 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
 
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -16,6 +17,27 @@ public class RelationshipUtils {
     private RelationshipUtils() {
     }
 
+    /**
+     * Looks for a relationship of the given type from a node to another one, through the relationships of the node having
+     * the fewest of them : an element linked to thousands of others is not scanned to find the link of a leaf.
+     */
+    public static Optional<Relationship> findRelationship(Node from, Node to, RelationshipType relationshipType) {
+        if (from.getDegree(relationshipType, Direction.OUTGOING) <= to.getDegree(relationshipType, Direction.INCOMING)) {
+            for (Relationship relationship : from.getRelationships(Direction.OUTGOING, relationshipType)) {
+                if (relationship.getEndNode().equals(to)) {
+                    return Optional.of(relationship);
+                }
+            }
+        } else {
+            for (Relationship relationship : to.getRelationships(Direction.INCOMING, relationshipType)) {
+                if (relationship.getStartNode().equals(from)) {
+                    return Optional.of(relationship);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
     /**
      * Update the given relationships between the given nodes (create or update it).
      * Other relationships of the same type that already exists are not removed.
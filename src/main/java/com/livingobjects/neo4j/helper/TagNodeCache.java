@@ -0,0 +1,255 @@
+package com.livingobjects.neo4j.helper;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache of node ids by tag, used by an import to avoid an index seek each time a line references an element
+ * already seen. When full, the least recently used tag is evicted.
+ * <p>
+ * Entries are kept in primitive arrays : an open addressing table with linear probing points to the entries, and the
+ * entries are chained in recency order. Looking up or adding a tag does not allocate.
+ * <p>
+ * Tags added since the last commit are evicted on rollback, as their node may not exist anymore. A cached node id is
+ * only a hint : callers must check the node still holds the tag before using it.
+ * <p>
+ * Not thread safe, a cache belongs to one import.
+ */
+public final class TagNodeCache {
+
+    public static final long NO_NODE = -1;
+
+    private static final int FREE = -1;
+
+    private final int capacity;
+    private final int mask;
+    // table slot -> entry, FREE if the slot is empty
+    private final int[] slots;
+
+    private final String[] tags;
+    private final long[] nodeIds;
+    private final int[] hashes;
+    private final int[] slotOfEntry;
+    // recency chain, from head (most recently used) to tail
+    private final int[] previous;
+    private final int[] next;
+    private int head = FREE;
+    private int tail = FREE;
+
+    private final int[] freeEntries;
+    private int freeCount;
+
+    // entries added in the current transaction, all of them are evicted on rollback if more than capacity
+    private final int[] pendingEntries;
+    private int pendingCount;
+
+    private long hits;
+    private long misses;
+
+    public TagNodeCache(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "Cache capacity must be positive : %s", capacity);
+        this.capacity = capacity;
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        this.mask = tableSize - 1;
+        this.slots = new int[tableSize];
+        this.tags = new String[capacity];
+        this.nodeIds = new long[capacity];
+        this.hashes = new int[capacity];
+        this.slotOfEntry = new int[capacity];
+        this.previous = new int[capacity];
+        this.next = new int[capacity];
+        this.freeEntries = new int[capacity];
+        this.pendingEntries = new int[capacity];
+        clear();
+    }
+
+    /**
+     * @return the node id cached for the tag, or {@link #NO_NODE}.
+     */
+    public long get(String tag) {
+        int entry = find(tag, hash(tag));
+        if (entry == FREE) {
+            misses++;
+            return NO_NODE;
+        }
+        hits++;
+        moveToHead(entry);
+        return nodeIds[entry];
+    }
+
+    public void put(String tag, long nodeId) {
+        int hash = hash(tag);
+        int entry = find(tag, hash);
+        if (entry != FREE) {
+            nodeIds[entry] = nodeId;
+            moveToHead(entry);
+        } else {
+            if (freeCount == 0) {
+                remove(tail);
+            }
+            entry = freeEntries[--freeCount];
+            tags[entry] = tag;
+            nodeIds[entry] = nodeId;
+            hashes[entry] = hash;
+            int slot = hash & mask;
+            while (slots[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry;
+            slotOfEntry[entry] = slot;
+            linkAtHead(entry);
+        }
+        if (pendingCount < capacity) {
+            pendingEntries[pendingCount] = entry;
+        }
+        pendingCount++;
+    }
+
+    public void invalidate(String tag) {
+        int entry = find(tag, hash(tag));
+        if (entry != FREE) {
+            remove(entry);
+        }
+    }
+
+    /**
+     * The entries added until now are committed and kept on rollback.
+     */
+    public void committed() {
+        pendingCount = 0;
+    }
+
+    /**
+     * Evicts the entries added since the last commit.
+     */
+    public void rolledBack() {
+        if (pendingCount > capacity) {
+            clearEntries();
+        } else {
+            for (int i = 0; i < pendingCount; i++) {
+                int entry = pendingEntries[i];
+                // the entry may have been evicted and reused since, dropping it anyway is harmless
+                if (tags[entry] != null) {
+                    remove(entry);
+                }
+            }
+        }
+        pendingCount = 0;
+    }
+
+    public void clear() {
+        clearEntries();
+        pendingCount = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    public int size() {
+        return capacity - freeCount;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    private void clearEntries() {
+        Arrays.fill(slots, FREE);
+        Arrays.fill(tags, null);
+        head = FREE;
+        tail = FREE;
+        for (int i = 0; i < capacity; i++) {
+            freeEntries[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+    }
+
+    private int find(String tag, int hash) {
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != FREE) {
+            if (hashes[entry] == hash && tags[entry].equals(tag)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return FREE;
+    }
+
+    private void remove(int entry) {
+        deleteSlot(slotOfEntry[entry]);
+        unlink(entry);
+        tags[entry] = null;
+        freeEntries[freeCount++] = entry;
+    }
+
+    /**
+     * Backward shift deletion : the following entries of the probe sequence are moved back so that no lookup
+     * stops on the freed slot.
+     */
+    private void deleteSlot(int slot) {
+        int free = slot;
+        slots[free] = FREE;
+        int current = free;
+        while (true) {
+            current = (current + 1) & mask;
+            int entry = slots[current];
+            if (entry == FREE) {
+                return;
+            }
+            int home = hashes[entry] & mask;
+            boolean canMove = (current > free)
+                    ? (home <= free || home > current)
+                    : (home <= free && home > current);
+            if (canMove) {
+                slots[free] = entry;
+                slotOfEntry[entry] = free;
+                slots[current] = FREE;
+                free = current;
+            }
+        }
+    }
+
+    private void moveToHead(int entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkAtHead(entry);
+        }
+    }
+
+    private void linkAtHead(int entry) {
+        previous[entry] = FREE;
+        next[entry] = head;
+        if (head != FREE) {
+            previous[head] = entry;
+        }
+        head = entry;
+        if (tail == FREE) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(int entry) {
+        int p = previous[entry];
+        int n = next[entry];
+        if (p != FREE) {
+            next[p] = n;
+        } else {
+            head = n;
+        }
+        if (n != FREE) {
+            previous[n] = p;
+        } else {
+            tail = p;
+        }
+    }
+
+    private static int hash(String tag) {
+        int h = tag.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -3,7 +3,6 @@ package com.livingobjects.neo4j.helper;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.livingobjects.neo4j.loader.Scope;
 import com.livingobjects.neo4j.model.exception.InsufficientContextException;
 import com.livingobjects.neo4j.model.iwan.Labels;
@@ -15,8 +14,6 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
 
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.KEYTYPE_SEPARATOR;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.KEY_TYPES;
@@ -32,7 +29,17 @@ public class TemplatedPlanetFactory {
 
     public TemplatedPlanetFactory(GraphDatabaseService graphDb) {
         this.planetFactory = new PlanetFactory(graphDb);
-        this.planetNameTemplateCache = loadPlanetTemplateName(graphDb);
+        try (Transaction tx = graphDb.beginTx()) {
+            this.planetNameTemplateCache = loadPlanetTemplateName(tx);
+        }
+    }
+
+    /**
+     * @param planetNameTemplateCache the planet templates by keytype, as loaded by {@link #loadPlanetTemplateName(Transaction)}.
+     */
+    public TemplatedPlanetFactory(GraphDatabaseService graphDb, ImmutableMap<String, PlanetByContext> planetNameTemplateCache) {
+        this.planetFactory = new PlanetFactory(graphDb);
+        this.planetNameTemplateCache = planetNameTemplateCache;
     }
 
     public UniqueEntity<Node> localizePlanetForElement(Scope solidScope, Node element, Transaction tx) {
@@ -46,56 +53,61 @@ public class TemplatedPlanetFactory {
         return planetFactory.getOrCreate(planetTemplateName, solidScope, tx);
     }
 
+    /**
+     * @param planetTemplate the planet template already chosen for the element.
+     */
+    public UniqueEntity<Node> localizePlanet(String planetTemplate, Scope solidScope, Transaction tx) {
+        return planetFactory.getOrCreate(planetTemplate, solidScope, tx);
+    }
+
     public PlanetByContext getPlanetByContext(String keyType) {
         return planetNameTemplateCache.get(keyType);
     }
 
+    /**
+     * @return the element properties the planet of an element of this keytype depends on.
+     */
+    public ImmutableSet<String> getPlanetProperties(String keyType) {
+        PlanetByContext planetByContext = getPlanetByContext(keyType);
+        return (planetByContext == null) ? ImmutableSet.of() : planetByContext.propertyNames();
+    }
+
     public static String localizePlanetForElement(Node element, PlanetByContext planetByContext) {
         String keyType = element.getProperty(_TYPE).toString();
 
-        Set<String> specificContext = Sets.union(getProperties(element), ImmutableSet.of(keyType));
         try {
-            return planetByContext.bestMatchingContext(specificContext);
+            return planetByContext.bestMatchingContext(keyType, property -> element.getProperty(property, null));
         } catch (InsufficientContextException e) {
             throw new IllegalStateException(String.format("Unable to create '%s'. Missing attribute to determine context : '%s'. Line is ignored.", keyType, e.missingAttributesToChoose));
         }
     }
 
-    private static Set<String> getProperties(Node element) {
-        return element.getAllProperties().entrySet().stream()
-                .filter(en -> !en.getKey().startsWith("_"))
-                .map(en -> en.getKey() + ':' + en.getValue())
-                .collect(Collectors.toSet());
-    }
-
-    private ImmutableMap<String, PlanetByContext> loadPlanetTemplateName(GraphDatabaseService graphdb) {
-        try (Transaction tx = graphdb.beginTx()) {
-            Map<String, Map<String, ImmutableSet<String>>> tplCacheBuilder = Maps.newHashMap();
-            tx.findNodes(Labels.PLANET_TEMPLATE).forEachRemaining(pltNode -> {
-                String keyType = null;
-                ImmutableSet.Builder<String> contexts = ImmutableSet.builder();
-                for (Relationship aRelation : pltNode.getRelationships(Direction.OUTGOING, RelationshipTypes.ATTRIBUTE)) {
-                    Node attNode = aRelation.getEndNode();
-                    if (!attNode.hasLabel(Labels.ATTRIBUTE)) continue;
-                    String type = attNode.getProperty(_TYPE).toString();
-                    String context = type + KEYTYPE_SEPARATOR + attNode.getProperty(NAME).toString();
-                    if (KEY_TYPES.contains(type)) keyType = context;
-                    contexts.add(context);
-                }
-                if (keyType == null) {
-                    String planetName = pltNode.getProperty(NAME).toString();
-                    throw new IllegalStateException("Schema cannot be loaded : the planet '" + planetName + "' does not have a valid keyAttribute");
-                }
-                Map<String, ImmutableSet<String>> attributesByPlanet = tplCacheBuilder.computeIfAbsent(keyType, k -> Maps.newHashMap());
-                attributesByPlanet.put(pltNode.getProperty(NAME).toString(), contexts.build());
-            });
-
-            ImmutableMap.Builder<String, PlanetByContext> result = ImmutableMap.builder();
-            tplCacheBuilder.forEach((keyType, planets) ->
-                    result.put(keyType, new PlanetByContext(planets)));
-
-            return result.build();
-        }
+    public static ImmutableMap<String, PlanetByContext> loadPlanetTemplateName(Transaction tx) {
+        Map<String, Map<String, ImmutableSet<String>>> tplCacheBuilder = Maps.newHashMap();
+        tx.findNodes(Labels.PLANET_TEMPLATE).forEachRemaining(pltNode -> {
+            String keyType = null;
+            ImmutableSet.Builder<String> contexts = ImmutableSet.builder();
+            for (Relationship aRelation : pltNode.getRelationships(Direction.OUTGOING, RelationshipTypes.ATTRIBUTE)) {
+                Node attNode = aRelation.getEndNode();
+                if (!attNode.hasLabel(Labels.ATTRIBUTE)) continue;
+                String type = attNode.getProperty(_TYPE).toString();
+                String context = type + KEYTYPE_SEPARATOR + attNode.getProperty(NAME).toString();
+                if (KEY_TYPES.contains(type)) keyType = context;
+                contexts.add(context);
+            }
+            if (keyType == null) {
+                String planetName = pltNode.getProperty(NAME).toString();
+                throw new IllegalStateException("Schema cannot be loaded : the planet '" + planetName + "' does not have a valid keyAttribute");
+            }
+            Map<String, ImmutableSet<String>> attributesByPlanet = tplCacheBuilder.computeIfAbsent(keyType, k -> Maps.newHashMap());
+            attributesByPlanet.put(pltNode.getProperty(NAME).toString(), contexts.build());
+        });
+
+        ImmutableMap.Builder<String, PlanetByContext> result = ImmutableMap.builder();
+        tplCacheBuilder.forEach((keyType, planets) ->
+                result.put(keyType, new PlanetByContext(planets)));
+
+        return result.build();
     }
 
 }
@@ -2,10 +2,11 @@ package com.livingobjects.neo4j.helper;
 
 import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
 import com.livingobjects.neo4j.model.iwan.Labels;
-import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.ConstraintViolationException;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.ResourceIterator;
@@ -16,16 +17,30 @@ import java.util.Optional;
 
 public final class UniqueElementFactory {
 
+    // No lock is held across the lookup and the creation : a node created meanwhile by a concurrent transaction violates
+    // the uniqueness constraint and is looked up again, a new conflict on each attempt is unlikely
+    private static final int MAX_CREATE_ATTEMPTS = 3;
+
     private final GraphDatabaseService graphdb;
     private final Label keyLabel;
     private final Optional<Label> extraLabel;
+    // Nodes found by tag, when the factory is bound to an import
+    private final TagNodeCache tagCache;
 
     public UniqueElementFactory(GraphDatabaseService graphdb,
                                 Label keyLabel,
                                 Optional<Label> extraLabel) {
+        this(graphdb, keyLabel, extraLabel, null);
+    }
+
+    private UniqueElementFactory(GraphDatabaseService graphdb,
+                                 Label keyLabel,
+                                 Optional<Label> extraLabel,
+                                 TagNodeCache tagCache) {
         this.graphdb = graphdb;
         this.keyLabel = keyLabel;
         this.extraLabel = extraLabel;
+        this.tagCache = tagCache;
     }
 
     public Node getWithOutcome(String keyProperty, Object keyValue, Transaction tx) {
@@ -55,38 +70,76 @@ public final class UniqueElementFactory {
         return getOrCreateWithOutcome(true, matchProperties.key1, matchProperties.value1, matchProperties.key2, matchProperties.value2, null, tx);
     }
 
-    public synchronized UniqueEntity<Relationship> getOrCreateRelation(boolean createIfNotExists, Node from, Node to, RelationshipType type) {
-        UniqueEntity<Relationship> relation = null;
-        for (Relationship r : from.getRelationships(Direction.OUTGOING, type)) {
-            if (r.getEndNode().equals(to)) { // put other conditions here, if needed
-                relation = UniqueEntity.existing(r);
-                break;
-            }
-        }
+    public UniqueEntity<Relationship> getOrCreateRelation(boolean createIfNotExists, Node from, Node to, RelationshipType type) {
+        UniqueEntity<Relationship> relation = RelationshipUtils.findRelationship(from, to, type)
+                .map(UniqueEntity::existing)
+                .orElse(null);
         if (relation == null && createIfNotExists) {
             relation = UniqueEntity.created(from.createRelationshipTo(to, type));
         }
         return relation;
     }
 
-    private synchronized UniqueEntity<Node> getOrCreateWithOutcome(boolean createIfNotExist, String key1, Object value1, String key2, Object value2,
-                                                                   String username, Transaction tx) {
-        Node node;
-        if (key2 == null) {
-            node = tx.findNode(keyLabel, key1, value1);
-        } else {
-            node = filterNode(key1, value1, key2, value2, tx);
+    private UniqueEntity<Node> getOrCreateWithOutcome(boolean createIfNotExist, String key1, Object value1, String key2, Object value2,
+                                                      String username, Transaction tx) {
+        for (int attempt = 1; ; attempt++) {
+            Node node;
+            if (key2 == null) {
+                node = findNode(key1, value1, tx);
+            } else {
+                node = filterNode(key1, value1, key2, value2, tx);
+            }
+            if (node != null) {
+                return UniqueEntity.existing(node);
+            }
+            if (!createIfNotExist) {
+                return null;
+            }
+
+            node = tx.createNode();
+            try {
+                initialize(node, key1, value1, key2, value2, username);
+            } catch (ConstraintViolationException e) {
+                // Created and committed by a concurrent transaction since the lookup
+                node.delete();
+                if (attempt >= MAX_CREATE_ATTEMPTS) {
+                    throw e;
+                }
+                continue;
+            }
+            if (isCached(key1, value1, key2)) {
+                tagCache.put((String) value1, node.getId());
+            }
+            return UniqueEntity.created(node);
+        }
+    }
+
+    private Node findNode(String key, Object value, Transaction tx) {
+        if (!isCached(key, value, null)) {
+            return tx.findNode(keyLabel, key, value);
         }
+        String tag = (String) value;
+        long nodeId = tagCache.get(tag);
+        if (nodeId != TagNodeCache.NO_NODE) {
+            try {
+                Node node = tx.getNodeById(nodeId);
+                // The id may have been reused if the node has been deleted by another transaction
+                if (node.hasLabel(keyLabel) && tag.equals(node.getProperty(key, null))) {
+                    return node;
+                }
+            } catch (NotFoundException ignored) {
+            }
+            tagCache.invalidate(tag);
+        }
+        Node node = tx.findNode(keyLabel, key, value);
         if (node != null) {
-            return UniqueEntity.existing(node);
+            tagCache.put(tag, node.getId());
         }
+        return node;
+    }
 
-        if (createIfNotExist) {
-            node = tx.createNode();
-            return UniqueEntity.created(initialize(node, key1, value1, key2, value2, username));
-        } else {
-            return null;
-        }
+    private boolean isCached(String key1, Object value1, String key2) {
+        return tagCache != null && key2 == null && GraphModelConstants.TAG.equals(key1) && value1 instanceof String;
     }
 
     private Node filterNode(String key1, Object value1, String key2, Object value2, Transaction tx) {
@@ -123,4 +176,11 @@ public final class UniqueElementFactory {
     public static UniqueElementFactory networkElementFactory(GraphDatabaseService graphdb) {
         return new UniqueElementFactory(graphdb, Labels.NETWORK_ELEMENT, Optional.of(Labels.ELEMENT));
     }
+
+    /**
+     * @param tagCache resolution of the network elements by tag, shared by the lines of an import.
+     */
+    public static UniqueElementFactory networkElementFactory(GraphDatabaseService graphdb, TagNodeCache tagCache) {
+        return new UniqueElementFactory(graphdb, Labels.NETWORK_ELEMENT, Optional.of(Labels.ELEMENT), tagCache);
+    }
 }
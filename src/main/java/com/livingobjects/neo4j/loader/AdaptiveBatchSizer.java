@@ -0,0 +1,104 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses how many lines to write in a transaction before committing it.
+ * <p>
+ * The cost of a line, in commit time and in transaction state, is measured on each commit and smoothed. The next
+ * batch size is the number of lines expected to commit in {@link #TARGET_COMMIT_MILLIS} without holding more than
+ * {@link #TRANSACTION_STATE_BUDGET} bytes of transaction state, changing by at most a factor 2 from one batch to the next.
+ * <p>
+ * The transaction state is not exposed by the database, it is estimated from the values written by each line.
+ */
+public final class AdaptiveBatchSizer {
+
+    public static final long TARGET_COMMIT_MILLIS = 250;
+    public static final long TRANSACTION_STATE_BUDGET = 64L * 1024 * 1024;
+
+    private static final int MIN_BATCH_SIZE = 10;
+    private static final int MAX_BATCH_SIZE = 100_000;
+    private static final double SMOOTHING = 0.3;
+
+    // Rough footprint in transaction state of a written value : property record, key and boxed value
+    private static final int VALUE_STATE_BYTES = 96;
+
+    private final boolean adaptive;
+
+    private int batchSize;
+    private double millisPerLine = -1;
+    private double bytesPerLine = -1;
+
+    public AdaptiveBatchSizer(int initialBatchSize, boolean adaptive) {
+        Preconditions.checkArgument(initialBatchSize > 0, "Batch size must be positive : %s", initialBatchSize);
+        this.batchSize = initialBatchSize;
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @return the estimated transaction state needed to write the given values.
+     */
+    public static long estimateStateBytes(String[] values) {
+        long bytes = 0;
+        for (String value : values) {
+            if (value != null && !value.isEmpty()) {
+                bytes += VALUE_STATE_BYTES + 2L * value.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the estimated transaction state needed to write the given number of values.
+     */
+    public static long estimateStateBytes(int valueCount) {
+        return (long) VALUE_STATE_BYTES * valueCount;
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return true when the transaction holding these lines should be committed.
+     */
+    public boolean isFull(int lines, long stateBytes) {
+        return lines >= batchSize || stateBytes >= TRANSACTION_STATE_BUDGET;
+    }
+
+    /**
+     * Records a successful commit and adapts the size of the next batches.
+     */
+    public void committed(int lines, long stateBytes, long commitNanos) {
+        if (lines <= 0) {
+            return;
+        }
+        millisPerLine = smooth(millisPerLine, (double) TimeUnit.NANOSECONDS.toMicros(commitNanos) / 1000 / lines);
+        bytesPerLine = smooth(bytesPerLine, (double) stateBytes / lines);
+        if (!adaptive) {
+            return;
+        }
+
+        double forLatency = TARGET_COMMIT_MILLIS / Math.max(millisPerLine, 0.001);
+        double forMemory = TRANSACTION_STATE_BUDGET / Math.max(bytesPerLine, 1);
+        double next = Math.min(forLatency, forMemory);
+        next = Math.max(batchSize / 2.0, Math.min(batchSize * 2.0, next));
+        batchSize = (int) Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, next));
+    }
+
+    /**
+     * Records a transaction which could not be committed, after a deadlock or a lock timeout for instance : the next
+     * batch is half as large, its locks being held for a shorter time.
+     */
+    public void failed() {
+        if (adaptive) {
+            batchSize = Math.max(MIN_BATCH_SIZE, batchSize / 2);
+        }
+    }
+
+    private static double smooth(double previous, double measure) {
+        return previous < 0 ? measure : previous + SMOOTHING * (measure - previous);
+    }
+}
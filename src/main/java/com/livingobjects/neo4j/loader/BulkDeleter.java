@@ -0,0 +1,59 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.livingobjects.neo4j.helper.TagNodeCache;
+import com.livingobjects.neo4j.helper.UniqueElementFactory;
+import com.livingobjects.neo4j.model.result.BulkDeleteResult;
+import com.livingobjects.neo4j.schema.SchemaMetadata;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes a list of elements given by tag, with the same {@link Action} as the status column of a CSV import, without
+ * importing a line per element : the tags are resolved and their children collected once, then everything is deleted
+ * in bounded transactions, see {@link CascadeDeleteEngine}.
+ */
+public final class BulkDeleter {
+
+    private static final int TAG_CACHE_CAPACITY = 65_536;
+
+    /**
+     * Follows the deletion, called after each committed transaction.
+     */
+    @FunctionalInterface
+    public interface Progress {
+        Progress NONE = (deleted, total) -> {
+        };
+
+        void batchCommitted(int deleted, int total);
+    }
+
+    private final CascadeDeleteEngine engine;
+    private final TagNodeCache tagCache = new TagNodeCache(TAG_CACHE_CAPACITY);
+    private final Log log;
+
+    public BulkDeleter(GraphDatabaseService graphDb, SchemaMetadata schemaMetadata, Log log) {
+        this.engine = new CascadeDeleteEngine(graphDb, schemaMetadata.metaSchema,
+                UniqueElementFactory.networkElementFactory(graphDb, tagCache), log);
+        this.log = log;
+    }
+
+    /**
+     * @param tags distinct tags of the elements to delete.
+     */
+    public BulkDeleteResult delete(Collection<String> tags, Action action, Progress progress) {
+        Stopwatch watch = Stopwatch.createStarted();
+        CascadeDeleteEngine.Plan plan = engine.collect(tags, action);
+        log.info("Bulk delete of %d tag(s) with %s : %d element(s) to delete, %d tag(s) missing, %d tag(s) rejected, collected in %d ms.",
+                tags.size(), action, plan.size(), plan.missingTags.size(), plan.rejectedTags.size(), watch.elapsed(TimeUnit.MILLISECONDS));
+
+        int deleted = engine.delete(plan, tagCache::invalidate, deletedSoFar -> progress.batchCommitted(deletedSoFar, plan.size()));
+        log.info("Bulk delete of %d element(s) in %d ms.", deleted, watch.elapsed(TimeUnit.MILLISECONDS));
+        return new BulkDeleteResult(tags.size(), deleted, ImmutableList.copyOf(plan.missingTags), ImmutableMap.copyOf(plan.rejectedTags));
+    }
+}
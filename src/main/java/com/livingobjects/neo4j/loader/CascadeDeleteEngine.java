@@ -0,0 +1,363 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.livingobjects.neo4j.helper.UniqueElementFactory;
+import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
+import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.SCOPE;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.TAG;
+import static com.livingobjects.neo4j.model.iwan.RelationshipTypes.ATTRIBUTE;
+import static com.livingobjects.neo4j.model.iwan.RelationshipTypes.EXTEND;
+import static org.neo4j.graphdb.Direction.INCOMING;
+import static org.neo4j.graphdb.Direction.OUTGOING;
+
+/**
+ * Deletes elements with their children, as the {@link Action} of the CSV import does, without holding the whole subtree
+ * in one transaction.
+ * <p>
+ * The elements to delete are first collected in a read transaction, walking the children iteratively : the strong
+ * children, and the other ones with {@link Action#DELETE_CASCADE_ALL}, unless they belong to a higher scope level, and
+ * the extending elements. With {@link Action#DELETE_NO_CASCADE}, an element with strong children not deleted too is
+ * rejected, as well as an element extended by an element with such strong children. Then the elements are deleted with
+ * their relationships, children first, in transactions of at most {@link #MAX_BATCH_OPERATIONS} deletions, retried after
+ * a deadlock or a lock timeout. Scope elements are not deleted, only detached from their children.
+ * <p>
+ * The deletions committed before a failure are kept, deleting the same elements again goes on with the remaining ones. A
+ * plan which {@link #fitsInTransaction(Plan) fits in a transaction} can also be deleted in the transaction of the caller,
+ * committed or rolled back with the rest of its writes.
+ */
+final class CascadeDeleteEngine {
+
+    static final int MAX_BATCH_OPERATIONS = 10_000;
+
+    private final GraphDatabaseService graphDb;
+    private final MetaSchema metaSchema;
+    private final UniqueElementFactory networkElementFactory;
+    private final Log log;
+    private final int batchOperations;
+
+    CascadeDeleteEngine(GraphDatabaseService graphDb, MetaSchema metaSchema, UniqueElementFactory networkElementFactory, Log log) {
+        this(graphDb, metaSchema, networkElementFactory, log, MAX_BATCH_OPERATIONS);
+    }
+
+    @VisibleForTesting
+    CascadeDeleteEngine(GraphDatabaseService graphDb, MetaSchema metaSchema, UniqueElementFactory networkElementFactory, Log log,
+                        int batchOperations) {
+        this.graphDb = graphDb;
+        this.metaSchema = metaSchema;
+        this.networkElementFactory = networkElementFactory;
+        this.log = log;
+        this.batchOperations = batchOperations;
+    }
+
+    /**
+     * @param tags tags of the elements to delete, the missing ones are listed in {@link Plan#missingTags}.
+     */
+    Plan collect(Collection<String> tags, Action action) {
+        try (Transaction tx = graphDb.beginTx()) {
+            return collect(tags, action, tx);
+        }
+    }
+
+    /**
+     * Collects the elements to delete as seen by the given transaction, including its uncommitted writes.
+     */
+    Plan collect(Collection<String> tags, Action action, Transaction tx) {
+        Plan plan = new Plan();
+        Map<Long, String> rootTypes = Maps.newLinkedHashMap();
+        Map<Long, String> rootTags = Maps.newHashMap();
+        for (String tag : tags) {
+            Node root = networkElementFactory.getWithOutcome(TAG, tag, tx);
+            if (root == null) {
+                plan.missingTags.add(tag);
+            } else {
+                rootTypes.put(root.getId(), root.getProperty(GraphModelConstants._TYPE).toString());
+                rootTags.put(root.getId(), tag);
+            }
+        }
+        if (action == Action.DELETE_NO_CASCADE) {
+            rejectRootsWithStrongChildren(rootTypes, rootTags, plan, tx);
+        }
+
+        Deque<Pending> pending = new ArrayDeque<>();
+        rootTypes.forEach((nodeId, keyType) -> schedule(plan, pending, nodeId, keyType));
+        while (!pending.isEmpty()) {
+            Pending next = pending.pop();
+            visit(tx.getNodeById(next.nodeId), next.keyType, action, plan, pending);
+        }
+        return plan;
+    }
+
+    /**
+     * @return true when the plan can be deleted in a single transaction of at most {@link #MAX_BATCH_OPERATIONS}
+     * deletions, estimated from the relationships of its elements.
+     */
+    boolean fitsInTransaction(Plan plan) {
+        return plan.operations <= batchOperations;
+    }
+
+    /**
+     * Deletes the whole plan in the given transaction, whatever its size, without committing it.
+     *
+     * @param deletedTag called with the tag of each deleted element.
+     * @return the number of deleted elements.
+     */
+    int delete(Plan plan, Transaction tx, Consumer<String> deletedTag) {
+        Batch batch = new Batch(Integer.MAX_VALUE);
+        for (int i = plan.elements.size() - 1; i >= 0; i--) {
+            detach(batch, tx, plan.elements.get(i), true);
+        }
+        for (int i = 0; i < plan.scopes.size(); i++) {
+            detach(batch, tx, plan.scopes.get(i), false);
+        }
+        batch.deletedTags.forEach(deletedTag);
+        return batch.deleted;
+    }
+
+    int delete(Plan plan, Consumer<String> deletedTag) {
+        return delete(plan, deletedTag, deleted -> {
+        });
+    }
+
+    /**
+     * @param deletedTag     called with the tag of each deleted element, once its transaction is committed.
+     * @param batchCommitted called with the number of elements deleted so far after each transaction.
+     * @return the number of deleted elements.
+     */
+    int delete(Plan plan, Consumer<String> deletedTag, IntConsumer batchCommitted) {
+        TransientRetry transientRetry = new TransientRetry(TransientRetry.DEFAULT_BUDGET);
+        int total = plan.elements.size() + plan.scopes.size();
+        int position = 0;
+        int deleted = 0;
+        int attempt = 1;
+        while (position < total) {
+            Batch batch = new Batch(batchOperations);
+            int next = position;
+            try (Transaction tx = graphDb.beginTx()) {
+                while (next < total && batch.operations < batch.maxOperations) {
+                    boolean element = next < plan.elements.size();
+                    long nodeId = element
+                            ? plan.elements.get(plan.elements.size() - 1 - next)
+                            : plan.scopes.get(next - plan.elements.size());
+                    if (detach(batch, tx, nodeId, element)) {
+                        next++;
+                    }
+                }
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (!transientRetry.shouldRetry(e, attempt)) {
+                    throw e;
+                }
+                log.debug("Transient failure deleting in cascade, retrying the transaction : %s", e.getMessage());
+                transientRetry.backoff(attempt++);
+                continue;
+            }
+            attempt = 1;
+            position = next;
+            deleted += batch.deleted;
+            batch.deletedTags.forEach(deletedTag);
+            log.debug("Cascade delete : %d/%d element(s) deleted.", deleted, plan.size());
+            batchCommitted.accept(deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * An element cannot be deleted without its strong children, unless they are deleted too. Without cascade, a root is
+     * deleted with the elements extending it : the roots are rejected until the remaining ones and their extending
+     * elements only have strong children among them.
+     */
+    private void rejectRootsWithStrongChildren(Map<Long, String> rootTypes, Map<Long, String> rootTags, Plan plan, Transaction tx) {
+        Map<Long, Map<Long, String>> rootElements = Maps.newHashMap();
+        rootTypes.forEach((rootId, keyType) -> rootElements.put(rootId, extendingClosure(tx.getNodeById(rootId), keyType)));
+        boolean rejected = true;
+        while (rejected) {
+            rejected = false;
+            Set<Long> deleted = Sets.newHashSet();
+            rootTypes.keySet().forEach(rootId -> deleted.addAll(rootElements.get(rootId).keySet()));
+            for (Long rootId : ImmutableList.copyOf(rootTypes.keySet())) {
+                if (hasStrongChildNotDeleted(rootElements.get(rootId), deleted, tx)) {
+                    String tag = rootTags.get(rootId);
+                    plan.rejectedTags.put(tag, String.format("Cannot delete %s, its children has not been deleted", tag));
+                    rootTypes.remove(rootId);
+                    rejected = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the type by id of the element and of the elements extending it, recursively.
+     */
+    private Map<Long, String> extendingClosure(Node root, String rootType) {
+        Map<Long, String> elements = Maps.newLinkedHashMap();
+        Deque<Node> pending = new ArrayDeque<>();
+        elements.put(root.getId(), rootType);
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node element = pending.pop();
+            if (metaSchema.isScope(elements.get(element.getId()))) {
+                continue;
+            }
+            for (Relationship relationship : element.getRelationships(INCOMING, EXTEND)) {
+                Node child = relationship.getStartNode();
+                if (!elements.containsKey(child.getId())) {
+                    elements.put(child.getId(), child.getProperty(GraphModelConstants._TYPE).toString());
+                    pending.push(child);
+                }
+            }
+        }
+        return elements;
+    }
+
+    private boolean hasStrongChildNotDeleted(Map<Long, String> elements, Set<Long> deleted, Transaction tx) {
+        for (Map.Entry<Long, String> element : elements.entrySet()) {
+            for (Relationship relationship : tx.getNodeById(element.getKey()).getRelationships(INCOMING, RelationshipTypes.CONNECT)) {
+                Node child = relationship.getStartNode();
+                String childType = child.getProperty(GraphModelConstants._TYPE).toString();
+                if (!deleted.contains(child.getId()) && metaSchema.getRequiredParent(childType).map(element.getValue()::equals).orElse(false)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void visit(Node element, String keyType, Action action, Plan plan, Deque<Pending> pending) {
+        // Relationships between two deleted elements are counted twice
+        plan.operations += metaSchema.isScope(keyType) ? element.getDegree(RelationshipTypes.CONNECT, INCOMING) : element.getDegree() + 1;
+        if (action != Action.DELETE_NO_CASCADE) {
+            int elementScopeLevel = metaSchema.scopeLevel(scopeOf(element));
+            for (Relationship relationship : element.getRelationships(INCOMING, RelationshipTypes.CONNECT)) {
+                Node child = relationship.getStartNode();
+                if (plan.contains(child.getId())) {
+                    continue;
+                }
+                String childType = child.getProperty(GraphModelConstants._TYPE).toString();
+                boolean strongChild = metaSchema.getRequiredParent(childType).map(keyType::equals).orElse(false);
+                // Only CASCADE_ALL deletes the other children, their relationship is deleted with the element anyway
+                if ((strongChild || action == Action.DELETE_CASCADE_ALL)
+                        && metaSchema.scopeLevel(scopeOf(child)) <= elementScopeLevel) {
+                    schedule(plan, pending, child.getId(), childType);
+                }
+            }
+        }
+        if (!metaSchema.isScope(keyType)) {
+            for (Relationship relationship : element.getRelationships(INCOMING, EXTEND)) {
+                Node child = relationship.getStartNode();
+                if (!plan.contains(child.getId())) {
+                    schedule(plan, pending, child.getId(), child.getProperty(GraphModelConstants._TYPE).toString());
+                }
+            }
+        }
+    }
+
+    private void schedule(Plan plan, Deque<Pending> pending, long nodeId, String keyType) {
+        NodeIdSet target = metaSchema.isScope(keyType) ? plan.scopes : plan.elements;
+        if (target.add(nodeId)) {
+            pending.push(new Pending(nodeId, keyType));
+        }
+    }
+
+    private static String scopeOf(Node element) {
+        return element.getSingleRelationship(ATTRIBUTE, OUTGOING).getEndNode().getProperty(SCOPE).toString();
+    }
+
+    /**
+     * Deletes the relationships of an element, all of them and the element itself for an element to delete, the
+     * incoming CONNECT ones for a scope.
+     *
+     * @return false when the transaction is full before the element is detached, the next one goes on with it.
+     */
+    private boolean detach(Batch batch, Transaction tx, long nodeId, boolean deleteElement) {
+        Node node;
+        try {
+            node = tx.getNodeById(nodeId);
+        } catch (NotFoundException e) {
+            // Already deleted
+            return true;
+        }
+        Iterable<Relationship> relationships = deleteElement ? node.getRelationships() : node.getRelationships(INCOMING, RelationshipTypes.CONNECT);
+        for (Relationship relationship : relationships) {
+            if (batch.operations >= batch.maxOperations) {
+                return false;
+            }
+            relationship.delete();
+            batch.operations++;
+        }
+        if (deleteElement) {
+            Object tag = node.getProperty(TAG, null);
+            node.delete();
+            batch.operations++;
+            batch.deleted++;
+            if (tag != null) {
+                batch.deletedTags.add(tag.toString());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Elements to delete, children after their parents, and scopes to detach from their children.
+     */
+    static final class Plan {
+        final NodeIdSet elements = new NodeIdSet();
+        final NodeIdSet scopes = new NodeIdSet();
+        final List<String> missingTags = Lists.newArrayList();
+        final Map<String, String> rejectedTags = Maps.newLinkedHashMap();
+        // Upper bound of the deletions of the plan
+        long operations = 0;
+
+        boolean contains(long nodeId) {
+            return elements.contains(nodeId) || scopes.contains(nodeId);
+        }
+
+        int size() {
+            return elements.size();
+        }
+    }
+
+    private static final class Pending {
+        final long nodeId;
+        final String keyType;
+
+        Pending(long nodeId, String keyType) {
+            this.nodeId = nodeId;
+            this.keyType = keyType;
+        }
+    }
+
+    /**
+     * Deletions of the current transaction.
+     */
+    private static final class Batch {
+        final int maxOperations;
+        int operations = 0;
+        int deleted = 0;
+        final List<String> deletedTags = Lists.newArrayList();
+
+        Batch(int maxOperations) {
+            this.maxOperations = maxOperations;
+        }
+    }
+}
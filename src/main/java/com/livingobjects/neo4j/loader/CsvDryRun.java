@@ -0,0 +1,166 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.livingobjects.neo4j.helper.UniqueElementFactory;
+import com.livingobjects.neo4j.model.result.Neo4jLoadResult;
+import com.opencsv.exceptions.CsvValidationException;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Validates the lines of a CSV import without writing anything : the lines are split in chunks, each chunk is validated
+ * by the {@link LineValidator} rules in its own transaction, which only reads the graph and is never committed. The
+ * chunks are validated by the threads of the database, see {@link ImportExecutors}.
+ * <p>
+ * The report is the one of the import, a line passing the validation being counted as imported. The validation is
+ * conservative, a line passing it may still fail once written. A line is validated against the graph and the elements
+ * written by the lines before it, see {@link DryRunElements}.
+ */
+final class CsvDryRun {
+
+    private static final int CHUNK_SIZE = 1000;
+    // Chunks read ahead of the validation, bounding the lines held in memory
+    private static final int MAX_PENDING_CHUNKS = 2 * ImportExecutors.VALIDATOR_COUNT;
+
+    private final GraphDatabaseService graphDb;
+    private final MetaSchema metaSchema;
+    private final UniqueElementFactory networkElementFactory;
+    private final ExecutorService workers;
+    private final Log log;
+
+    CsvDryRun(GraphDatabaseService graphDb, MetaSchema metaSchema, ImportExecutors executors, Log log) {
+        this.graphDb = graphDb;
+        this.metaSchema = metaSchema;
+        this.workers = executors.validators;
+        // Shared by the workers, so without the import cache
+        this.networkElementFactory = UniqueElementFactory.networkElementFactory(graphDb);
+        this.log = log;
+    }
+
+    /**
+     * @param progress counts the validated lines as committed, the validation stops at the next chunk once cancelled.
+     * @param listener receives the failing lines chunk by chunk, from the calling thread.
+     */
+    Neo4jLoadResult run(CsvImportPipeline pipeline, CsvInput input, CsvImportOptions options, ImportProgress progress,
+                        ImportListener listener) throws IOException, CsvValidationException {
+        Deque<Future<Map<Integer, String>>> pending = new ArrayDeque<>();
+        try {
+            ChunkErrors errors = new ChunkErrors(options.maxErrors, listener);
+            DryRunElements dryRunElements = new DryRunElements();
+            boolean cancelled = false;
+            int lines = 0;
+            List<ParsedLine> chunk = Lists.newArrayListWithCapacity(CHUNK_SIZE);
+            ParsedLine parsedLine;
+            while ((parsedLine = pipeline.next()) != null) {
+                lines++;
+                progress.lineRead();
+                dryRunElements.record(parsedLine);
+                chunk.add(parsedLine);
+                if (chunk.size() == CHUNK_SIZE) {
+                    if (pending.size() == MAX_PENDING_CHUNKS) {
+                        errors.add(await(pending.removeFirst()));
+                    }
+                    List<ParsedLine> lineChunk = ImmutableList.copyOf(chunk);
+                    pending.addLast(workers.submit(() -> validate(lineChunk, dryRunElements, progress)));
+                    chunk.clear();
+                    if (progress.isCancelled()) {
+                        cancelled = true;
+                        break;
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<ParsedLine> lineChunk = ImmutableList.copyOf(chunk);
+                pending.addLast(workers.submit(() -> validate(lineChunk, dryRunElements, progress)));
+            }
+            while (!pending.isEmpty()) {
+                errors.add(await(pending.removeFirst()));
+            }
+            log.info("Dry run of %d line(s) : %d line(s) would fail.", lines, errors.count);
+            return Neo4jLoadResult.builder()
+                    .imported(lines - errors.count)
+                    .errorLines(errors.kept)
+                    .errorCount(errors.count)
+                    .cancelled(cancelled)
+                    .bytesReceived(input.bytesReceived())
+                    .bytesDecompressed(input.bytesDecompressed())
+                    .build();
+        } finally {
+            // Only left when the dry run failed, the workers are shared
+            pending.forEach(chunk -> chunk.cancel(true));
+        }
+    }
+
+    private Map<Integer, String> validate(List<ParsedLine> chunk, DryRunElements dryRunElements, ImportProgress progress) {
+        Map<Integer, String> errors = Maps.newHashMap();
+        // The validator caches the known schemas, one per chunk keeps it confined to the worker
+        LineValidator lineValidator = new LineValidator(metaSchema, networkElementFactory, dryRunElements);
+        try (Transaction tx = graphDb.beginTx()) {
+            for (ParsedLine parsedLine : chunk) {
+                if (parsedLine.isFailed()) {
+                    errors.put(parsedLine.index, parsedLine.failure.getMessage());
+                    progress.lineFailed();
+                    continue;
+                }
+                try {
+                    lineValidator.validate(parsedLine, tx);
+                    lineValidator.checkRequiredProperties(parsedLine, tx);
+                } catch (RuntimeException e) {
+                    errors.put(parsedLine.index, e.getMessage());
+                    progress.lineFailed();
+                }
+            }
+        }
+        progress.linesCommitted(chunk.size() - errors.size());
+        return errors;
+    }
+
+    private static final class ChunkErrors {
+        private final int maxErrors;
+        private final ImportListener listener;
+        private final Map<Integer, String> kept = Maps.newHashMap();
+        private int count = 0;
+
+        ChunkErrors(int maxErrors, ImportListener listener) {
+            this.maxErrors = maxErrors;
+            this.listener = listener;
+        }
+
+        void add(Map<Integer, String> chunkErrors) {
+            for (Map.Entry<Integer, String> error : chunkErrors.entrySet()) {
+                count++;
+                if (kept.size() < maxErrors) {
+                    kept.put(error.getKey(), error.getValue());
+                }
+                listener.failed(error.getKey(), error.getValue());
+            }
+        }
+    }
+
+    private static Map<Integer, String> await(Future<Map<Integer, String>> chunkErrors) throws IOException {
+        try {
+            return chunkErrors.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV dry run interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.base.MoreObjects;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+public final class CsvImportOptions {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    public static final CsvImportOptions DEFAULT = builder().build();
+
+    public enum ResultMode {
+        /**
+         * The result lists the tags of all the imported elements, by scope.
+         */
+        ELEMENTS,
+        /**
+         * The result only counts the imported elements, by scope.
+         */
+        COUNTS,
+        /**
+         * Same as COUNTS, the imported elements and the failing lines being handed to an {@link ImportListener} as they
+         * are committed.
+         */
+        STREAM
+    }
+
+    public enum Tokenizer {
+        /**
+         * {@link CsvTokenizer#scanning(java.io.Reader)}, only reading the columns of the header.
+         */
+        SCANNING,
+        OPENCSV
+    }
+
+    public enum Compression {
+        NONE, GZIP, ZSTD;
+
+        /**
+         * @param encoding a Content-Encoding, none when null or identity.
+         */
+        public static Compression fromEncoding(String encoding) {
+            if (encoding == null) {
+                return NONE;
+            }
+            switch (encoding.trim().toLowerCase()) {
+                case "":
+                case "identity":
+                    return NONE;
+                case "gzip":
+                case "x-gzip":
+                    return GZIP;
+                case "zstd":
+                    return ZSTD;
+                default:
+                    throw new IllegalArgumentException(String.format("Unsupported encoding '%s', expected gzip or zstd.", encoding));
+            }
+        }
+    }
+
+    /**
+     * When true, lines are validated before being written and a failing line only costs the replay of the lines
+     * needed to isolate it. When false, any failure rolls back and replays the whole current transaction.
+     */
+    public final boolean isolateFailures;
+
+    /**
+     * Number of lines of the first transaction.
+     */
+    public final int batchSize;
+
+    /**
+     * When true, the number of lines per transaction is adapted to the measured commits, see {@link AdaptiveBatchSizer}.
+     */
+    public final boolean adaptiveBatchSize;
+
+    /**
+     * When true, a fingerprint of the columns of each element is stored on the element, and only the links to its
+     * parents are checked for an existing element imported again with the same fingerprint.
+     */
+    public final boolean skipUnchanged;
+
+    /**
+     * When true, the lines are only validated, in parallel and without writing anything, see {@link CsvDryRun}.
+     */
+    public final boolean dryRun;
+
+    public final ResultMode resultMode;
+
+    /**
+     * Maximum number of failing lines kept in the result, the other ones are only counted.
+     */
+    public final int maxErrors;
+
+    /**
+     * Compression of the CSV stream, decompressed while it is read.
+     */
+    public final Compression compression;
+
+    public final Charset charset;
+
+    public final Tokenizer tokenizer;
+
+    /**
+     * Number of transactions writing the lines of distinct client scopes in parallel, see {@link ScopePartitionedImport}.
+     * With 1, all the lines are written in sequence.
+     */
+    public final int scopeWriters;
+
+    /**
+     * When set, a checkpoint is stored after each commit, see {@link ImportCheckpoint}, and an upload with the id of an
+     * interrupted import only imports the lines following its checkpoint. Null for an import which cannot be resumed.
+     */
+    public final String uploadId;
+
+    private CsvImportOptions(boolean isolateFailures, int batchSize, boolean adaptiveBatchSize, boolean skipUnchanged, boolean dryRun,
+                             ResultMode resultMode, int maxErrors, Compression compression, Charset charset, Tokenizer tokenizer,
+                             int scopeWriters, String uploadId) {
+        this.isolateFailures = isolateFailures;
+        this.batchSize = batchSize;
+        this.adaptiveBatchSize = adaptiveBatchSize;
+        this.skipUnchanged = skipUnchanged;
+        this.dryRun = dryRun;
+        this.resultMode = resultMode;
+        this.maxErrors = maxErrors;
+        this.compression = compression;
+        this.charset = charset;
+        this.tokenizer = tokenizer;
+        this.scopeWriters = scopeWriters;
+        this.uploadId = uploadId;
+    }
+
+    public static CsvImportOptions.Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("isolateFailures", isolateFailures)
+                .add("batchSize", batchSize)
+                .add("adaptiveBatchSize", adaptiveBatchSize)
+                .add("skipUnchanged", skipUnchanged)
+                .add("dryRun", dryRun)
+                .add("resultMode", resultMode)
+                .add("maxErrors", maxErrors)
+                .add("compression", compression)
+                .add("charset", charset)
+                .add("tokenizer", tokenizer)
+                .add("scopeWriters", scopeWriters)
+                .add("uploadId", uploadId)
+                .toString();
+    }
+
+    public static class Builder {
+
+        private boolean isolateFailures = false;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private boolean adaptiveBatchSize = false;
+        private boolean skipUnchanged = false;
+        private boolean dryRun = false;
+        private ResultMode resultMode = ResultMode.ELEMENTS;
+        private int maxErrors = Integer.MAX_VALUE;
+        private Compression compression = Compression.NONE;
+        private Charset charset = StandardCharsets.UTF_8;
+        private Tokenizer tokenizer = Tokenizer.OPENCSV;
+        private int scopeWriters = 1;
+        private String uploadId = null;
+
+        public Builder isolateFailures(boolean isolateFailures) {
+            this.isolateFailures = isolateFailures;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder adaptiveBatchSize(boolean adaptiveBatchSize) {
+            this.adaptiveBatchSize = adaptiveBatchSize;
+            return this;
+        }
+
+        public Builder skipUnchanged(boolean skipUnchanged) {
+            this.skipUnchanged = skipUnchanged;
+            return this;
+        }
+
+        public Builder dryRun(boolean dryRun) {
+            this.dryRun = dryRun;
+            return this;
+        }
+
+        public Builder resultMode(ResultMode resultMode) {
+            this.resultMode = resultMode;
+            return this;
+        }
+
+        public Builder maxErrors(int maxErrors) {
+            this.maxErrors = maxErrors;
+            return this;
+        }
+
+        public Builder compression(Compression compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public Builder charset(Charset charset) {
+            this.charset = charset;
+            return this;
+        }
+
+        public Builder tokenizer(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+            return this;
+        }
+
+        public Builder scopeWriters(int scopeWriters) {
+            if (scopeWriters < 1) {
+                throw new IllegalArgumentException(String.format("At least one scope writer is required, got %d.", scopeWriters));
+            }
+            this.scopeWriters = scopeWriters;
+            return this;
+        }
+
+        public Builder uploadId(String uploadId) {
+            this.uploadId = uploadId;
+            return this;
+        }
+
+        public CsvImportOptions build() {
+            if (uploadId != null && scopeWriters > 1) {
+                // The scope writers do not commit the lines in file order
+                throw new IllegalArgumentException("An import written by several scope writers cannot be resumed.");
+            }
+            return new CsvImportOptions(isolateFailures, batchSize, adaptiveBatchSize, skipUnchanged, dryRun, resultMode, maxErrors,
+                    compression, charset, tokenizer, scopeWriters, uploadId);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableSet;
+import com.livingobjects.neo4j.schema.SchemaMetadata;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Staged reading of a CSV import : one reader thread tokenizes the stream, the parsers resolve
+ * everything that does not need the graph (property values, element scopes, and the planet templates
+ * the line alone decides), and the caller thread consumes the lines in file order
+ * through {@link #next()} to write them. The threads are the ones of the database, see {@link ImportExecutors}.
+ * <p>
+ * The queue between the stages is bounded : the reader blocks when the writer is late, so at most
+ * {@link #QUEUE_CAPACITY} lines are held in memory whatever the size of the file.
+ */
+final class CsvImportPipeline implements AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 2048;
+
+    private static final CompletableFuture<ParsedLine> END_OF_STREAM = CompletableFuture.completedFuture(null);
+
+    private final CsvTokenizer reader;
+    private final CsvMappingStrategy strategy;
+    private final SchemaMetadata schemaMetadata;
+    private final boolean partitionByScope;
+    private final int firstLine;
+
+    private final BlockingQueue<CompletableFuture<ParsedLine>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ExecutorService parserExecutor;
+    private Future<?> readerTask;
+
+    private volatile boolean closed = false;
+
+    private CsvImportPipeline(CsvTokenizer reader, CsvMappingStrategy strategy, SchemaMetadata schemaMetadata, boolean partitionByScope,
+                              int firstLine, ExecutorService parserExecutor) {
+        this.reader = reader;
+        this.strategy = strategy;
+        this.schemaMetadata = schemaMetadata;
+        this.partitionByScope = partitionByScope;
+        this.firstLine = firstLine;
+        this.parserExecutor = parserExecutor;
+    }
+
+    static CsvImportPipeline start(CsvTokenizer reader, CsvMappingStrategy strategy, SchemaMetadata schemaMetadata, ImportExecutors executors) {
+        return start(reader, strategy, schemaMetadata, false, 0, executors);
+    }
+
+    /**
+     * @param partitionByScope when true, the parsers also guess the client scope of each line, see
+     *                         {@link ParsedLine#partitionScope}.
+     * @param firstLine        index of the first line handed to the writer, the previous ones are only read.
+     * @throws java.util.concurrent.RejectedExecutionException if the database runs too many imports to read one more.
+     */
+    static CsvImportPipeline start(CsvTokenizer reader, CsvMappingStrategy strategy, SchemaMetadata schemaMetadata, boolean partitionByScope,
+                                   int firstLine, ImportExecutors executors) {
+        CsvImportPipeline pipeline = new CsvImportPipeline(reader, strategy, schemaMetadata, partitionByScope, firstLine, executors.parsers);
+        pipeline.readerTask = executors.importThreads.submit(pipeline::read);
+        return pipeline;
+    }
+
+    /**
+     * @return the next line of the file, in file order, or null when the whole file has been consumed.
+     */
+    ParsedLine next() throws IOException, CsvValidationException {
+        try {
+            return queue.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV import interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof CsvValidationException) {
+                throw (CsvValidationException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // Wakes the reader up if it waits for room in the queue
+        readerTask.cancel(true);
+        queue.clear();
+    }
+
+    private void read() {
+        try {
+            int index = 0;
+            String[] nextLine;
+            while (!closed && (nextLine = reader.readNext()) != null) {
+                int lineIndex = index++;
+                if (lineIndex < firstLine) {
+                    continue;
+                }
+                String[] line = nextLine;
+                queue.put(CompletableFuture.supplyAsync(() -> parse(lineIndex, line), parserExecutor));
+            }
+            queue.put(END_OF_STREAM);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | CsvValidationException | RuntimeException e) {
+            try {
+                queue.put(CompletableFuture.failedFuture(e));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ParsedLine parse(int index, String[] line) {
+        if (closed) {
+            // The parsers are shared, the lines still queued once the import is over are not parsed
+            return null;
+        }
+        try {
+            ImmutableSet<String> scopeKeyTypes = strategy.guessKeyTypesForLine(line);
+            LineMappingStrategy mapping = new LineMappingStrategy(schemaMetadata.metaSchema, strategy, line);
+            mapping.convertValues();
+            mapping.resolveScopes();
+            mapping.resolvePlanetTemplates(schemaMetadata.planetTemplates);
+            String partitionScope = partitionByScope ? mapping.guessPartitionScopeInLine().orElse(null) : null;
+            return ParsedLine.parsed(index, line, scopeKeyTypes, mapping, partitionScope);
+        } catch (RuntimeException e) {
+            return ParsedLine.failed(index, line, e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.livingobjects.neo4j.loader;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.google.common.io.CountingInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The CSV stream of an import, decompressed on the fly and counting the bytes received and the bytes decompressed.
+ */
+final class CsvInput {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CountingInputStream received;
+    private final CountingInputStream decompressed;
+    private final Reader reader;
+
+    private CsvInput(CountingInputStream received, CountingInputStream decompressed, Reader reader) {
+        this.received = received;
+        this.decompressed = decompressed;
+        this.reader = reader;
+    }
+
+    static CsvInput open(InputStream is, CsvImportOptions options) throws IOException {
+        CountingInputStream received = new CountingInputStream(is);
+        CountingInputStream decompressed = new CountingInputStream(decompress(received, options.compression));
+        return new CsvInput(received, decompressed, new InputStreamReader(decompressed, options.charset));
+    }
+
+    private static InputStream decompress(InputStream is, CsvImportOptions.Compression compression) throws IOException {
+        switch (compression) {
+            case GZIP:
+                return new GZIPInputStream(is, BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdInputStream(is);
+            default:
+                return is;
+        }
+    }
+
+    Reader reader() {
+        return reader;
+    }
+
+    CsvTokenizer tokenizer(CsvImportOptions.Tokenizer tokenizer) {
+        return tokenizer == CsvImportOptions.Tokenizer.OPENCSV ? CsvTokenizer.openCsv(reader) : CsvTokenizer.scanning(reader);
+    }
+
+    long bytesReceived() {
+        return received.getCount();
+    }
+
+    long bytesDecompressed() {
+        return decompressed.getCount();
+    }
+}
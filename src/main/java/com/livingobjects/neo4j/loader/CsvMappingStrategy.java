@@ -2,9 +2,11 @@ package com.livingobjects.neo4j.loader;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.livingobjects.neo4j.model.header.HeaderElement;
@@ -12,109 +14,193 @@ import com.livingobjects.neo4j.model.header.HeaderElement.Visitor;
 import com.livingobjects.neo4j.model.header.MultiElementHeader;
 import com.livingobjects.neo4j.model.header.SimpleElementHeader;
 import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
-import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
-import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Relationship;
-import org.neo4j.graphdb.Transaction;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.ID;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.RESERVED_PROPERTIES;
 
 class CsvMappingStrategy {
 
-    private final ImmutableMap<String, Integer> columnIndexes;
+    private final ImmutableList<String> headerLine;
+    private final ImmutableTable<String, String, Integer> columnIndexes;
     private final ImmutableMultimap<String, HeaderElement> mapping;
     private final MetaSchema metaSchema;
 
-    CsvMappingStrategy(ImmutableMap<String, Integer> columnIndexes, ImmutableMultimap<String, HeaderElement> mapping, MetaSchema metaSchema) {
+    private final ImmutableList<MultiElementHeader> multiElementHeaders;
+    private final ImmutableListMultimap<String, SimpleElementHeader> propertyHeaders;
+    private final ImmutableMap<String, Integer> statusColumns;
+    private final ImmutableList<MultiElementHeader> relationStatusHeaders;
+    private final ImmutableMap<String, Integer> scopeIdColumns;
+
+    private final Map<ImmutableSet<String>, ImportPlan> importPlans = new ConcurrentHashMap<>();
+
+    CsvMappingStrategy(ImmutableList<String> headerLine, ImmutableTable<String, String, Integer> columnIndexes,
+                       ImmutableMultimap<String, HeaderElement> mapping, MetaSchema metaSchema) {
+        this.headerLine = headerLine;
         this.columnIndexes = columnIndexes;
         this.mapping = mapping;
         this.metaSchema = metaSchema;
+
+        ImmutableList.Builder<MultiElementHeader> multiElementHeadersBldr = ImmutableList.builder();
+        ImmutableListMultimap.Builder<String, SimpleElementHeader> propertyHeadersBldr = ImmutableListMultimap.builder();
+        for (HeaderElement header : mapping.values()) {
+            header.visit(new Visitor<Void>() {
+                @Override
+                public Void visitSimple(SimpleElementHeader header) {
+                    if (!RESERVED_PROPERTIES.contains(header.propertyName)) {
+                        propertyHeadersBldr.put(header.elementName, header);
+                    }
+                    return null;
+                }
+
+                @Override
+                public Void visitMulti(MultiElementHeader header) {
+                    multiElementHeadersBldr.add(header);
+                    return null;
+                }
+            });
+        }
+        this.multiElementHeaders = multiElementHeadersBldr.build();
+        this.propertyHeaders = propertyHeadersBldr.build();
+        this.relationStatusHeaders = multiElementHeaders.stream()
+                .filter(header -> header.propertyName.equals(Action.STATUS_HEADER))
+                .collect(ImmutableList.toImmutableList());
+        this.statusColumns = ImmutableMap.copyOf(columnIndexes.column(Action.STATUS_HEADER));
+        this.scopeIdColumns = metaSchema.getScopeTypes().stream()
+                .filter(this::hasKeyType)
+                .collect(ImmutableMap.toImmutableMap(Function.identity(), skt -> columnIndex(skt, ID)));
     }
 
-    static CsvMappingStrategy captureHeader(CSVReader reader, MetaSchema metaSchema) throws IOException, CsvValidationException {
+    /**
+     * Reads the header line, the next lines being only read for the columns of the header.
+     */
+    static CsvMappingStrategy captureHeader(CsvTokenizer reader, MetaSchema metaSchema) throws IOException, CsvValidationException {
         String[] headers = reader.readNext();
-        ImmutableMap.Builder<String, Integer> columnIndexesBldr = ImmutableMap.builder();
+        ImmutableTable.Builder<String, String, Integer> columnIndexesBldr = ImmutableTable.builder();
         ImmutableMultimap.Builder<String, HeaderElement> mappingBldr = ImmutableMultimap.builder();
 
         int index = 0;
         for (String header : headers) {
             HeaderElement he = HeaderElement.of(header, index);
             mappingBldr.put(he.elementName, he);
-            columnIndexesBldr.put(he.columnIdentifier(), index);
+            String columnElement = he.columnIdentifier();
+            columnElement = columnElement.substring(0, columnElement.length() - he.propertyName.length() - 1);
+            columnIndexesBldr.put(columnElement, he.propertyName, index);
             index++;
         }
 
         ImmutableMultimap<String, HeaderElement> mapping = mappingBldr.build();
-        return new CsvMappingStrategy(columnIndexesBldr.build(), mapping, metaSchema);
+        BitSet columns = new BitSet(headers.length);
+        mapping.values().forEach(header -> columns.set(header.index));
+        reader.retainColumns(columns);
+        return new CsvMappingStrategy(ImmutableList.copyOf(headers), columnIndexesBldr.build(), mapping, metaSchema);
+    }
+
+    /**
+     * @return the header line, as read.
+     */
+    ImmutableList<String> getHeader() {
+        return headerLine;
     }
 
     ImmutableCollection<HeaderElement> getElementHeaders(String name) {
         return mapping.get(name);
     }
 
+    ImmutableCollection<HeaderElement> getAllHeaders() {
+        return mapping.values();
+    }
+
+    /**
+     * @return the simple headers of the element that are not reserved properties, in column order.
+     */
+    ImmutableList<SimpleElementHeader> getPropertyHeaders(String keyType) {
+        return propertyHeaders.get(keyType);
+    }
+
+    /**
+     * @return the index of the action column of each element having one.
+     */
+    ImmutableMap<String, Integer> getStatusColumns() {
+        return statusColumns;
+    }
+
+    ImmutableList<MultiElementHeader> getRelationStatusHeaders() {
+        return relationStatusHeaders;
+    }
+
     int getColumnIndex(String keyType, String property) {
-        return tryColumnIndex(keyType, property)
-                .orElseThrow(() -> {
-                    String column = keyType + '.' + property;
-                    return new NoSuchElementException(String.format("Required column '%s' not found.", column));
-                });
+        int index = columnIndex(keyType, property);
+        if (index < 0) {
+            String column = keyType + '.' + property;
+            throw new NoSuchElementException(String.format("Required column '%s' not found.", column));
+        }
+        return index;
     }
 
     Optional<Integer> tryColumnIndex(String keyType, String property) {
-        String column = keyType + '.' + property;
-        return Optional.ofNullable(columnIndexes.get(column));
+        return Optional.ofNullable(columnIndexes.get(keyType, property));
     }
 
-    ImmutableSet<String> guessKeyTypesForLine(Collection<String> scopeTypes, String[] line) {
-        Set<String> scopeKeyTypes = scopeTypes.stream()
-                .filter(this::hasKeyType)
-                .filter(skt -> {
-                    int id = getColumnIndex(skt, "id");
-                    return id >= 0 && line[id] != null && !line[id].isEmpty();
+    /**
+     * @return the index of the column, or -1 if the header does not contain it.
+     */
+    int columnIndex(String keyType, String property) {
+        Integer index = columnIndexes.get(keyType, property);
+        return index == null ? -1 : index;
+    }
 
-                }).collect(Collectors.toSet());
+    ImmutableSet<String> guessKeyTypesForLine(String[] line) {
+        ImmutableSet.Builder<String> scopeKeyTypes = ImmutableSet.builder();
+        for (Map.Entry<String, Integer> scopeIdColumn : scopeIdColumns.entrySet()) {
+            int id = scopeIdColumn.getValue();
+            if (id < 0) {
+                throw new NoSuchElementException(String.format("Required column '%s' not found.", scopeIdColumn.getKey() + '.' + ID));
+            }
+            if (line[id] != null && !line[id].isEmpty()) {
+                scopeKeyTypes.add(scopeIdColumn.getKey());
+            }
+        }
+        return scopeKeyTypes.build();
+    }
 
-        return ImmutableSet.copyOf(scopeKeyTypes);
+    /**
+     * @return the import plan of the lines filling the given scope columns, compiled on first use.
+     */
+    ImportPlan getImportPlan(ImmutableSet<String> scopeKeyTypes) {
+        ImportPlan plan = importPlans.get(scopeKeyTypes);
+        if (plan == null) {
+            plan = importPlans.computeIfAbsent(scopeKeyTypes, k -> ImportPlan.compile(this, metaSchema, k));
+        }
+        return plan;
     }
 
-    ImmutableMap<String, Set<String>> guessElementCreationStrategy(Collection<String> scopeKeyTypes, Transaction tx) {
+    ImmutableMap<String, Set<String>> guessElementCreationStrategy(Collection<String> scopeKeyTypes) {
         Map<String, Set<String>> collect = Maps.newHashMap();
 
-        scopeKeyTypes.forEach(s -> addChildrenAttribute(s, collect, tx));
+        scopeKeyTypes.forEach(s -> addChildrenAttribute(s, collect));
 
         if (collect.isEmpty()) {
-            addChildrenAttribute(GraphModelConstants.SCOPE_GLOBAL_ATTRIBUTE, collect, tx);
+            addChildrenAttribute(GraphModelConstants.SCOPE_GLOBAL_ATTRIBUTE, collect);
         }
         mapping.keySet()
-                .forEach(k -> addChildrenAttribute(k, collect, tx));
+                .forEach(k -> addChildrenAttribute(k, collect));
 
         return ImmutableMap.copyOf(collect);
     }
 
     ImmutableList<MultiElementHeader> getMultiElementHeader() {
-        List<MultiElementHeader> collect = mapping.values().stream()
-                .map(h -> h.visit(new Visitor<MultiElementHeader>() {
-                    @Override
-                    public MultiElementHeader visitSimple(SimpleElementHeader header) {
-                        return null;
-                    }
-
-                    @Override
-                    public MultiElementHeader visitMulti(MultiElementHeader header) {
-                        return header;
-                    }
-                })).filter(Objects::nonNull)
-                .collect(Collectors.toList());
-        return ImmutableList.copyOf(collect);
+        return multiElementHeaders;
     }
 
     boolean hasKeyType(String keytype) {
@@ -122,21 +208,17 @@ class CsvMappingStrategy {
     }
 
     private Map<String, Set<String>> addChildrenAttribute(
-            String current, Map<String, Set<String>> collect, Transaction tx) {
+            String current, Map<String, Set<String>> collect) {
 
-        Collection<Relationship> relationships = metaSchema.getChildren(tx, current);
+        ImmutableList<String> children = metaSchema.getChildren(current);
 
-        if (!relationships.isEmpty()) {
-            for (Relationship relationship : relationships) {
+        if (!children.isEmpty()) {
+            for (String key : children) {
                 Set<String> p = collect.computeIfAbsent(current, k -> Sets.newHashSet());
 
-                Node startNode = relationship.getStartNode();
-                String type = startNode.getProperty(GraphModelConstants._TYPE).toString();
-                String name = startNode.getProperty(GraphModelConstants.NAME).toString();
-                String key = type + GraphModelConstants.KEYTYPE_SEPARATOR + name;
                 if (mapping.keySet().contains(key)) {
                     p.add(key);
-                    addChildrenAttribute(key, collect, tx).forEach((k, v) -> {
+                    addChildrenAttribute(key, collect).forEach((k, v) -> {
                         Set<String> values = collect.computeIfAbsent(k, k1 -> Sets.newHashSet());
                         values.addAll(v);
                     });
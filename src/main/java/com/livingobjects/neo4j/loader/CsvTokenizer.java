@@ -0,0 +1,37 @@
+package com.livingobjects.neo4j.loader;
+
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.BitSet;
+
+/**
+ * Splits a CSV stream in lines of fields, with the opencsv default quoting and escaping rules : an unquoted empty field
+ * is null, a quoted empty field is an empty string.
+ */
+public interface CsvTokenizer extends Closeable {
+
+    /**
+     * @return the fields of the next line, null at the end of the stream.
+     */
+    String[] readNext() throws IOException, CsvValidationException;
+
+    /**
+     * Only the given columns are read from the next lines, the other ones are returned as null. All the columns are
+     * read until this is called.
+     */
+    void retainColumns(BitSet columns);
+
+    /**
+     * Scans the stream through a reusable buffer, only creating strings for the retained non-empty fields.
+     */
+    static CsvTokenizer scanning(Reader reader) {
+        return new ScanningCsvTokenizer(reader);
+    }
+
+    static CsvTokenizer openCsv(Reader reader) {
+        return new OpenCsvTokenizer(reader);
+    }
+}
@@ -2,7 +2,8 @@ package com.livingobjects.neo4j.loader;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableCollection;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
@@ -10,10 +11,11 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 import com.livingobjects.neo4j.helper.OverridableElementFactory;
-import com.livingobjects.neo4j.helper.PropertyConverter;
 import com.livingobjects.neo4j.helper.RelationshipUtils;
+import com.livingobjects.neo4j.helper.TagNodeCache;
 import com.livingobjects.neo4j.helper.TemplatedPlanetFactory;
 import com.livingobjects.neo4j.helper.UniqueElementFactory;
 import com.livingobjects.neo4j.helper.UniqueEntity;
@@ -29,10 +31,9 @@ import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
 import com.livingobjects.neo4j.model.iwan.Labels;
 import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
 import com.livingobjects.neo4j.model.result.Neo4jLoadResult;
+import com.livingobjects.neo4j.model.result.TransactionBatch;
 import com.livingobjects.neo4j.model.result.TypedScope;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
-import com.opencsv.enums.CSVReaderNullFieldIndicator;
+import com.livingobjects.neo4j.schema.SchemaMetadata;
 import com.opencsv.exceptions.CsvValidationException;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Entity;
@@ -46,7 +47,6 @@ import reactor.util.function.Tuples;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -57,7 +57,9 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -70,6 +72,7 @@ import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.SCOPE;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.SCOPE_GLOBAL_ATTRIBUTE;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.SCOPE_GLOBAL_TAG;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.TAG;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants._FINGERPRINT;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants._TYPE;
 import static com.livingobjects.neo4j.model.iwan.RelationshipTypes.APPLIED_TO;
 import static com.livingobjects.neo4j.model.iwan.RelationshipTypes.ATTRIBUTE;
@@ -80,9 +83,10 @@ import static org.neo4j.graphdb.Direction.OUTGOING;
 
 public final class CsvTopologyLoader {
 
-    private static final int MAX_TRANSACTION_COUNT = 500;
+    private static final int TAG_CACHE_CAPACITY = 65_536;
 
     private final GraphDatabaseService graphDb;
+    private final SchemaMetadata schemaMetadata;
     private final TemplatedPlanetFactory planetFactory;
     private final UniqueElementFactory networkElementFactory;
     private final OverridableElementFactory overridableElementFactory;
@@ -90,129 +94,178 @@ public final class CsvTopologyLoader {
     private final TransactionManager txManager;
     private final TopologyLoaderUtils topologyLoaderUtils;
     private final MetaSchema metaSchema;
+    private final CascadeDeleteEngine cascadeDeleteEngine;
+    private final ImportExecutors executors;
+    private final TagNodeCache tagCache = new TagNodeCache(TAG_CACHE_CAPACITY);
+    private final TransientRetry transientRetry = new TransientRetry(TransientRetry.DEFAULT_BUDGET);
     private final Log log;
 
+    // Elements of the current import kept on their planet without matching the templates again
+    private int skippedRelocalizations = 0;
+    // Existing elements of the current import by keytype, imported with the same fingerprint or not
+    private final Multiset<String> unchangedElements = HashMultiset.create();
+    private final Multiset<String> changedElements = HashMultiset.create();
+
     public CsvTopologyLoader(GraphDatabaseService graphDb, Log log) {
+        this(graphDb, SchemaMetadata.load(graphDb), log);
+    }
+
+    public CsvTopologyLoader(GraphDatabaseService graphDb, SchemaMetadata schemaMetadata, Log log) {
         this.graphDb = graphDb;
+        this.schemaMetadata = schemaMetadata;
         this.log = log;
-        this.txManager = new TransactionManager(graphDb);
+        this.txManager = new TransactionManager(graphDb, new TransactionManager.TransactionListener() {
+            @Override
+            public void committed() {
+                tagCache.committed();
+            }
+
+            @Override
+            public void rolledBack() {
+                tagCache.rolledBack();
+            }
+        }, transientRetry);
 
-        this.networkElementFactory = UniqueElementFactory.networkElementFactory(graphDb);
+        this.networkElementFactory = UniqueElementFactory.networkElementFactory(graphDb, tagCache);
         UniqueElementFactory scopeElementFactory = new UniqueElementFactory(graphDb, Labels.SCOPE, Optional.empty());
         this.overridableElementFactory = OverridableElementFactory.networkElementFactory(graphDb);
 
-        this.planetFactory = new TemplatedPlanetFactory(graphDb);
+        this.planetFactory = new TemplatedPlanetFactory(graphDb, schemaMetadata.planetTemplates);
         this.elementScopeSlider = new ElementScopeSlider(planetFactory, log);
 
         topologyLoaderUtils = new TopologyLoaderUtils(scopeElementFactory);
 
-        try (Transaction tx = graphDb.beginTx()) {
-            this.metaSchema = new MetaSchema(tx);
-        }
+        this.metaSchema = schemaMetadata.metaSchema;
+        this.executors = ImportExecutors.of(graphDb);
+        this.cascadeDeleteEngine = new CascadeDeleteEngine(graphDb, metaSchema, networkElementFactory, log);
     }
 
     public Neo4jLoadResult loadFromStream(InputStream is, String username) throws IOException, CsvValidationException {
-        CSVReader reader = new CSVReaderBuilder(new InputStreamReader(is))
-                .withFieldAsNull(CSVReaderNullFieldIndicator.EMPTY_SEPARATORS)
-                .build();
+        return loadFromStream(is, username, CsvImportOptions.DEFAULT);
+    }
+
+    public Neo4jLoadResult loadFromStream(InputStream is, String username, CsvImportOptions options) throws IOException, CsvValidationException {
+        return loadFromStream(is, username, options, new ImportProgress());
+    }
+
+    /**
+     * @param progress updated as the lines are imported, the import stops at the next transaction boundary once it is
+     *                 cancelled.
+     */
+    public Neo4jLoadResult loadFromStream(InputStream is, String username, CsvImportOptions options, ImportProgress progress)
+            throws IOException, CsvValidationException {
+        return loadFromStream(is, username, options, progress, ImportListener.NONE);
+    }
 
-        String[] nextLine;
+    /**
+     * @param listener receives the imported elements and the failing lines as they are committed.
+     */
+    public Neo4jLoadResult loadFromStream(InputStream is, String username, CsvImportOptions options, ImportProgress progress,
+                                          ImportListener listener) throws IOException, CsvValidationException {
+        CsvInput input = CsvInput.open(is, options);
+        CsvTokenizer reader = input.tokenizer(options.tokenizer);
 
-        int lineIndex = 0;
-        int imported = 0;
-        Map<TypedScope, Set<String>> importedElementByScope = Maps.newHashMap();
-        List<String[]> currentTransaction = Lists.newArrayListWithCapacity(MAX_TRANSACTION_COUNT);
-        Map<Integer, String> errors = Maps.newHashMap();
+        if (options.dryRun) {
+            return dryRun(reader, input, options, progress, listener);
+        }
+
+        if (options.scopeWriters > 1) {
+            return importByScope(reader, input, username, options, progress, listener);
+        }
 
-        Transaction tx = graphDb.beginTx();
+        CsvImport csvImport = startImport(username, options, progress, listener);
         try {
             CsvMappingStrategy strategy = CsvMappingStrategy.captureHeader(reader, metaSchema);
             checkKeyAttributesExist(strategy);
             checkCrossAttributeDefinitionExists(strategy);
-            while ((nextLine = reader.readNext()) != null) {
-                try {
-                    ImmutableSet<String> scopeKeyTypes = strategy.guessKeyTypesForLine(metaSchema.getScopeTypes(), nextLine);
-                    ImmutableMultimap<TypedScope, String> importedElementByScopeInLine = importLine(nextLine, scopeKeyTypes, strategy, username, tx);
-                    for (Entry<TypedScope, Collection<String>> importedElements : importedElementByScopeInLine.asMap().entrySet()) {
-                        Set<String> set = importedElementByScope.computeIfAbsent(importedElements.getKey(), k -> Sets.newHashSet());
-                        set.addAll(importedElements.getValue());
-                    }
-                    imported++;
-                    currentTransaction.add(nextLine);
-                    if (currentTransaction.size() >= MAX_TRANSACTION_COUNT) {
-                        tx = txManager.renewTransaction(tx);
-                        currentTransaction.clear();
-                    }
-                } catch (ImportException e) {
-                    log.debug(e.getLocalizedMessage());
-                    log.debug(Arrays.toString(nextLine));
-                    tx = renewTransaction(strategy, currentTransaction, username, tx);
-                    errors.put(lineIndex, e.getMessage());
-                } catch (Exception e) {
-                    log.error("error", e);
-                    if (log.isDebugEnabled()) {
-                        log.debug("STACKTRACE", e);
-                        log.debug(Arrays.toString(nextLine));
-                    }
-                    tx = renewTransaction(strategy, currentTransaction, username, tx);
-                    errors.put(lineIndex, e.getMessage());
+            int firstLine = csvImport.resume(strategy.getHeader());
+            try (CsvImportPipeline pipeline = CsvImportPipeline.start(reader, strategy, schemaMetadata, false, firstLine, executors)) {
+                ParsedLine parsedLine;
+                while (!csvImport.isCancelled() && (parsedLine = pipeline.next()) != null) {
+                    csvImport.importLine(parsedLine);
                 }
-                lineIndex++;
             }
-            tx.commit();
+            csvImport.commit();
+            csvImport.finish();
         } finally {
-            tx.close();
+            csvImport.close();
         }
 
-        return new Neo4jLoadResult(imported, errors, importedElementByScope);
+        return csvImport.result(input);
     }
 
-    private void checkKeyAttributesExist(CsvMappingStrategy strategy) throws IOException {
-        for (String keyAttribute : strategy.getAllElementsType()) {
-            if (!metaSchema.keyAttributeExists(keyAttribute)) {
-                throw new IOException(String.format("Column '%s' is not a known keyAttribute.", keyAttribute));
+    /**
+     * The lines of each client scope are written by one of the scope writers, each one being a loader of its own : the
+     * tag cache and the counters of a loader are not shared between threads.
+     */
+    private Neo4jLoadResult importByScope(CsvTokenizer reader, CsvInput input, String username, CsvImportOptions options,
+                                          ImportProgress progress, ImportListener listener) throws IOException, CsvValidationException {
+        ImportListener sharedListener = ScopePartitionedImport.synchronizedListener(listener);
+        List<CsvImport> partitionWriters = Lists.newArrayList();
+        for (int i = 0; i < options.scopeWriters; i++) {
+            partitionWriters.add(new CsvTopologyLoader(graphDb, schemaMetadata, log).startImport(username, options, progress, sharedListener));
+        }
+        ScopePartitionedImport scopeImport = new ScopePartitionedImport(startImport(username, options, progress, sharedListener),
+                partitionWriters, progress, options.maxErrors, executors);
+        try (scopeImport) {
+            CsvMappingStrategy strategy = CsvMappingStrategy.captureHeader(reader, metaSchema);
+            checkKeyAttributesExist(strategy);
+            checkCrossAttributeDefinitionExists(strategy);
+            try (CsvImportPipeline pipeline = CsvImportPipeline.start(reader, strategy, schemaMetadata, true, 0, executors)) {
+                scopeImport.importAll(pipeline);
             }
         }
+        return scopeImport.result(input);
     }
 
-    private Transaction renewTransaction(CsvMappingStrategy strategy, List<String[]> currentTransaction, String username, Transaction tx) {
-        return txManager.properlyRenewTransaction(tx, currentTransaction, (ct, transaction) -> {
-            ImmutableSet<String> scopeKeyTypes = strategy.guessKeyTypesForLine(metaSchema.getScopeTypes(), ct);
-            importLine(ct, scopeKeyTypes, strategy, username, transaction);
-        });
+    private CsvImport startImport(String username, CsvImportOptions options, ImportProgress progress, ImportListener listener) {
+        tagCache.clear();
+        transientRetry.reset();
+        skippedRelocalizations = 0;
+        unchangedElements.clear();
+        changedElements.clear();
+        return new CsvImport(username, options, progress, listener);
     }
 
-    private ImmutableMultimap<TypedScope, String> importLine(String[] line, ImmutableSet<String> scopeKeytypes, CsvMappingStrategy strategy,
-                                                             String username, Transaction tx) {
-        ImmutableMap<String, Set<String>> lineage = strategy.guessElementCreationStrategy(scopeKeytypes, tx);
-        LineMappingStrategy lineStrategy = new LineMappingStrategy(metaSchema, strategy, line);
+    private Neo4jLoadResult dryRun(CsvTokenizer reader, CsvInput input, CsvImportOptions options, ImportProgress progress,
+                                   ImportListener listener) throws IOException, CsvValidationException {
+        CsvMappingStrategy strategy = CsvMappingStrategy.captureHeader(reader, metaSchema);
+        checkKeyAttributesExist(strategy);
+        checkCrossAttributeDefinitionExists(strategy);
+        try (CsvImportPipeline pipeline = CsvImportPipeline.start(reader, strategy, schemaMetadata, executors)) {
+            return new CsvDryRun(graphDb, metaSchema, executors, log).run(pipeline, input, options, progress, listener);
+        }
+    }
 
-        Map<String, Action> markedToDelete = strategy.getAllElementsType().stream()
-                .map(keyType -> lineStrategy.getValue(keyType, Action.STATUS_HEADER)
-                        .flatMap(Action::fromString)
-                        .map(action -> Maps.immutableEntry(keyType, action)))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+    private void logLineError(ParsedLine parsedLine, Exception e) {
+        if (e instanceof ImportException) {
+            log.debug(e.getLocalizedMessage());
+            log.debug(Arrays.toString(parsedLine.line));
+        } else {
+            log.error("error", e);
+            if (log.isDebugEnabled()) {
+                log.debug("STACKTRACE", e);
+                log.debug(Arrays.toString(parsedLine.line));
+            }
+        }
+    }
 
-        if (markedToDelete.values().stream()
-                .distinct()
-                .count() > 1) {
-            throw new IllegalArgumentException("Several elements have been marked to delete with different strategy : " + markedToDelete);
+    private void checkKeyAttributesExist(CsvMappingStrategy strategy) throws IOException {
+        for (String keyAttribute : strategy.getAllElementsType()) {
+            if (!metaSchema.keyAttributeExists(keyAttribute)) {
+                throw new IOException(String.format("Column '%s' is not a known keyAttribute.", keyAttribute));
+            }
         }
+    }
 
-        Map<Tuple2<String, String>, Action> xRelationsToDelete = strategy.getMultiElementHeader()
-                .stream()
-                .filter(header -> header.propertyName.equals(Action.STATUS_HEADER))
-                .map(header -> Maps.immutableEntry(Tuples.of(header.elementName, header.targetElementName), lineStrategy.getValue(header.index).flatMap(Action::fromString)))
-                .filter(e -> e.getValue().isPresent())
-                .collect(Collectors.toMap(Entry::getKey, e -> e.getValue().get()));
+    private ImmutableMultimap<TypedScope, String> importLine(ParsedLine parsedLine, String username, CsvImportOptions options, Transaction tx) {
+        LineMappingStrategy lineStrategy = parsedLine.mapping;
+        CsvMappingStrategy strategy = lineStrategy.strategy;
+        ImportPlan plan = strategy.getImportPlan(parsedLine.scopeKeyTypes);
 
-        if (xRelationsToDelete.values().stream()
-                .anyMatch(action -> action != Action.DELETE_NO_CASCADE)) {
-            throw new IllegalArgumentException("At least one relation is marked to delete with any other strategy than DELETE_NO_CASCADE : "
-                    + markedToDelete);
-        }
+        Map<String, Action> markedToDelete = lineStrategy.getElementsToDelete();
+        Map<Tuple2<String, String>, Action> xRelationsToDelete = lineStrategy.getRelationsToDelete();
+        LineValidator.checkDeleteActions(markedToDelete, xRelationsToDelete);
 
         Set<String> allElementToDeleteBld = ImmutableSet.of();
         if (!markedToDelete.isEmpty()) {
@@ -220,12 +273,12 @@ public final class CsvTopologyLoader {
             switch (action) {
                 case DELETE_CASCADE_ALL:
                     allElementToDeleteBld = markedToDelete.keySet().stream()
-                            .flatMap(elt -> Stream.concat(Stream.of(elt), metaSchema.getAllChildren(tx, elt).stream()))
+                            .flatMap(elt -> Stream.concat(Stream.of(elt), metaSchema.getAllChildren(elt).stream()))
                             .collect(Collectors.toSet());
                     break;
                 case DELETE_CASCADE:
                     allElementToDeleteBld = markedToDelete.keySet().stream()
-                            .flatMap(elt -> Stream.concat(Stream.of(elt), metaSchema.getStrongChildren(tx, elt).stream()))
+                            .flatMap(elt -> Stream.concat(Stream.of(elt), metaSchema.getStrongChildren(elt).stream()))
                             .collect(Collectors.toSet());
                     break;
                 case DELETE_NO_CASCADE:
@@ -235,40 +288,49 @@ public final class CsvTopologyLoader {
         }
         Set<String> allElementToDelete = ImmutableSet.copyOf(allElementToDeleteBld);
 
+        LineChanges changes = new LineChanges(options.skipUnchanged);
+
         // Update the elements in the CSV line that cannot be created in any case (because required parent are missing in the CSV line)
-        Map<String, Optional<UniqueEntity<Node>>> elementsWithoutParents = Sets.difference(strategy.getAllElementsType(), lineage.keySet()).stream()
-                .filter(key -> !allElementToDelete.contains(key))
-                .map(key -> Maps.immutableEntry(key, updateElement(lineStrategy, key, username, tx)))
-                .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+        Map<String, Optional<UniqueEntity<Node>>> nodesBuilder = Maps.newHashMap();
+        for (String key : plan.elementsToUpdate) {
+            if (!allElementToDelete.contains(key)) {
+                nodesBuilder.put(key, updateElement(plan, lineStrategy, key, username, changes, tx));
+            }
+        }
 
         // Create elements
-        Map<String, Optional<UniqueEntity<Node>>> elementsWithParents = lineage.keySet().stream()
-                .filter(key -> !allElementToDelete.contains(key))
-                .map(key -> Maps.immutableEntry(key, createElement(lineStrategy, key, username, tx)))
-                .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+        for (String key : plan.elementsToCreate) {
+            if (!allElementToDelete.contains(key)) {
+                nodesBuilder.put(key, createElement(plan, lineStrategy, key, username, changes, tx));
+            }
+        }
 
-        Map<String, Optional<UniqueEntity<Node>>> nodesBuilder = Maps.newHashMap();
-        nodesBuilder.putAll(elementsWithoutParents);
-        nodesBuilder.putAll(elementsWithParents);
         markedToDelete.keySet().forEach(keyType -> nodesBuilder.put(keyType, Optional.empty()));
         nodesBuilder.put(SCOPE_GLOBAL_ATTRIBUTE, Optional.of(UniqueEntity.existing(metaSchema.getTheGlobalScopeNode(tx))));
 
         ImmutableMap<String, Optional<UniqueEntity<Node>>> nodes = ImmutableMap.copyOf(nodesBuilder);
 
-        createCrossAttributeLinks(lineStrategy, nodes);
+        createCrossAttributeLinks(plan, lineStrategy, nodes);
 
-        createConnectLink(lineStrategy, nodes, tx);
+        createConnectLink(plan, lineStrategy, nodes, tx);
 
-        checkRequiredProperties(nodes, lineStrategy, tx);
+        checkRequiredProperties(plan, nodes, lineStrategy, changes);
 
         if (!markedToDelete.isEmpty()) {
-            deleteElements(lineStrategy, markedToDelete.keySet(), markedToDelete.values().iterator().next(), username, tx); // We have checked that only one distinct action is present
+            Action action = markedToDelete.values().iterator().next();
+            if (action == Action.DELETE_NO_CASCADE) {
+                deleteElements(lineStrategy, markedToDelete.keySet(), tx);
+            } else {
+                // What remains of a cascade too large for the transaction, see CsvImport#deleteLargeCascade
+                CascadeDeleteEngine.Plan cascade = cascadeDeleteEngine.collect(tagsToDelete(lineStrategy), action, tx);
+                cascadeDeleteEngine.delete(cascade, tx, tagCache::invalidate);
+            }
         }
         if (!xRelationsToDelete.isEmpty()) {
             deleteRelations(lineStrategy, xRelationsToDelete.keySet(), username, tx);
         }
 
-        return createOrUpdatePlanetLink(lineStrategy, nodes, tx);
+        return createOrUpdatePlanetLink(plan, lineStrategy, nodes, changes, tx);
     }
 
     private void deleteRelations(LineMappingStrategy line, Set<Tuple2<String, String>> xRelationToDelete, String username, Transaction tx) {
@@ -288,91 +350,96 @@ public final class CsvTopologyLoader {
                 });
     }
 
-    private void deleteElements(LineMappingStrategy line, Set<String> keyTypes, Action action,
-                                String username, Transaction tx) {
-        switch (action) {
-            case DELETE_CASCADE_ALL:
-            case DELETE_CASCADE:
-                keyTypes.forEach(keyType -> deleteElement(line, keyType, action, username, tx));
-                break;
-            case DELETE_NO_CASCADE:
-                List<String> sortedKeyTypes = sortKeyTypes(keyTypes, tx);
-                sortedKeyTypes.forEach(keyType -> deleteElement(line, keyType, action, username, tx));
-                break;
-        }
+    private static List<String> tagsToDelete(LineMappingStrategy line) {
+        List<String> tags = Lists.newArrayList();
+        line.getElementsToDelete().keySet().forEach(keyType -> line.getValue(keyType, TAG).ifPresent(tags::add));
+        return tags;
+    }
+
+    private void deleteElements(LineMappingStrategy line, Set<String> keyTypes, Transaction tx) {
+        List<String> sortedKeyTypes = sortKeyTypes(keyTypes, tx);
+        sortedKeyTypes.forEach(keyType -> deleteElement(line, keyType, Action.DELETE_NO_CASCADE, tx));
     }
 
     @VisibleForTesting
     List<String> sortKeyTypes(Set<String> keyTypes, Transaction tx) {
         Set<String> highLevelElements = Sets.newHashSet(keyTypes);
         keyTypes.stream()
-                .map(keyType -> metaSchema.getStrongChildren(tx, keyType))
+                .map(keyType -> metaSchema.getStrongChildren(keyType))
                 .forEach(highLevelElements::removeAll);
 
         ArrayList<String> list = Lists.newArrayList(highLevelElements);
         highLevelElements.stream()
-                .flatMap(elt -> metaSchema.getStrongChildren(tx, elt).stream())
+                .flatMap(elt -> metaSchema.getStrongChildren(elt).stream())
                 .filter(keyTypes::contains)
                 .forEach(list::add);
         return ImmutableList.copyOf(list).reverse();
 
     }
 
-    private void checkRequiredProperties(ImmutableMap<String, Optional<UniqueEntity<Node>>> nodes,
+    private void checkRequiredProperties(ImportPlan plan,
+                                         ImmutableMap<String, Optional<UniqueEntity<Node>>> nodes,
                                          LineMappingStrategy line,
-                                         Transaction tx) {
+                                         LineChanges changes) {
         for (Entry<String, Optional<UniqueEntity<Node>>> nodeEntry : nodes.entrySet()) {
             String keyAttribute = nodeEntry.getKey();
-            Optional<UniqueEntity<Node>> node = nodeEntry.getValue();
-            ImmutableSet<String> requiredProperties = metaSchema.getRequiredProperties(keyAttribute);
-            for (String requiredProperty : requiredProperties) {
-                node.ifPresent(entity -> {
-                    Object value = inferFromLine(keyAttribute, requiredProperty, line, tx)
-                            .map(Object.class::cast)
-                            .orElseGet(() -> inferValueFromParent(keyAttribute, requiredProperty, nodes, tx)
-                                    .orElseThrow(() -> new IllegalArgumentException(String.format("%s.%s required column is missing. Cannot be inferred from parents neither. Line not imported.", keyAttribute, requiredProperty))));
-
-                    if (!value.equals(KEEP_VALUE_TOKEN)) {
-                        entity.entity.setProperty(requiredProperty, value);
+            ImmutableList<ImportPlan.RequiredProperty> requiredProperties = plan.getRequiredProperties(keyAttribute);
+            if (requiredProperties.isEmpty() || nodeEntry.getValue().isEmpty()
+                    || changes.unchanged.contains(nodeEntry.getValue().get().entity)) {
+                continue;
+            }
+            Node node = nodeEntry.getValue().get().entity;
+            ImmutableSet<String> planetProperties = planetFactory.getPlanetProperties(keyAttribute);
+            for (ImportPlan.RequiredProperty requiredProperty : requiredProperties) {
+                Object value = inferFromLine(requiredProperty, line);
+                if (value == null) {
+                    value = inferFromNodes(requiredProperty, nodes);
+                }
+                if (value == null) {
+                    throw new IllegalArgumentException(String.format("%s.%s required column is missing. Cannot be inferred from parents neither. Line not imported.", keyAttribute, requiredProperty.name));
+                }
+
+                if (!value.equals(KEEP_VALUE_TOKEN)) {
+                    if (planetProperties.contains(requiredProperty.name)
+                            && !Objects.deepEquals(value, node.getProperty(requiredProperty.name, null))) {
+                        changes.planetChanges.add(node);
                     }
-                });
+                    node.setProperty(requiredProperty.name, value);
+                }
             }
         }
     }
 
-    private Optional<String> inferFromLine(String keyAttribute, String requiredProperty, LineMappingStrategy line, Transaction tx) {
-        Optional<String> maybeValue = line.getValue(keyAttribute, requiredProperty);
-        if (maybeValue.isEmpty()) {
-            maybeValue = metaSchema.getRequiredParents(tx, keyAttribute)
-                    .map(parentKeyAttribute -> inferFromLine(parentKeyAttribute, requiredProperty, line, tx).orElse(null))
-                    .filter(Objects::nonNull)
-                    .findFirst();
+    private static String inferFromLine(ImportPlan.RequiredProperty requiredProperty, LineMappingStrategy line) {
+        for (int column : requiredProperty.columns) {
+            Optional<String> value = line.getValue(column);
+            if (value.isPresent()) {
+                return value.get();
+            }
         }
-        return maybeValue;
+        return null;
     }
 
-
-    private Optional<Object> inferValueFromParent(String keyAttribute, String requiredProperty, ImmutableMap<String, Optional<UniqueEntity<Node>>> nodes, Transaction tx) {
-        Optional<Object> maybeValue = nodes.getOrDefault(keyAttribute, Optional.empty())
-                .flatMap(node -> Optional.ofNullable(node.entity.getProperty(requiredProperty, null)));
-        if (maybeValue.isEmpty()) {
-            maybeValue = metaSchema.getRequiredParents(tx, keyAttribute)
-                    .map(parentKeyAttribute -> inferValueFromParent(parentKeyAttribute, requiredProperty, nodes, tx).orElse(null))
-                    .filter(Objects::nonNull)
-                    .findFirst();
+    private static Object inferFromNodes(ImportPlan.RequiredProperty requiredProperty, ImmutableMap<String, Optional<UniqueEntity<Node>>> nodes) {
+        for (String keyType : requiredProperty.sourceKeyTypes) {
+            Optional<UniqueEntity<Node>> node = nodes.get(keyType);
+            if (node != null && node.isPresent()) {
+                Object value = node.get().entity.getProperty(requiredProperty.name, null);
+                if (value != null) {
+                    return value;
+                }
+            }
         }
-        return maybeValue;
+        return null;
     }
 
-    private void createCrossAttributeLinks(LineMappingStrategy line, Map<String, Optional<UniqueEntity<Node>>> nodes) {
-        Map<String, Relationship> crossAttributeRelationships = createCrossAttributeRelationships(nodes);
-        for (MultiElementHeader meHeader : line.strategy.getMultiElementHeader()) {
-            String key = meHeader.elementName + ELEMENT_SEPARATOR + meHeader.targetElementName;
-            Optional<UniqueEntity<Node>> fromNode = nodes.get(meHeader.elementName);
-            Optional<UniqueEntity<Node>> toNode = nodes.get(meHeader.targetElementName);
+    private void createCrossAttributeLinks(ImportPlan plan, LineMappingStrategy line, Map<String, Optional<UniqueEntity<Node>>> nodes) {
+        for (ImportPlan.CrossAttributeLink link : plan.crossAttributeLinks) {
+            Optional<UniqueEntity<Node>> fromNode = nodes.getOrDefault(link.from, Optional.empty());
+            Optional<UniqueEntity<Node>> toNode = nodes.getOrDefault(link.to, Optional.empty());
             if (fromNode.isPresent() && toNode.isPresent()) {
-                Relationship relationship = crossAttributeRelationships.get(key);
-                if (relationship != null) {
+                Relationship relationship = createOutgoingUniqueLink(fromNode.get().entity, toNode.get().entity, RelationshipTypes.CROSS_ATTRIBUTE, link.type);
+                for (MultiElementHeader meHeader : link.headers) {
                     persistElementProperty(meHeader, line, relationship);
                 }
             }
@@ -389,34 +456,17 @@ public final class CsvTopologyLoader {
         }
     }
 
-    private Map<String, Relationship> createCrossAttributeRelationships(Map<String, Optional<UniqueEntity<Node>>> nodes) {
-        Map<String, Relationship> multiElementLinks = Maps.newHashMap();
-        for (Entry<String, ImmutableSet<scala.Tuple2<String, String>>> rel : metaSchema.getCrossAttributesRelations().entrySet()) {
-            String keyType = rel.getKey();
-            Optional<UniqueEntity<Node>> startNode = nodes.getOrDefault(keyType, Optional.empty());
-            startNode.ifPresent(fromNode -> {
-                for (scala.Tuple2<String, String> endKeyType : rel.getValue()) {
-                    if (!keyType.equals(endKeyType._1())) {
-                        Optional<UniqueEntity<Node>> optEndNode = nodes.getOrDefault(endKeyType._1(), Optional.empty());
-                        optEndNode.ifPresent(toNode -> {
-                            Relationship link = createOutgoingUniqueLink(fromNode.entity, toNode.entity, RelationshipTypes.CROSS_ATTRIBUTE, endKeyType._2());
-                            String key = keyType + ELEMENT_SEPARATOR + endKeyType._1();
-                            multiElementLinks.put(key, link);
-                        });
-                    }
-                }
-            });
-        }
-        return multiElementLinks;
-    }
-
-    private void createConnectLink(LineMappingStrategy strategy, Map<String, Optional<UniqueEntity<Node>>> nodes, Transaction tx) {
-        nodes.forEach((keyType, oNode) ->
-                oNode.ifPresent(node -> linkToParents(strategy, keyType, node, nodes, tx)));
+    private void createConnectLink(ImportPlan plan, LineMappingStrategy strategy, Map<String, Optional<UniqueEntity<Node>>> nodes,
+                                   Transaction tx) {
+        // Also for the unchanged elements : a parent deleted and created again has lost its links to them
+        nodes.forEach((keyType, oNode) -> oNode
+                .ifPresent(node -> linkToParents(plan, strategy, keyType, node, nodes, tx)));
     }
 
-    private ImmutableMultimap<TypedScope, String> createOrUpdatePlanetLink(LineMappingStrategy lineStrategy,
+    private ImmutableMultimap<TypedScope, String> createOrUpdatePlanetLink(ImportPlan plan,
+                                                                           LineMappingStrategy lineStrategy,
                                                                            Map<String, Optional<UniqueEntity<Node>>> nodes,
+                                                                           LineChanges changes,
                                                                            Transaction tx) {
         ImmutableMultimap.Builder<TypedScope, String> importedElementByScopeBuilder = ImmutableMultimap.builder();
         for (Entry<String, Optional<UniqueEntity<Node>>> node : nodes.entrySet()) {
@@ -427,24 +477,36 @@ public final class CsvTopologyLoader {
             if (GraphModelConstants.SCOPE_GLOBAL_ATTRIBUTE.equals(keyAttribute)) continue;
 
             importedElementByScopeBuilder.put(
-                    reviewPlanetElement(lineStrategy, element, nodes, tx),
+                    reviewPlanetElement(plan, lineStrategy, element, nodes, changes, tx),
                     element.entity.getProperty(GraphModelConstants.TAG).toString()
             );
         }
         return importedElementByScopeBuilder.build();
     }
 
-    private TypedScope reviewPlanetElement(LineMappingStrategy lineStrategy,
+    private TypedScope reviewPlanetElement(ImportPlan plan,
+                                           LineMappingStrategy lineStrategy,
                                            UniqueEntity<Node> element,
                                            Map<String, Optional<UniqueEntity<Node>>> nodes,
+                                           LineChanges changes,
                                            Transaction tx) {
         String keyType = element.entity.getProperty(_TYPE).toString();
 
-        Optional<Scope> scopeFromImport = lineStrategy.tryToGuessElementScopeInLine(keyType, tx);
+        Optional<Scope> scopeFromImport = lineStrategy.tryToGuessElementScopeInLine(keyType);
         boolean overridable = metaSchema.isOverridable(keyType);
 
-        Scope scopeFromDatabase = topologyLoaderUtils.getScopeFromElementPlanet(element.entity, tx)
-                .orElseGet(() -> !overridable ? getScopeFromParent(keyType, nodes, tx).orElse(null) : null);
+        Optional<Scope> scopeFromPlanet = topologyLoaderUtils.getScopeFromElementPlanet(element.entity, tx);
+        if (scopeFromPlanet.isPresent() && !element.wasCreated && !changes.planetChanges.contains(element.entity)) {
+            String scopeTag = scopeFromPlanet.get().tag;
+            if (scopeFromImport.map(scope -> scope.tag.equals(scopeTag)).orElse(true)) {
+                // Neither the scope nor the properties matched by the planet templates changed, the planet is the same
+                skippedRelocalizations++;
+                return new TypedScope(scopeTag, keyType);
+            }
+        }
+
+        Scope scopeFromDatabase = scopeFromPlanet
+                .orElseGet(() -> !overridable ? getScopeFromParent(plan, keyType, nodes, tx).orElse(null) : null);
 
         return scopeFromImport
                 .map(scope -> {
@@ -453,7 +515,7 @@ public final class CsvTopologyLoader {
                         // slide the element to the new scope
                         elementScopeSlider.slide(element.entity, scope, tx);
                     }
-                    UniqueEntity<Node> planet = planetFactory.localizePlanetForElement(scope, element.entity, tx);
+                    UniqueEntity<Node> planet = localizePlanet(lineStrategy, keyType, scope, element.entity, tx);
                     replaceRelationships(OUTGOING, element.entity, ATTRIBUTE, ImmutableSet.of(planet.entity));
                     return new TypedScope(scope.tag, keyType);
                 })
@@ -463,37 +525,44 @@ public final class CsvTopologyLoader {
                         throw new IllegalStateException(String.format("Inconsistent element '%s' in db : it is not linked to a planet which is required. Fix this.", tag));
                     } else {
                         // review the planet (in case the element has been created)
-                        UniqueEntity<Node> planet = planetFactory.localizePlanetForElement(scopeFromDatabase, element.entity, tx);
+                        UniqueEntity<Node> planet = localizePlanet(lineStrategy, keyType, scopeFromDatabase, element.entity, tx);
                         replaceRelationships(OUTGOING, element.entity, ATTRIBUTE, ImmutableSet.of(planet.entity));
                         return new TypedScope(scopeFromDatabase.tag, keyType);
                     }
                 });
     }
 
-    private Optional<Scope> getScopeFromParent(String keyAttribute, Map<String, Optional<UniqueEntity<Node>>> nodes,
+    private UniqueEntity<Node> localizePlanet(LineMappingStrategy line, String keyType, Scope scope, Node element, Transaction tx) {
+        Optional<String> planetTemplate = line.getPlanetTemplate(keyType);
+        if (planetTemplate.isPresent()) {
+            return planetFactory.localizePlanet(planetTemplate.get(), scope, tx);
+        }
+        return planetFactory.localizePlanetForElement(scope, element, tx);
+    }
+
+    private Optional<Scope> getScopeFromParent(ImportPlan plan, String keyAttribute, Map<String, Optional<UniqueEntity<Node>>> nodes,
                                                Transaction tx) {
-        return metaSchema.getRequiredParent(tx, keyAttribute)
+        return plan.getRequiredParents(keyAttribute).stream().findFirst()
                 .flatMap(requiredParent ->
                         nodes.getOrDefault(requiredParent, Optional.empty())
                                 .flatMap(nodeUniqueEntity -> topologyLoaderUtils.getScopeFromElementPlanet(nodeUniqueEntity.entity, tx)));
     }
 
-    private void linkToParents(LineMappingStrategy strategy,
+    private void linkToParents(ImportPlan plan,
+                               LineMappingStrategy strategy,
                                String keyType,
                                UniqueEntity<Node> keyTypeNode,
                                Map<String, Optional<UniqueEntity<Node>>> nodes,
                                Transaction tx) {
-        ImmutableList<Relationship> relationships = metaSchema.getParentRelations(tx).get(keyType);
-        if (relationships == null || relationships.isEmpty()) {
+        ImmutableList<ImportPlan.ParentLink> parentLinks = plan.getParentLinks(keyType);
+        if (parentLinks.isEmpty()) {
             return;
         }
 
-        String scopeAttribute = strategy.guessScopeAttributeInLine(keyType, tx);
+        String scopeAttribute = strategy.guessScopeAttributeInLine(keyType);
 
-        for (Relationship relationship : relationships) {
-            Node endNode = relationship.getEndNode();
-            String toKeytype = endNode.getProperty(GraphModelConstants._TYPE).toString() + GraphModelConstants.KEYTYPE_SEPARATOR +
-                    endNode.getProperty(NAME).toString();
+        for (ImportPlan.ParentLink parentLink : parentLinks) {
+            String toKeytype = parentLink.keyType;
 
             if (metaSchema.isScope(toKeytype) && !scopeAttribute.equals(toKeytype)) {
                 continue;
@@ -501,8 +570,7 @@ public final class CsvTopologyLoader {
 
             Optional<UniqueEntity<Node>> parent = nodes.getOrDefault(toKeytype, Optional.empty());
             if (parent.isEmpty()) {
-                String cardinality = relationship.getProperty(GraphModelConstants.CARDINALITY, GraphModelConstants.CARDINALITY_UNIQUE_PARENT).toString();
-                if (keyTypeNode.wasCreated && GraphModelConstants.CARDINALITY_UNIQUE_PARENT.equals(cardinality)) {
+                if (keyTypeNode.wasCreated && GraphModelConstants.CARDINALITY_UNIQUE_PARENT.equals(parentLink.cardinality)) {
                     Object tagProperty = keyTypeNode.entity.getProperty(TAG);
                     throw new MissingElementException(String.format("Unable to import '%s' because its required parent of type '%s' is not found. Line is ignored.", tagProperty, toKeytype));
                 } else {
@@ -517,10 +585,9 @@ public final class CsvTopologyLoader {
                                                   Node parent,
                                                   org.neo4j.graphdb.RelationshipType linkType,
                                                   String typeAttr) {
-        for (Relationship next : node.getRelationships(Direction.OUTGOING, linkType)) {
-            if (next.getEndNode().equals(parent)) {
-                return next;
-            }
+        Optional<Relationship> existing = RelationshipUtils.findRelationship(node, parent, linkType);
+        if (existing.isPresent()) {
+            return existing.get();
         }
         Relationship relationship = node.createRelationshipTo(parent, linkType);
         if (typeAttr != null) {
@@ -529,14 +596,13 @@ public final class CsvTopologyLoader {
         return relationship;
     }
 
-    private Optional<UniqueEntity<Node>> createElement(LineMappingStrategy line, String elementKeyType, String username, Transaction tx) {
+    private Optional<UniqueEntity<Node>> createElement(ImportPlan plan, LineMappingStrategy line, String elementKeyType, String username,
+                                                       LineChanges changes, Transaction tx) {
         if (GraphModelConstants.SCOPE_GLOBAL_ATTRIBUTE.equals(elementKeyType)) {
             return Optional.of(UniqueEntity.existing(tx.findNode(Labels.SCOPE, "tag", GraphModelConstants.SCOPE_GLOBAL_TAG)));
         }
 
-        Set<String> todelete = metaSchema.getMonoParentRelations(tx, elementKeyType)
-                .filter(line.strategy::hasKeyType)
-                .collect(Collectors.toSet());
+        Set<String> todelete = plan.getMonoParentsInHeader(elementKeyType);
 
         Optional<String> tagValue = line.getValue(elementKeyType, TAG);
         if (tagValue.isEmpty()) {
@@ -548,12 +614,19 @@ public final class CsvTopologyLoader {
 
         UniqueEntity<Node> uniqueEntity;
         if (isOverridable) {
-            Scope scope = line.guessElementScopeInLine(elementKeyType, tx);
+            Scope scope = line.guessElementScopeInLine(elementKeyType);
             uniqueEntity = overridableElementFactory.getOrOverride(scope, GraphModelConstants.TAG, tag, username, tx);
+            // The tag may now be shared by several elements, which the cache cannot resolve
+            tagCache.invalidate(tag);
         } else {
             uniqueEntity = networkElementFactory.getOrCreateWithOutcome(GraphModelConstants.TAG, tag, username, tx);
         }
 
+        OptionalLong fingerprint = fingerprint(plan, line, elementKeyType, changes);
+        if (isUnchanged(elementKeyType, uniqueEntity, fingerprint, changes)) {
+            return Optional.of(uniqueEntity);
+        }
+
         Iterable<String> schemasToApply = getSchemasToApply(line, elementKeyType);
         boolean isScope = metaSchema.isScope(elementKeyType);
         if (uniqueEntity.wasCreated) {
@@ -563,6 +636,7 @@ public final class CsvTopologyLoader {
                 Optional<String> name = line.getValue(nameIndex);
                 if (name.isEmpty()) {
                     uniqueEntity.entity.delete();
+                    tagCache.invalidate(tag);
                     return Optional.empty();
                 }
 
@@ -590,14 +664,13 @@ public final class CsvTopologyLoader {
                 }
             });
         }
-        ImmutableCollection<HeaderElement> elementHeaders = line.strategy.getElementHeaders(elementKeyType);
-        persistElementProperties(line, elementHeaders, uniqueEntity.entity);
+        persistElementProperties(line, elementKeyType, uniqueEntity.entity, changes);
+        persistFingerprint(uniqueEntity.entity, fingerprint);
 
         return Optional.of(uniqueEntity);
     }
 
-    private void deleteElement(LineMappingStrategy line, String elementKeyType, Action action,
-                               String username, Transaction tx) {
+    private void deleteElement(LineMappingStrategy line, String elementKeyType, Action action, Transaction tx) {
         line.getValue(elementKeyType, TAG)
                 .map(tag -> networkElementFactory.getWithOutcome(TAG, tag, tx))
                 .ifPresent(entity -> deleteElementRecursive(entity, elementKeyType, action, Sets.newConcurrentHashSet(), tx));
@@ -614,7 +687,7 @@ public final class CsvTopologyLoader {
             Node childPlanetEntity = child.getSingleRelationship(ATTRIBUTE, OUTGOING).getEndNode();
             String childScope = childPlanetEntity.getProperty(SCOPE).toString();
             String childType = child.getProperty(GraphModelConstants._TYPE).toString();
-            if (metaSchema.getRequiredParent(tx, childType).map(v -> v.equals(elementKeyType)).orElse(false)) {
+            if (metaSchema.getRequiredParent(childType).map(v -> v.equals(elementKeyType)).orElse(false)) {
                 // if strong child
                 switch (action) {
                     case DELETE_CASCADE_ALL:
@@ -655,6 +728,7 @@ public final class CsvTopologyLoader {
             entity.getRelationships(OUTGOING, ATTRIBUTE).forEach(Relationship::delete);
             entity.getRelationships(OUTGOING, EXTEND).forEach(Relationship::delete);
             entity.getRelationships(CROSS_ATTRIBUTE).forEach(Relationship::delete);
+            tagCache.invalidate(entity.getProperty(TAG).toString());
             entity.delete();
             deleted.add(entity.getId());
         }
@@ -688,53 +762,82 @@ public final class CsvTopologyLoader {
         RelationshipUtils.updateRelationships(INCOMING, elementNode, APPLIED_TO, schemaNodes);
     }
 
-    private Optional<UniqueEntity<Node>> updateElement(LineMappingStrategy line, String keyAttribute,
-                                                       String username, Transaction tx) throws NoSuchElementException {
+    private Optional<UniqueEntity<Node>> updateElement(ImportPlan plan, LineMappingStrategy line, String keyAttribute,
+                                                       String username, LineChanges changes, Transaction tx) throws NoSuchElementException {
 
-        Scope scope = line.guessElementScopeInLine(keyAttribute, tx);
+        Scope scope = line.guessElementScopeInLine(keyAttribute);
         if (!SCOPE_GLOBAL_TAG.equals(scope.tag)) {
-            return createElement(line, keyAttribute, username, tx);
+            return createElement(plan, line, keyAttribute, username, changes, tx);
         }
 
-        ImmutableCollection<HeaderElement> elementHeaders = line.strategy.getElementHeaders(keyAttribute);
-        HeaderElement tagHeader = elementHeaders.stream()
-                .filter(h -> GraphModelConstants.TAG.equals(h.propertyName))
-                .findAny()
-                .orElseThrow(() -> new IllegalArgumentException(GraphModelConstants.TAG + " not found for element " + keyAttribute + ""));
+        int tagIndex = line.strategy.columnIndex(keyAttribute, TAG);
+        if (tagIndex < 0) {
+            throw new IllegalArgumentException(GraphModelConstants.TAG + " not found for element " + keyAttribute + "");
+        }
 
-        String tag = line.getValue(tagHeader.index)
+        String tag = line.getValue(tagIndex)
                 .orElseThrow(() -> new NoSuchElementException("Element " + keyAttribute + " not found in database for update"));
 
-        Node node = tx.findNode(Labels.NETWORK_ELEMENT, GraphModelConstants.TAG, tag);
+        Node node = networkElementFactory.getWithOutcome(GraphModelConstants.TAG, tag, tx);
         if (node != null) {
-            persistElementProperties(line, elementHeaders, node);
-            return Optional.of(UniqueEntity.existing(node));
+            UniqueEntity<Node> element = UniqueEntity.existing(node);
+            OptionalLong fingerprint = fingerprint(plan, line, keyAttribute, changes);
+            if (!isUnchanged(keyAttribute, element, fingerprint, changes)) {
+                persistElementProperties(line, keyAttribute, node, changes);
+                persistFingerprint(node, fingerprint);
+            }
+            return Optional.of(element);
         } else {
             throw new NoSuchElementException("Element with tag " + tag + " not found in database for update");
         }
     }
 
-    private void persistElementProperties(LineMappingStrategy line, ImmutableCollection<HeaderElement> elementHeaders, Node elementNode) {
-        elementHeaders.stream()
-                .filter(h -> !RESERVED_PROPERTIES.contains(h.propertyName))
-                .forEach(h -> h.visit(new Visitor<Void>() {
-                    @Override
-                    public Void visitSimple(SimpleElementHeader header) {
-                        persistElementProperty(header, line, elementNode);
-                        return null;
-                    }
+    private OptionalLong fingerprint(ImportPlan plan, LineMappingStrategy line, String keyType, LineChanges changes) {
+        return changes.skipUnchanged ? OptionalLong.of(plan.getFingerprint(keyType).of(line.line)) : OptionalLong.empty();
+    }
 
-                    @Override
-                    public Void visitMulti(MultiElementHeader header) {
-                        return null;
-                    }
-                }));
+    /**
+     * @return true if the element exists and was last imported with the same fingerprint : nothing needs to be written.
+     */
+    private boolean isUnchanged(String keyType, UniqueEntity<Node> element, OptionalLong fingerprint, LineChanges changes) {
+        if (fingerprint.isEmpty()) {
+            return false;
+        }
+        if (!element.wasCreated && Long.valueOf(fingerprint.getAsLong()).equals(element.entity.getProperty(_FINGERPRINT, null))) {
+            changes.unchanged.add(element.entity);
+            unchangedElements.add(keyType);
+            return true;
+        }
+        changedElements.add(keyType);
+        return false;
+    }
+
+    private void persistFingerprint(Node element, OptionalLong fingerprint) {
+        if (fingerprint.isPresent()) {
+            element.setProperty(_FINGERPRINT, fingerprint.getAsLong());
+        } else if (element.hasProperty(_FINGERPRINT)) {
+            // The element may not match its fingerprint anymore
+            element.removeProperty(_FINGERPRINT);
+        }
+    }
+
+    private void persistElementProperties(LineMappingStrategy line, String keyType, Node elementNode, LineChanges changes) {
+        ImmutableSet<String> planetProperties = planetFactory.getPlanetProperties(keyType);
+        for (SimpleElementHeader header : line.strategy.getPropertyHeaders(keyType)) {
+            if (planetProperties.contains(header.propertyName)) {
+                Object previous = elementNode.getProperty(header.propertyName, null);
+                persistElementProperty(header, line, elementNode);
+                if (!Objects.deepEquals(previous, elementNode.getProperty(header.propertyName, null))) {
+                    changes.planetChanges.add(elementNode);
+                }
+            } else {
+                persistElementProperty(header, line, elementNode);
+            }
+        }
     }
 
     private static <T extends Entity> void persistElementProperty(HeaderElement header, LineMappingStrategy line, T elementNode) {
-        Object value = line.getValue(header.index)
-                .map(field -> PropertyConverter.convert(field, header.type, header.isArray))
-                .orElse(null);
+        Object value = line.getConvertedValue(header).orElse(null);
 
         if (value != null) {
             if (!value.equals(KEEP_VALUE_TOKEN) && !header.propertyName.equals(Action.STATUS_HEADER)) {
@@ -744,4 +847,372 @@ public final class CsvTopologyLoader {
             elementNode.removeProperty(header.propertyName);
         }
     }
+
+    /**
+     * What the import of a line changed on its elements, so that what did not change is not written again.
+     */
+    private static final class LineChanges {
+
+        final boolean skipUnchanged;
+        // Elements having a property their planet depends on changed
+        final Set<Node> planetChanges = Sets.newHashSet();
+        // Existing elements imported with the same fingerprint as last time, only their links to their parents are checked
+        final Set<Node> unchanged = Sets.newHashSet();
+
+        LineChanges(boolean skipUnchanged) {
+            this.skipUnchanged = skipUnchanged;
+        }
+    }
+
+    /**
+     * State of one CSV import : the open transaction, the lines written in it but not committed yet, and the report.
+     */
+    final class CsvImport {
+
+        private final String username;
+        private final CsvImportOptions options;
+        private final ImportProgress progress;
+        private final ImportListener listener;
+        private final LineValidator lineValidator = new LineValidator(metaSchema, networkElementFactory);
+        private final AdaptiveBatchSizer batchSizer;
+
+        private final List<ParsedLine> currentTransaction = Lists.newArrayList();
+        private final Map<ParsedLine, ImmutableMultimap<TypedScope, String>> importedInTransaction = Maps.newHashMap();
+
+        // Only filled when the result lists the imported elements
+        private final Map<TypedScope, Set<String>> importedElementByScope = Maps.newHashMap();
+        private final Map<TypedScope, Integer> importedCountByScope = Maps.newHashMap();
+        private final Map<Integer, String> errors = Maps.newHashMap();
+        private int errorCount = 0;
+        // Failing lines of a resumable import not saved in its checkpoint yet, and the number of saved ones
+        private final Map<Integer, String> unsavedErrors = Maps.newLinkedHashMap();
+        private int savedErrors = 0;
+        private final List<TransactionBatch> batches = Lists.newArrayList();
+        private int imported = 0;
+        private int replayed = 0;
+
+        // Header and index of the last line read, saved in the checkpoint of a resumable import
+        private ImmutableList<String> header = ImmutableList.of();
+        private int lastLine = -1;
+        private int resumedLines = 0;
+
+        private Transaction tx;
+        private long transactionStateBytes = 0;
+
+        CsvImport(String username, CsvImportOptions options, ImportProgress progress, ImportListener listener) {
+            this.username = username;
+            this.options = options;
+            this.progress = progress;
+            this.listener = listener;
+            this.batchSizer = new AdaptiveBatchSizer(options.batchSize, options.adaptiveBatchSize);
+            this.tx = graphDb.beginTx();
+        }
+
+        /**
+         * Restores the counters of the interrupted import with the upload id of the options, if any.
+         *
+         * @return the index of the first line to import, the previous ones being committed or failing.
+         * @throws IllegalArgumentException if the interrupted import had another header.
+         */
+        int resume(ImmutableList<String> header) {
+            this.header = header;
+            if (options.uploadId == null) {
+                return 0;
+            }
+            ImportCheckpoint.createConstraint(graphDb);
+            Optional<ImportCheckpoint> checkpoint = ImportCheckpoint.load(graphDb, options.uploadId);
+            if (checkpoint.isEmpty()) {
+                return 0;
+            }
+            ImportCheckpoint resumed = checkpoint.get();
+            resumed.checkHeader(header);
+            imported = resumed.imported;
+            errorCount = resumed.errorCount;
+            savedErrors = resumed.errors.size();
+            resumed.errors.entrySet().stream()
+                    .limit(options.maxErrors)
+                    .forEach(error -> errors.put(error.getKey(), error.getValue()));
+            lastLine = resumed.lastLine;
+            resumedLines = resumed.lastLine + 1;
+            log.info("Resuming upload '%s' at line %d : %d line(s) imported, %d line(s) failed so far.",
+                    options.uploadId, resumedLines, imported, errorCount);
+            return resumedLines;
+        }
+
+        /**
+         * Drops the checkpoint of a resumable import once all its lines are imported.
+         */
+        void finish() {
+            if (options.uploadId != null && !progress.isCancelled()) {
+                ImportCheckpoint.delete(graphDb, options.uploadId);
+            }
+        }
+
+        void importLine(ParsedLine parsedLine) {
+            progress.lineRead();
+            if (!parsedLine.isFailed() && isCascadeDelete(parsedLine.mapping)) {
+                try {
+                    deleteLargeCascade(parsedLine);
+                } catch (RuntimeException e) {
+                    lastLine = parsedLine.index;
+                    lineFailed(parsedLine, e);
+                    return;
+                }
+            }
+            lastLine = parsedLine.index;
+            if (parsedLine.isFailed()) {
+                // Nothing has been written for this line, no need to renew the transaction
+                lineFailed(parsedLine, parsedLine.failure);
+                return;
+            }
+            if (options.isolateFailures) {
+                try {
+                    lineValidator.validate(parsedLine, tx);
+                } catch (RuntimeException e) {
+                    // Nothing has been written for this line either
+                    lineFailed(parsedLine, e);
+                    return;
+                }
+            }
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    writeLine(parsedLine, tx);
+                    break;
+                } catch (Exception e) {
+                    boolean retry = transientRetry.shouldRetry(e, attempt);
+                    if (!retry) {
+                        logLineError(parsedLine, e);
+                    }
+                    // The lines written before this one are written again, then this one alone
+                    rollback();
+                    if (!retry) {
+                        lineError(parsedLine, e);
+                        return;
+                    }
+                    // A deadlock or a lock timeout says nothing about the line, it is written again
+                    log.debug("Transient failure writing line %d (attempt %d), retrying : %s", parsedLine.index, attempt, e.getMessage());
+                    transientRetry.backoff(attempt);
+                }
+            }
+            currentTransaction.add(parsedLine);
+            transactionStateBytes += AdaptiveBatchSizer.estimateStateBytes(parsedLine.line);
+            if (batchSizer.isFull(currentTransaction.size(), transactionStateBytes)) {
+                commit();
+            }
+        }
+
+        void commit() {
+            List<ParsedLine> lines = ImmutableList.copyOf(currentTransaction);
+            long stateBytes = transactionStateBytes;
+            currentTransaction.clear();
+            transactionStateBytes = 0;
+            Stopwatch commitWatch = Stopwatch.createStarted();
+            if (options.isolateFailures) {
+                try {
+                    txManager.commit(tx);
+                } catch (RuntimeException e) {
+                    if (transientRetry.shouldRetry(e, 1)) {
+                        log.warn("Transient failure committing %d line(s), retrying : %s", lines.size(), e.getMessage());
+                        batchSizer.failed();
+                        transientRetry.backoff(1);
+                    } else {
+                        log.warn("Unable to commit %d line(s), isolating the failing ones : %s", lines.size(), e.getMessage());
+                    }
+                    tx.close();
+                    replay(lines);
+                    tx = graphDb.beginTx();
+                    checkpoint();
+                    return;
+                }
+                tx.close();
+                tx = graphDb.beginTx();
+            } else {
+                try {
+                    tx = txManager.renewTransaction(tx, lines, this::writeLine);
+                } catch (RuntimeException e) {
+                    // Not committed, even after the transient retries : none of the lines is imported
+                    batchSizer.failed();
+                    tx = graphDb.beginTx();
+                    for (ParsedLine line : lines) {
+                        importedInTransaction.remove(line);
+                        lineFailed(line, e);
+                    }
+                    checkpoint();
+                    return;
+                }
+            }
+            batchCommitted(lines.size(), stateBytes, commitWatch.elapsed(TimeUnit.NANOSECONDS));
+            committed(lines);
+            checkpoint();
+        }
+
+        /**
+         * Deletes the elements of the line marked to delete in cascade, and their children, when they do not fit in the
+         * transaction of the line : the lines read before are committed, then the cascade is deleted in its own
+         * transactions, before the other elements of the line are written. These deletions are committed even if the rest
+         * of the line fails. A smaller cascade is left to the line, deleted in its transaction.
+         */
+        private void deleteLargeCascade(ParsedLine parsedLine) {
+            LineMappingStrategy line = parsedLine.mapping;
+            Map<String, Action> markedToDelete = line.getElementsToDelete();
+            LineValidator.checkDeleteActions(markedToDelete, line.getRelationsToDelete());
+            CascadeDeleteEngine.Plan plan = cascadeDeleteEngine.collect(tagsToDelete(line), markedToDelete.values().iterator().next(), tx);
+            if (cascadeDeleteEngine.fitsInTransaction(plan)) {
+                return;
+            }
+
+            // The cascade delete writes in its own transactions, which must not wait for the locks of the current one
+            commit();
+            Stopwatch deleteWatch = Stopwatch.createStarted();
+            int deleted = cascadeDeleteEngine.delete(plan, tagCache::invalidate);
+            log.info("Line %d : %d element(s) deleted in cascade in %d ms.", parsedLine.index, deleted, deleteWatch.elapsed(TimeUnit.MILLISECONDS));
+        }
+
+        private boolean isCascadeDelete(LineMappingStrategy line) {
+            return line.getElementsToDelete().values().stream()
+                    .anyMatch(action -> action == Action.DELETE_CASCADE || action == Action.DELETE_CASCADE_ALL);
+        }
+
+        /**
+         * @return true once the import is cancelled and the lines read so far are committed.
+         */
+        boolean isCancelled() {
+            return progress.isCancelled() && currentTransaction.isEmpty();
+        }
+
+        void close() {
+            tx.close();
+        }
+
+        Neo4jLoadResult result(CsvInput input) {
+            return Neo4jLoadResult.builder()
+                    .imported(imported)
+                    .errorLines(errors)
+                    .errorCount(errorCount)
+                    .importedElementsByScope(importedElementByScope)
+                    .importedCountByScope(importedCountByScope)
+                    .replayed(replayed)
+                    .batches(batches)
+                    .tagCacheHits(tagCache.hits())
+                    .tagCacheMisses(tagCache.misses())
+                    .skippedRelocalizations(skippedRelocalizations)
+                    .unchangedElementsByKeyType(counts(unchangedElements))
+                    .changedElementsByKeyType(counts(changedElements))
+                    .cancelled(progress.isCancelled())
+                    .bytesReceived(input.bytesReceived())
+                    .bytesDecompressed(input.bytesDecompressed())
+                    .transientRetries(transientRetry.retries())
+                    .resumedLines(resumedLines)
+                    .build();
+        }
+
+        private ImmutableMap<String, Integer> counts(Multiset<String> elementsByKeyType) {
+            return ImmutableMap.copyOf(Maps.toMap(elementsByKeyType.elementSet(), elementsByKeyType::count));
+        }
+
+        /**
+         * Saves the progress of a resumable import, all the lines read so far being committed or failing. The import goes
+         * on when the checkpoint cannot be saved, an interruption only replays more lines.
+         */
+        private void checkpoint() {
+            if (options.uploadId == null) {
+                return;
+            }
+            try {
+                ImportCheckpoint saved = ImportCheckpoint.of(options.uploadId, header, lastLine, imported, errorCount, savedErrors, unsavedErrors);
+                saved.save(graphDb);
+                savedErrors += saved.errors.size();
+                unsavedErrors.clear();
+            } catch (RuntimeException e) {
+                log.warn("Unable to save the checkpoint of upload '%s' at line %d : %s", options.uploadId, lastLine, e.getMessage());
+            }
+        }
+
+        private void batchCommitted(int lines, long stateBytes, long commitNanos) {
+            if (lines == 0) {
+                return;
+            }
+            batchSizer.committed(lines, stateBytes, commitNanos);
+            long commitMillis = TimeUnit.NANOSECONDS.toMillis(commitNanos);
+            batches.add(new TransactionBatch(lines, commitMillis));
+            log.debug("Committed %d line(s) in %d ms, next transaction of %d line(s).", lines, commitMillis, batchSizer.batchSize());
+        }
+
+        private void rollback() {
+            List<ParsedLine> lines = ImmutableList.copyOf(currentTransaction);
+            transactionStateBytes = 0;
+            if (options.isolateFailures) {
+                currentTransaction.clear();
+                txManager.rollback(tx);
+                tx.close();
+                replay(lines);
+                tx = graphDb.beginTx();
+            } else {
+                replayed += lines.size();
+                try {
+                    tx = txManager.properlyRenewTransaction(tx, currentTransaction, this::writeLine);
+                } catch (RuntimeException e) {
+                    currentTransaction.clear();
+                    tx = graphDb.beginTx();
+                    for (ParsedLine line : lines) {
+                        importedInTransaction.remove(line);
+                        lineFailed(line, e);
+                    }
+                    return;
+                }
+                committed(lines);
+            }
+        }
+
+        private void replay(List<ParsedLine> lines) {
+            txManager.commitIsolatingFailures(lines,
+                    (line, transaction) -> {
+                        replayed++;
+                        writeLine(line, transaction);
+                    },
+                    (line, e) -> {
+                        importedInTransaction.remove(line);
+                        lineFailed(line, e);
+                    },
+                    this::committed);
+        }
+
+        private void writeLine(ParsedLine line, Transaction transaction) {
+            importedInTransaction.put(line, CsvTopologyLoader.this.importLine(line, username, options, transaction));
+        }
+
+        private void committed(List<ParsedLine> lines) {
+            for (ParsedLine line : lines) {
+                ImmutableMultimap<TypedScope, String> importedElementByScopeInLine = importedInTransaction.remove(line);
+                for (Entry<TypedScope, Collection<String>> importedElements : importedElementByScopeInLine.asMap().entrySet()) {
+                    TypedScope scope = importedElements.getKey();
+                    importedCountByScope.merge(scope, importedElements.getValue().size(), Integer::sum);
+                    if (options.resultMode == CsvImportOptions.ResultMode.ELEMENTS) {
+                        importedElementByScope.computeIfAbsent(scope, k -> Sets.newHashSet()).addAll(importedElements.getValue());
+                    }
+                    listener.imported(scope, importedElements.getValue());
+                }
+                imported++;
+            }
+            progress.linesCommitted(lines.size());
+            listener.batchCommitted();
+        }
+
+        private void lineFailed(ParsedLine parsedLine, Exception e) {
+            logLineError(parsedLine, e);
+            lineError(parsedLine, e);
+        }
+
+        private void lineError(ParsedLine parsedLine, Exception e) {
+            errorCount++;
+            if (errors.size() < options.maxErrors) {
+                errors.put(parsedLine.index, e.getMessage());
+            }
+            if (options.uploadId != null && savedErrors + unsavedErrors.size() < ImportCheckpoint.MAX_ERRORS) {
+                unsavedErrors.put(parsedLine.index, e.getMessage());
+            }
+            progress.lineFailed();
+            listener.failed(parsedLine.index, e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.livingobjects.neo4j.model.header.SimpleElementHeader;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.TAG;
+
+/**
+ * Elements the lines of a dry run would write, so that a line is validated against the graph as the import would leave
+ * it after the lines before : an element created by a previous line, or one of its required properties written by a
+ * previous line, is found as if it was in the graph.
+ * <p>
+ * The lines are recorded in file order by the reader of the dry run, while the chunks already read are validated : a
+ * line only sees the elements recorded for the lines before it. Only the required properties are recorded, and the
+ * recorded lines are assumed to be imported, even the ones failing the validation.
+ */
+final class DryRunElements {
+
+    /**
+     * Records nothing, the validation only sees the graph.
+     */
+    static final DryRunElements NONE = new DryRunElements();
+
+    // Index of the first line writing each element, and of the first line writing each of its required properties
+    private final Map<String, Integer> createdAt = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Integer>> propertiesWrittenAt = new ConcurrentHashMap<>();
+
+    void record(ParsedLine parsedLine) {
+        if (this == NONE || parsedLine.isFailed() || !parsedLine.mapping.getElementsToDelete().isEmpty()) {
+            return;
+        }
+        LineMappingStrategy line = parsedLine.mapping;
+        ImportPlan plan = line.strategy.getImportPlan(parsedLine.scopeKeyTypes);
+        Set<String> requiredProperties = Sets.newHashSet();
+        for (String keyType : Iterables.concat(plan.elementsToUpdate, plan.elementsToCreate)) {
+            plan.getRequiredProperties(keyType).forEach(property -> requiredProperties.add(property.name));
+        }
+        for (String keyType : plan.elementsToCreate) {
+            line.getValue(keyType, TAG).ifPresent(tag -> createdAt.putIfAbsent(tag, parsedLine.index));
+        }
+        for (String keyType : Iterables.concat(plan.elementsToUpdate, plan.elementsToCreate)) {
+            Optional<String> tag = line.getValue(keyType, TAG);
+            if (tag.isEmpty()) continue;
+            for (SimpleElementHeader header : line.strategy.getPropertyHeaders(keyType)) {
+                if (requiredProperties.contains(header.propertyName) && line.getValue(header.index).isPresent()) {
+                    propertiesWrittenAt.computeIfAbsent(tag.get(), t -> new ConcurrentHashMap<>())
+                            .putIfAbsent(header.propertyName, parsedLine.index);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if a line before the given one creates the element.
+     */
+    boolean isCreatedBefore(String tag, int lineIndex) {
+        Integer created = createdAt.get(tag);
+        return created != null && created < lineIndex;
+    }
+
+    /**
+     * @return true if a line before the given one writes the property of the element.
+     */
+    boolean isWrittenBefore(String tag, String property, int lineIndex) {
+        Map<String, Integer> properties = propertiesWrittenAt.get(tag);
+        Integer written = properties == null ? null : properties.get(property);
+        return written != null && written < lineIndex;
+    }
+}
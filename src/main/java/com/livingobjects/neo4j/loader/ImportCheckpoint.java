@@ -0,0 +1,170 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.livingobjects.neo4j.model.iwan.Labels;
+import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.WeakHashMap;
+
+import static org.neo4j.graphdb.Direction.OUTGOING;
+
+/**
+ * Progress of a resumable import, stored in the graph after each commit : the lines up to {@link #lastLine} are either
+ * committed or failing, so that a new upload with the same id goes on with the next line.
+ * <p>
+ * The checkpoint is written in its own transaction, after the lines it covers : when the import stops in between, the
+ * last lines are imported again by the next upload, which writes the same elements. The failing lines of each save are
+ * stored on a node of their own, linked to the checkpoint, so that a save does not rewrite the previous ones. The
+ * upload id is unique, see {@link #createConstraint(GraphDatabaseService)}.
+ */
+final class ImportCheckpoint {
+
+    // Failing lines kept in the checkpoint over all its saves, the other ones are only counted
+    static final int MAX_ERRORS = 10_000;
+
+    // Databases on which the uniqueness constraint of the upload id is known to exist
+    private static final Set<GraphDatabaseService> CONSTRAINED = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private static final String UPLOAD_ID = "uploadId";
+    private static final String HEADER = "header";
+    private static final String LAST_LINE = "lastLine";
+    private static final String IMPORTED = "imported";
+    private static final String ERROR_COUNT = "errorCount";
+    private static final String ERROR_LINES = "errorLines";
+    private static final String ERROR_MESSAGES = "errorMessages";
+    private static final String UPDATED_AT = "updatedAt";
+
+    final String uploadId;
+    final ImmutableList<String> header;
+    // Index of the last line committed or failing, -1 before the first commit
+    final int lastLine;
+    final int imported;
+    final int errorCount;
+    // All the failing lines kept once loaded, the lines failed since the previous save when saved
+    final ImmutableMap<Integer, String> errors;
+
+    ImportCheckpoint(String uploadId, ImmutableList<String> header, int lastLine, int imported, int errorCount,
+                     ImmutableMap<Integer, String> errors) {
+        this.uploadId = uploadId;
+        this.header = header;
+        this.lastLine = lastLine;
+        this.imported = imported;
+        this.errorCount = errorCount;
+        this.errors = errors;
+    }
+
+    /**
+     * Creates the uniqueness constraint of the upload id if it does not exist yet : the checkpoints are looked up by
+     * index, and two uploads resumed together cannot both create the checkpoint.
+     */
+    static void createConstraint(GraphDatabaseService graphDb) {
+        if (CONSTRAINED.contains(graphDb)) {
+            return;
+        }
+        try (Transaction tx = graphDb.beginTx()) {
+            tx.execute(String.format("CREATE CONSTRAINT import_checkpoint_upload_id IF NOT EXISTS FOR (checkpoint:%s) REQUIRE checkpoint.%s IS UNIQUE",
+                    Labels.IMPORT_CHECKPOINT.name(), UPLOAD_ID));
+            tx.commit();
+        }
+        CONSTRAINED.add(graphDb);
+    }
+
+    static Optional<ImportCheckpoint> load(GraphDatabaseService graphDb, String uploadId) {
+        try (Transaction tx = graphDb.beginTx()) {
+            Node node = tx.findNode(Labels.IMPORT_CHECKPOINT, UPLOAD_ID, uploadId);
+            if (node == null) {
+                return Optional.empty();
+            }
+            SortedMap<Integer, String> errors = Maps.newTreeMap();
+            for (Relationship relationship : node.getRelationships(OUTGOING, RelationshipTypes.IMPORT_ERRORS)) {
+                Node errorsNode = relationship.getEndNode();
+                int[] errorLines = (int[]) errorsNode.getProperty(ERROR_LINES);
+                String[] errorMessages = (String[]) errorsNode.getProperty(ERROR_MESSAGES);
+                for (int i = 0; i < errorLines.length; i++) {
+                    errors.put(errorLines[i], errorMessages[i]);
+                }
+            }
+            return Optional.of(new ImportCheckpoint(uploadId,
+                    ImmutableList.copyOf((String[]) node.getProperty(HEADER)),
+                    (int) node.getProperty(LAST_LINE),
+                    (int) node.getProperty(IMPORTED),
+                    (int) node.getProperty(ERROR_COUNT),
+                    ImmutableMap.copyOf(errors)));
+        }
+    }
+
+    static void delete(GraphDatabaseService graphDb, String uploadId) {
+        try (Transaction tx = graphDb.beginTx()) {
+            Node node = tx.findNode(Labels.IMPORT_CHECKPOINT, UPLOAD_ID, uploadId);
+            if (node != null) {
+                for (Relationship relationship : node.getRelationships(OUTGOING, RelationshipTypes.IMPORT_ERRORS)) {
+                    Node errorsNode = relationship.getEndNode();
+                    relationship.delete();
+                    errorsNode.delete();
+                }
+                node.delete();
+            }
+            tx.commit();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the header of the new upload is not the one of the checkpoint.
+     */
+    void checkHeader(ImmutableList<String> uploadHeader) {
+        if (!header.equals(uploadHeader)) {
+            throw new IllegalArgumentException(String.format("The header of upload '%s' is not the one of the interrupted import, it cannot be resumed.", uploadId));
+        }
+    }
+
+    /**
+     * Saves the counters, and adds the failing lines of this checkpoint to the ones already saved.
+     */
+    void save(GraphDatabaseService graphDb) {
+        try (Transaction tx = graphDb.beginTx()) {
+            Node node = tx.findNode(Labels.IMPORT_CHECKPOINT, UPLOAD_ID, uploadId);
+            if (node == null) {
+                node = tx.createNode(Labels.IMPORT_CHECKPOINT);
+                node.setProperty(UPLOAD_ID, uploadId);
+                node.setProperty(HEADER, header.toArray(new String[0]));
+            }
+            node.setProperty(LAST_LINE, lastLine);
+            node.setProperty(IMPORTED, imported);
+            node.setProperty(ERROR_COUNT, errorCount);
+            node.setProperty(UPDATED_AT, System.currentTimeMillis());
+            if (!errors.isEmpty()) {
+                int[] errorLines = errors.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+                Node errorsNode = tx.createNode(Labels.IMPORT_CHECKPOINT_ERRORS);
+                errorsNode.setProperty(ERROR_LINES, errorLines);
+                errorsNode.setProperty(ERROR_MESSAGES, Arrays.stream(errorLines).mapToObj(errors::get).toArray(String[]::new));
+                node.createRelationshipTo(errorsNode, RelationshipTypes.IMPORT_ERRORS);
+            }
+            tx.commit();
+        }
+    }
+
+    /**
+     * @param savedErrors the number of failing lines kept by the previous saves.
+     * @param errors      the lines failed since the previous save, kept up to {@link #MAX_ERRORS} with the saved ones.
+     */
+    static ImportCheckpoint of(String uploadId, ImmutableList<String> header, int lastLine, int imported, int errorCount,
+                               int savedErrors, Map<Integer, String> errors) {
+        ImmutableMap<Integer, String> keptErrors = errors.entrySet().stream()
+                .limit(Math.max(0, MAX_ERRORS - savedErrors))
+                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, error -> Strings.nullToEmpty(error.getValue())));
+        return new ImportCheckpoint(uploadId, header, lastLine, imported, errorCount, keptErrors);
+    }
+}
@@ -0,0 +1,72 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threads of the CSV imports of a database, shared by all its imports instead of being started by each one. The
+ * threads are daemons, and stop after a minute without work.
+ * <p>
+ * The line parsers and the dry run validators run short tasks, queued in pools of one thread per processor. The
+ * reader of each import and its scope writers run as long as the import : they get a thread of their own, up to
+ * {@link #MAX_IMPORT_THREADS} threads, and an import needing more is rejected.
+ */
+final class ImportExecutors {
+
+    static final int MAX_IMPORT_THREADS = 64;
+    static final int VALIDATOR_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final int PARSER_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final Map<String, ImportExecutors> EXECUTORS = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the reader of each import and the scope writers, a task lasting as long as its import.
+     */
+    final ExecutorService importThreads;
+    /**
+     * Parses the lines read, see {@link CsvImportPipeline}.
+     */
+    final ExecutorService parsers;
+    /**
+     * Validates the chunks of a dry run, see {@link CsvDryRun}.
+     */
+    final ExecutorService validators;
+
+    @VisibleForTesting
+    ImportExecutors(String databaseName) {
+        this.importThreads = new ThreadPoolExecutor(0, MAX_IMPORT_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory("csv-import-" + databaseName + "-%d"));
+        this.parsers = fixedPool(PARSER_COUNT, "csv-import-parser-" + databaseName + "-%d");
+        this.validators = fixedPool(VALIDATOR_COUNT, "csv-dry-run-" + databaseName + "-%d");
+    }
+
+    static ImportExecutors of(GraphDatabaseService graphDb) {
+        return EXECUTORS.computeIfAbsent(graphDb.databaseName(), ImportExecutors::new);
+    }
+
+    private static ExecutorService fixedPool(int threads, String nameFormat) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory(nameFormat));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory threadFactory(String nameFormat) {
+        return new ThreadFactoryBuilder()
+                .setNameFormat(nameFormat)
+                .setDaemon(true)
+                .build();
+    }
+}
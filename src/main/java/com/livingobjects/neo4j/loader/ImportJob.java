@@ -0,0 +1,121 @@
+package com.livingobjects.neo4j.loader;
+
+import com.livingobjects.neo4j.model.result.ImportJobStatus;
+import com.livingobjects.neo4j.model.result.Neo4jLoadResult;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+
+/**
+ * A CSV import run in background by {@link ImportJobs}, from a copy of the submitted file.
+ */
+public final class ImportJob {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, CANCELLED, FAILED;
+
+        boolean isFinished() {
+            return this == DONE || this == CANCELLED || this == FAILED;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        Neo4jLoadResult run(InputStream csv, ImportProgress progress) throws Exception;
+    }
+
+    public final String id;
+    public final String username;
+
+    private final Path csvFile;
+    private final Task task;
+    private final Log log;
+    private final ImportProgress progress = new ImportProgress();
+    private final long submittedAt = System.currentTimeMillis();
+
+    private volatile State state = State.QUEUED;
+    private volatile long startedAt = 0;
+    private volatile long finishedAt = 0;
+    private volatile Neo4jLoadResult result;
+    private volatile String error;
+    private Future<?> future;
+
+    ImportJob(String id, String username, Path csvFile, Task task, Log log) {
+        this.id = id;
+        this.username = username;
+        this.csvFile = csvFile;
+        this.task = task;
+        this.log = log;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * @return the report of the import once DONE or CANCELLED while running, null otherwise.
+     */
+    public Neo4jLoadResult result() {
+        return result;
+    }
+
+    public String error() {
+        return error;
+    }
+
+    public ImportJobStatus status() {
+        return new ImportJobStatus(id, username, state.name(), submittedAt, startedAt, finishedAt,
+                progress.linesRead(), progress.linesCommitted(), progress.linesFailed(), progress.linesPerSecond(), error);
+    }
+
+    /**
+     * A queued job is dropped, a running job stops at its next transaction boundary.
+     *
+     * @return true if the job was dropped before it started.
+     */
+    synchronized boolean cancel() {
+        progress.cancel();
+        if (state == State.QUEUED && future != null && future.cancel(false)) {
+            finished(State.CANCELLED);
+            return true;
+        }
+        return false;
+    }
+
+    synchronized void submitted(Future<?> future) {
+        this.future = future;
+    }
+
+    void run() {
+        synchronized (this) {
+            if (state != State.QUEUED) {
+                return;
+            }
+            state = State.RUNNING;
+            startedAt = System.currentTimeMillis();
+        }
+        try (InputStream csv = Files.newInputStream(csvFile)) {
+            result = task.run(csv, progress);
+            finished(result.cancelled ? State.CANCELLED : State.DONE);
+        } catch (Throwable e) {
+            // Errors too, the job must not stay RUNNING
+            log.error("Import job " + id + " failed.", e);
+            error = e.getClass().getSimpleName() + " : " + e.getMessage();
+            finished(State.FAILED);
+        }
+    }
+
+    private void finished(State finalState) {
+        finishedAt = System.currentTimeMillis();
+        state = finalState;
+        try {
+            Files.deleteIfExists(csvFile);
+        } catch (IOException ignored) {
+            // Left in the temporary directory
+        }
+    }
+}
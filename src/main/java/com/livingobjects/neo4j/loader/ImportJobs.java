@@ -0,0 +1,115 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the CSV imports of a database in background, at most {@link #MAX_RUNNING_JOBS} at a time. The submitted file is
+ * copied as received, still compressed, to a temporary file first, so that the request does not wait for the import.
+ * <p>
+ * Finished jobs are kept for their report, the oldest ones are forgotten beyond {@link #MAX_FINISHED_JOBS}. A job
+ * cancelled before it started is forgotten at once.
+ */
+public final class ImportJobs {
+
+    static final int MAX_RUNNING_JOBS = 2;
+    static final int MAX_QUEUED_JOBS = 8;
+    static final int MAX_FINISHED_JOBS = 100;
+
+    private static final Map<String, ImportJobs> JOBS = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+    // Jobs in submission order
+    private final Map<String, ImportJob> jobs = Maps.newLinkedHashMap();
+
+    private ImportJobs(String databaseName) {
+        this.executor = new ThreadPoolExecutor(MAX_RUNNING_JOBS, MAX_RUNNING_JOBS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_JOBS),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("import-job-" + databaseName + "-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    public static ImportJobs of(GraphDatabaseService graphDb) {
+        return JOBS.computeIfAbsent(graphDb.databaseName(), ImportJobs::new);
+    }
+
+    /**
+     * @param log receives the failures of the job, which has no caller to report them to.
+     * @throws RejectedExecutionException if {@link #MAX_QUEUED_JOBS} jobs are already waiting.
+     */
+    public ImportJob submit(String username, InputStream csv, ImportJob.Task task, Log log) throws IOException {
+        Path csvFile = Files.createTempFile("import-job-", ".csv");
+        try {
+            Files.copy(csv, csvFile, StandardCopyOption.REPLACE_EXISTING);
+            ImportJob job = new ImportJob(UUID.randomUUID().toString(), username, csvFile, task, log);
+            synchronized (this) {
+                job.submitted(executor.submit(() -> {
+                    job.run();
+                    evictFinishedJobs();
+                }));
+                jobs.put(job.id, job);
+            }
+            return job;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(csvFile);
+            throw e;
+        }
+    }
+
+    public synchronized Optional<ImportJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Cancels the job, see {@link ImportJob#cancel()}. A job still queued is removed, with its place in the queue.
+     */
+    public synchronized Optional<ImportJob> cancel(String id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (job.cancel()) {
+            jobs.remove(id);
+            executor.purge();
+        }
+        return Optional.of(job);
+    }
+
+    /**
+     * @return the known jobs, in submission order.
+     */
+    public synchronized ImmutableList<ImportJob> list() {
+        return ImmutableList.copyOf(jobs.values());
+    }
+
+    private synchronized void evictFinishedJobs() {
+        long finished = jobs.values().stream().filter(job -> job.state().isFinished()).count();
+        Iterator<ImportJob> iterator = jobs.values().iterator();
+        while (finished > MAX_FINISHED_JOBS && iterator.hasNext()) {
+            if (iterator.next().state().isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.livingobjects.neo4j.loader;
+
+import com.livingobjects.neo4j.model.result.TypedScope;
+
+import java.util.Collection;
+
+/**
+ * Receives the outcome of a CSV import as it goes, instead of reading it from the result once the import is over.
+ * Called by one thread at a time : the importing thread, or one of the writers of an import partitioned by scope.
+ */
+public interface ImportListener {
+
+    ImportListener NONE = new ImportListener() {
+        @Override
+        public void imported(TypedScope scope, Collection<String> tags) {
+        }
+
+        @Override
+        public void failed(int line, String error) {
+        }
+    };
+
+    /**
+     * Elements of a line, once the line is committed.
+     */
+    void imported(TypedScope scope, Collection<String> tags);
+
+    void failed(int line, String error);
+
+    /**
+     * Called after the elements of each committed transaction.
+     */
+    default void batchCommitted() {
+    }
+}
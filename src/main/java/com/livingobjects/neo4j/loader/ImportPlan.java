@@ -0,0 +1,320 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.livingobjects.neo4j.model.header.HeaderElement;
+import com.livingobjects.neo4j.model.header.MultiElementHeader;
+import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
+import scala.Tuple2;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+import static com.livingobjects.neo4j.model.header.HeaderElement.ELEMENT_SEPARATOR;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.ID;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.SCOPE_GLOBAL_ATTRIBUTE;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.TAG;
+
+/**
+ * Everything the import of a line needs to know about the schema, for a given CSV header and a given set of
+ * scope columns filled in the line. Compiled once by {@link CsvMappingStrategy#getImportPlan(ImmutableSet)}
+ * and shared by all the lines filling the same scope columns.
+ */
+final class ImportPlan {
+
+    /**
+     * Elements to create or update, in creation order.
+     */
+    final ImmutableList<String> elementsToCreate;
+    /**
+     * Elements of the header that cannot be created because their required parents are missing from the header.
+     */
+    final ImmutableList<String> elementsToUpdate;
+    /**
+     * Cross attribute links to create between the elements of the line.
+     */
+    final ImmutableList<CrossAttributeLink> crossAttributeLinks;
+
+    private final ImmutableListMultimap<String, ParentLink> parentLinks;
+    private final ImmutableListMultimap<String, String> requiredParents;
+    private final ImmutableMap<String, ImmutableSet<String>> monoParentsInHeader;
+    private final ImmutableListMultimap<String, RequiredProperty> requiredProperties;
+    private final ImmutableMap<String, Fingerprint> fingerprints;
+
+    private ImportPlan(ImmutableList<String> elementsToCreate,
+                       ImmutableList<String> elementsToUpdate,
+                       ImmutableList<CrossAttributeLink> crossAttributeLinks,
+                       ImmutableListMultimap<String, ParentLink> parentLinks,
+                       ImmutableListMultimap<String, String> requiredParents,
+                       ImmutableMap<String, ImmutableSet<String>> monoParentsInHeader,
+                       ImmutableListMultimap<String, RequiredProperty> requiredProperties,
+                       ImmutableMap<String, Fingerprint> fingerprints) {
+        this.elementsToCreate = elementsToCreate;
+        this.elementsToUpdate = elementsToUpdate;
+        this.crossAttributeLinks = crossAttributeLinks;
+        this.parentLinks = parentLinks;
+        this.requiredParents = requiredParents;
+        this.monoParentsInHeader = monoParentsInHeader;
+        this.requiredProperties = requiredProperties;
+        this.fingerprints = fingerprints;
+    }
+
+    static ImportPlan compile(CsvMappingStrategy strategy, MetaSchema metaSchema, ImmutableSet<String> scopeKeyTypes) {
+        ImmutableMap<String, Set<String>> lineage = strategy.guessElementCreationStrategy(scopeKeyTypes);
+        ImmutableList<String> elementsToCreate = ImmutableList.copyOf(lineage.keySet());
+        ImmutableList<String> elementsToUpdate = ImmutableList.copyOf(Sets.difference(strategy.getAllElementsType(), lineage.keySet()));
+
+        // All the element types which may have a node once the line is imported
+        Set<String> keyTypes = Sets.newLinkedHashSet();
+        keyTypes.addAll(elementsToUpdate);
+        keyTypes.addAll(elementsToCreate);
+        keyTypes.addAll(strategy.getAllElementsType());
+        keyTypes.add(SCOPE_GLOBAL_ATTRIBUTE);
+
+        ImmutableListMultimap.Builder<String, ParentLink> parentLinks = ImmutableListMultimap.builder();
+        for (String keyType : keyTypes) {
+            for (MetaSchema.MetaRelation relation : metaSchema.getParentRelations(keyType)) {
+                String cardinality = relation.cardinality.isEmpty() ? GraphModelConstants.CARDINALITY_UNIQUE_PARENT : relation.cardinality;
+                parentLinks.put(keyType, new ParentLink(relation.keyType, cardinality));
+            }
+        }
+
+        Map<String, ImmutableList<String>> requiredParents = Maps.newLinkedHashMap();
+        keyTypes.forEach(keyType -> collectRequiredParents(keyType, metaSchema, requiredParents));
+
+        ImmutableMap.Builder<String, ImmutableSet<String>> monoParentsInHeader = ImmutableMap.builder();
+        for (String keyType : Sets.union(ImmutableSet.copyOf(elementsToCreate), ImmutableSet.copyOf(elementsToUpdate))) {
+            if (!SCOPE_GLOBAL_ATTRIBUTE.equals(keyType)) {
+                monoParentsInHeader.put(keyType, metaSchema.getMonoParentRelations(keyType).stream()
+                        .filter(strategy::hasKeyType)
+                        .collect(ImmutableSet.toImmutableSet()));
+            }
+        }
+
+        ImmutableListMultimap.Builder<String, RequiredProperty> requiredProperties = ImmutableListMultimap.builder();
+        for (String keyType : keyTypes) {
+            for (String property : metaSchema.getRequiredProperties(keyType)) {
+                List<Integer> columns = Lists.newArrayList();
+                Set<String> sourceKeyTypes = Sets.newLinkedHashSet();
+                collectRequiredPropertySources(keyType, property, strategy, requiredParents, columns, sourceKeyTypes);
+                requiredProperties.put(keyType, new RequiredProperty(property, columns.stream().mapToInt(Integer::intValue).toArray(),
+                        ImmutableList.copyOf(sourceKeyTypes)));
+            }
+        }
+
+        ImmutableListMultimap<String, ParentLink> compiledParentLinks = parentLinks.build();
+        ImmutableListMultimap<String, RequiredProperty> compiledRequiredProperties = requiredProperties.build();
+        ImmutableMap.Builder<String, Fingerprint> fingerprints = ImmutableMap.builder();
+        for (String keyType : Sets.union(ImmutableSet.copyOf(elementsToCreate), ImmutableSet.copyOf(elementsToUpdate))) {
+            fingerprints.put(keyType, compileFingerprint(keyType, strategy, metaSchema,
+                    compiledParentLinks.get(keyType), compiledRequiredProperties.get(keyType)));
+        }
+
+        return new ImportPlan(
+                elementsToCreate,
+                elementsToUpdate,
+                compileCrossAttributeLinks(strategy, metaSchema, keyTypes),
+                compiledParentLinks,
+                requiredParents.entrySet().stream()
+                        .collect(ImmutableListMultimap.flatteningToImmutableListMultimap(Map.Entry::getKey, e -> e.getValue().stream())),
+                monoParentsInHeader.build(),
+                compiledRequiredProperties,
+                fingerprints.build());
+    }
+
+    ImmutableList<ParentLink> getParentLinks(String keyType) {
+        return parentLinks.get(keyType);
+    }
+
+    ImmutableList<String> getRequiredParents(String keyType) {
+        return requiredParents.get(keyType);
+    }
+
+    ImmutableSet<String> getMonoParentsInHeader(String keyType) {
+        return monoParentsInHeader.getOrDefault(keyType, ImmutableSet.of());
+    }
+
+    ImmutableList<RequiredProperty> getRequiredProperties(String keyType) {
+        return requiredProperties.get(keyType);
+    }
+
+    Fingerprint getFingerprint(String keyType) {
+        return fingerprints.get(keyType);
+    }
+
+    private static void collectRequiredParents(String keyType, MetaSchema metaSchema, Map<String, ImmutableList<String>> collect) {
+        if (collect.containsKey(keyType) || !metaSchema.keyAttributeExists(keyType)) {
+            return;
+        }
+        ImmutableList<String> parents = metaSchema.getRequiredParents(keyType);
+        collect.put(keyType, parents);
+        parents.forEach(parent -> collectRequiredParents(parent, metaSchema, collect));
+    }
+
+    /**
+     * The columns and the element types are listed in the order the value is looked for : the element itself first, then
+     * its required parents, depth first. An element type reached through several parents is only looked at once.
+     */
+    private static void collectRequiredPropertySources(String keyType, String property, CsvMappingStrategy strategy,
+                                                       Map<String, ImmutableList<String>> requiredParents, List<Integer> columns,
+                                                       Set<String> sourceKeyTypes) {
+        if (!sourceKeyTypes.add(keyType)) {
+            return;
+        }
+        int index = strategy.columnIndex(keyType, property);
+        if (index >= 0) {
+            columns.add(index);
+        }
+        requiredParents.getOrDefault(keyType, ImmutableList.of())
+                .forEach(parent -> collectRequiredPropertySources(parent, property, strategy, requiredParents, columns, sourceKeyTypes));
+    }
+
+    /**
+     * An element is written from its own columns, the tags of its parents and scope, and the columns its required
+     * properties are read from.
+     */
+    private static Fingerprint compileFingerprint(String keyType, CsvMappingStrategy strategy, MetaSchema metaSchema,
+                                                  ImmutableList<ParentLink> parentLinks, ImmutableList<RequiredProperty> requiredProperties) {
+        SortedSet<Integer> columns = Sets.newTreeSet();
+        strategy.getElementHeaders(keyType).forEach(header -> columns.add(header.index));
+        for (ParentLink parentLink : parentLinks) {
+            strategy.tryColumnIndex(parentLink.keyType, TAG).ifPresent(columns::add);
+        }
+        for (String scopeKeyType : metaSchema.getScopeTypes()) {
+            strategy.tryColumnIndex(scopeKeyType, TAG).ifPresent(columns::add);
+            strategy.tryColumnIndex(scopeKeyType, ID).ifPresent(columns::add);
+        }
+        for (RequiredProperty requiredProperty : requiredProperties) {
+            for (int column : requiredProperty.columns) {
+                columns.add(column);
+            }
+        }
+
+        Map<Integer, String> columnNames = Maps.newHashMap();
+        for (HeaderElement header : strategy.getAllHeaders()) {
+            columnNames.put(header.index, header.columnIdentifier());
+        }
+        Hasher header = Fingerprint.HASH_FUNCTION.newHasher();
+        for (int column : columns) {
+            String columnName = columnNames.getOrDefault(column, "");
+            header.putInt(columnName.length()).putUnencodedChars(columnName);
+        }
+        return new Fingerprint(columns.stream().mapToInt(Integer::intValue).toArray(), header.hash().asLong());
+    }
+
+    /**
+     * Only the links whose both ends may have a node in the line are kept, looked up from the element types of the line
+     * rather than from the whole schema.
+     */
+    private static ImmutableList<CrossAttributeLink> compileCrossAttributeLinks(CsvMappingStrategy strategy, MetaSchema metaSchema, Set<String> keyTypes) {
+        ImmutableMap<String, ImmutableSet<Tuple2<String, String>>> crossAttributesRelations = metaSchema.getCrossAttributesRelations();
+        List<String[]> links = Lists.newArrayList();
+        // When the schema defines several links between the same elements, the properties go to the last one
+        Map<String, Integer> lastLinkByPair = Maps.newHashMap();
+        for (String keyType : keyTypes) {
+            for (Tuple2<String, String> endKeyType : crossAttributesRelations.getOrDefault(keyType, ImmutableSet.of())) {
+                if (!keyType.equals(endKeyType._1()) && keyTypes.contains(endKeyType._1())) {
+                    lastLinkByPair.put(keyType + ELEMENT_SEPARATOR + endKeyType._1(), links.size());
+                    links.add(new String[]{keyType, endKeyType._1(), endKeyType._2()});
+                }
+            }
+        }
+
+        ImmutableList.Builder<CrossAttributeLink> compiled = ImmutableList.builder();
+        for (int i = 0; i < links.size(); i++) {
+            String[] link = links.get(i);
+            String pair = link[0] + ELEMENT_SEPARATOR + link[1];
+            ImmutableList<MultiElementHeader> headers = ImmutableList.of();
+            if (lastLinkByPair.get(pair) == i) {
+                headers = strategy.getMultiElementHeader().stream()
+                        .filter(h -> h.elementName.equals(link[0]) && h.targetElementName.equals(link[1]))
+                        .collect(ImmutableList.toImmutableList());
+            }
+            compiled.add(new CrossAttributeLink(link[0], link[1], link[2], headers));
+        }
+        return compiled.build();
+    }
+
+    /**
+     * Hash of the columns an element is written from, changing as soon as one of them changes in the line or in the
+     * header.
+     */
+    static final class Fingerprint {
+        private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+        private final int[] columns;
+        private final long headerHash;
+
+        private Fingerprint(int[] columns, long headerHash) {
+            this.columns = columns;
+            this.headerHash = headerHash;
+        }
+
+        long of(String[] line) {
+            Hasher hasher = HASH_FUNCTION.newHasher().putLong(headerHash);
+            for (int column : columns) {
+                String value = (column < line.length && line[column] != null) ? Strings.emptyToNull(line[column].trim()) : null;
+                if (value == null) {
+                    hasher.putInt(-1);
+                } else {
+                    hasher.putInt(value.length()).putUnencodedChars(value);
+                }
+            }
+            return hasher.hash().asLong();
+        }
+    }
+
+    static final class CrossAttributeLink {
+        final String from;
+        final String to;
+        final String type;
+        final ImmutableList<MultiElementHeader> headers;
+
+        private CrossAttributeLink(String from, String to, String type, ImmutableList<MultiElementHeader> headers) {
+            this.from = from;
+            this.to = to;
+            this.type = type;
+            this.headers = headers;
+        }
+    }
+
+    static final class ParentLink {
+        final String keyType;
+        final String cardinality;
+
+        private ParentLink(String keyType, String cardinality) {
+            this.keyType = keyType;
+            this.cardinality = cardinality;
+        }
+    }
+
+    static final class RequiredProperty {
+        final String name;
+        /**
+         * Columns the value can be read from, the first filled one wins.
+         */
+        final int[] columns;
+        /**
+         * Element types whose node the value is read from when no column is filled : the element itself, then its
+         * required parents. The first node having the property wins.
+         */
+        final ImmutableList<String> sourceKeyTypes;
+
+        private RequiredProperty(String name, int[] columns, ImmutableList<String> sourceKeyTypes) {
+            this.name = name;
+            this.columns = columns;
+            this.sourceKeyTypes = sourceKeyTypes;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.livingobjects.neo4j.loader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a CSV import, updated by the import and read concurrently by whoever follows it. Also carries the
+ * cancellation request : the import stops at the next transaction boundary.
+ */
+public final class ImportProgress {
+
+    // Weight of the last committed batch in the import rate
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private final AtomicLong linesRead = new AtomicLong();
+    private final AtomicLong linesCommitted = new AtomicLong();
+    private final AtomicLong linesFailed = new AtomicLong();
+    private volatile boolean cancelled = false;
+
+    private long lastCommitNanos = System.nanoTime();
+    private volatile double linesPerSecond = 0;
+
+    public long linesRead() {
+        return linesRead.get();
+    }
+
+    public long linesCommitted() {
+        return linesCommitted.get();
+    }
+
+    public long linesFailed() {
+        return linesFailed.get();
+    }
+
+    /**
+     * @return the number of lines committed per second, smoothed over the last batches.
+     */
+    public double linesPerSecond() {
+        return linesPerSecond;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void lineRead() {
+        linesRead.incrementAndGet();
+    }
+
+    void lineFailed() {
+        linesFailed.incrementAndGet();
+    }
+
+    synchronized void linesCommitted(int lines) {
+        linesCommitted.addAndGet(lines);
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastCommitNanos) / 1e9;
+        lastCommitNanos = now;
+        double batchRate = lines / seconds;
+        linesPerSecond = (linesPerSecond == 0) ? batchRate : RATE_SMOOTHING * batchRate + (1 - RATE_SMOOTHING) * linesPerSecond;
+    }
+}
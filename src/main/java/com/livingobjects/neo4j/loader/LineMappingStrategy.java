@@ -1,11 +1,22 @@
 package com.livingobjects.neo4j.loader;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import org.neo4j.graphdb.Transaction;
+import com.google.common.collect.Maps;
+import com.livingobjects.neo4j.helper.PlanetByContext;
+import com.livingobjects.neo4j.model.exception.InsufficientContextException;
+import com.livingobjects.neo4j.model.header.HeaderElement;
+import com.livingobjects.neo4j.model.header.MultiElementHeader;
+import com.livingobjects.neo4j.model.header.SimpleElementHeader;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
 
+import static com.livingobjects.neo4j.helper.PropertyConverter.KEEP_VALUE_TOKEN;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.GLOBAL_SCOPE;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.ID;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.SCOPE;
@@ -14,24 +25,112 @@ import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.TAG;
 
 public final class LineMappingStrategy {
 
+    private static final Object UNRESOLVED = new Object();
+
     private final MetaSchema metaSchema;
     final CsvMappingStrategy strategy;
 
     public final String[] line;
 
+    private Object[] convertedValues;
+    // keytype -> scope attribute and planet template resolved by the parsers, see resolveScopes and resolvePlanetTemplates
+    private ImmutableMap<String, String> scopeAttributes = ImmutableMap.of();
+    private ImmutableMap<String, String> planetTemplates = ImmutableMap.of();
+
     LineMappingStrategy(MetaSchema metaSchema, CsvMappingStrategy strategy, String[] line) {
         this.metaSchema = metaSchema;
         this.strategy = strategy;
         this.line = line;
     }
 
-    Scope guessElementScopeInLine(String keyAttribute, Transaction tx) {
-        return tryToGuessElementScopeInLine(keyAttribute, tx)
+    /**
+     * Converts all the values of the line to their property type, so that writing the line does not have to do it.
+     * Columns that cannot be read are left unresolved, {@link #getConvertedValue(HeaderElement)} will fail on them
+     * exactly as it would without conversion.
+     */
+    void convertValues() {
+        Object[] values = new Object[line.length];
+        Arrays.fill(values, UNRESOLVED);
+        for (HeaderElement header : strategy.getAllHeaders()) {
+            if (header.index < line.length) {
+                values[header.index] = convert(header);
+            }
+        }
+        this.convertedValues = values;
+    }
+
+    /**
+     * Guesses the scope attribute of each element of the line, so that writing the line does not have to do it.
+     * Elements whose scope cannot be guessed are left unresolved, {@link #guessScopeAttributeInLine(String)} will fail
+     * on them exactly as it would without resolution.
+     */
+    void resolveScopes() {
+        ImmutableMap.Builder<String, String> resolved = ImmutableMap.builder();
+        for (String keyType : strategy.getAllElementsType()) {
+            try {
+                resolved.put(keyType, guessScopeAttributeInLine(keyType));
+            } catch (IllegalStateException ignored) {
+                // Reported by the import of the line
+            }
+        }
+        this.scopeAttributes = resolved.build();
+    }
+
+    /**
+     * Chooses the planet template of each element of the line having in the line all the properties the templates of
+     * its keytype read : once the line is written, the element has these values whatever it had in the graph. The other
+     * elements are left to {@link com.livingobjects.neo4j.helper.TemplatedPlanetFactory}, which reads the graph.
+     *
+     * @param planetTemplates the planet templates by keytype, as loaded by the schema metadata.
+     */
+    void resolvePlanetTemplates(ImmutableMap<String, PlanetByContext> planetTemplates) {
+        ImmutableMap.Builder<String, String> resolved = ImmutableMap.builder();
+        for (String keyType : strategy.getAllElementsType()) {
+            PlanetByContext planetByContext = planetTemplates.get(keyType);
+            if (planetByContext == null || getValue(keyType, TAG).isEmpty()) {
+                continue;
+            }
+            Map<String, Object> properties = Maps.newHashMap();
+            for (SimpleElementHeader header : strategy.getPropertyHeaders(keyType)) {
+                if (planetByContext.propertyNames().contains(header.propertyName)) {
+                    Object value = UNRESOLVED;
+                    if (convertedValues != null && header.index < convertedValues.length) {
+                        value = convertedValues[header.index];
+                    }
+                    if (value != null && value != UNRESOLVED && !KEEP_VALUE_TOKEN.equals(value) && !value.getClass().isArray()) {
+                        properties.put(header.propertyName, value);
+                    }
+                }
+            }
+            if (properties.keySet().containsAll(planetByContext.propertyNames())) {
+                try {
+                    resolved.put(keyType, planetByContext.bestMatchingContext(keyType, properties::get));
+                } catch (InsufficientContextException ignored) {
+                    // Reported by the import of the line
+                }
+            }
+        }
+        this.planetTemplates = resolved.build();
+    }
+
+    /**
+     * @return the planet template of the element, empty when it depends on the element properties in the graph.
+     */
+    Optional<String> getPlanetTemplate(String keyAttribute) {
+        return Optional.ofNullable(planetTemplates.get(keyAttribute));
+    }
+
+    Scope guessElementScopeInLine(String keyAttribute) {
+        return tryToGuessElementScopeInLine(keyAttribute)
                 .orElseThrow(() -> new IllegalStateException(String.format("Unable to find a scope in the line to import '%s'.", keyAttribute)));
     }
 
-    String guessScopeAttributeInLine(String keyAttribute, Transaction tx) {
-        ImmutableSet<String> authorizedScopes = metaSchema.getAuthorizedScopes(tx, keyAttribute);
+    String guessScopeAttributeInLine(String keyAttribute) {
+        String resolved = scopeAttributes.get(keyAttribute);
+        if (resolved != null) {
+            return resolved;
+        }
+        ImmutableSet<String> authorizedScopes = metaSchema.getAuthorizedScopes(keyAttribute);
         if (metaSchema.isOverridable(keyAttribute)) {
             return guessScopeAttribute(keyAttribute, metaSchema.getScopeTypes());
         } else {
@@ -47,19 +146,56 @@ public final class LineMappingStrategy {
         }
     }
 
-    Optional<Scope> tryToGuessElementScopeInLine(String keyAttribute, Transaction tx) {
-        String scopeAttribute = guessScopeAttributeInLine(keyAttribute, tx);
+    Optional<Scope> tryToGuessElementScopeInLine(String keyAttribute) {
+        String scopeAttribute = guessScopeAttributeInLine(keyAttribute);
         return readScopeFromLine(scopeAttribute);
     }
 
+    /**
+     * @return the tag of the client scope all the elements of the line belong to, a scope element belonging to itself.
+     * Empty when the line has an element of the global or SP scope, elements of several scopes, an element whose scope
+     * cannot be guessed, or deletes something : such a line cannot be written independently of the other scopes.
+     */
+    Optional<String> guessPartitionScopeInLine() {
+        if (!getElementsToDelete().isEmpty() || !getRelationsToDelete().isEmpty()) {
+            return Optional.empty();
+        }
+        String partitionScope = null;
+        for (String keyType : strategy.getAllElementsType()) {
+            if (getValue(keyType, TAG).isEmpty()) {
+                continue;
+            }
+            String scopeTag;
+            if (metaSchema.isScope(keyType)) {
+                scopeTag = line[strategy.getColumnIndex(keyType, TAG)];
+            } else {
+                try {
+                    scopeTag = tryToGuessElementScopeInLine(keyType).map(scope -> scope.tag).orElse(null);
+                } catch (IllegalStateException e) {
+                    // Reported by the import of the line
+                    return Optional.empty();
+                }
+            }
+            if (scopeTag == null || GLOBAL_SCOPE.tag.equals(scopeTag) || SP_SCOPE.tag.equals(scopeTag)) {
+                return Optional.empty();
+            }
+            if (partitionScope == null) {
+                partitionScope = scopeTag;
+            } else if (!partitionScope.equals(scopeTag)) {
+                return Optional.empty();
+            }
+        }
+        return Optional.ofNullable(partitionScope);
+    }
+
     private String guessScopeAttribute(String keyAttribute, ImmutableSet<String> parentScopes) {
-        Optional<Integer> scopeColumnIndex = strategy.tryColumnIndex(keyAttribute, SCOPE);
+        int scopeColumnIndex = strategy.columnIndex(keyAttribute, SCOPE);
         String parentScopeName;
-        if (scopeColumnIndex.isEmpty()) {
+        if (scopeColumnIndex < 0) {
             return metaSchema.getDefaultScope(keyAttribute)
                     .orElseThrow(() -> new IllegalStateException(String.format("Column '%s.%s' is required to import '%s'.", keyAttribute, SCOPE, keyAttribute)));
         } else {
-            String scopeNameInLine = line[scopeColumnIndex.get()];
+            String scopeNameInLine = line[scopeColumnIndex];
             parentScopeName = Strings.isNullOrEmpty(scopeNameInLine) ? "global" : scopeNameInLine;
         }
         return findScopeFromName(parentScopes, parentScopeName)
@@ -88,14 +224,59 @@ public final class LineMappingStrategy {
         }
     }
 
+    /**
+     * @return the delete action of each element marked to delete in the line.
+     */
+    Map<String, Action> getElementsToDelete() {
+        Map<String, Action> markedToDelete = Maps.newHashMap();
+        strategy.getStatusColumns().forEach((keyType, index) -> getValue(index)
+                .flatMap(Action::fromString)
+                .ifPresent(action -> markedToDelete.put(keyType, action)));
+        return markedToDelete;
+    }
+
+    /**
+     * @return the delete action of each cross attribute relation marked to delete in the line.
+     */
+    Map<Tuple2<String, String>, Action> getRelationsToDelete() {
+        Map<Tuple2<String, String>, Action> xRelationsToDelete = Maps.newHashMap();
+        for (MultiElementHeader header : strategy.getRelationStatusHeaders()) {
+            getValue(header.index)
+                    .flatMap(Action::fromString)
+                    .ifPresent(action -> xRelationsToDelete.put(Tuples.of(header.elementName, header.targetElementName), action));
+        }
+        return xRelationsToDelete;
+    }
+
     public Optional<String> getValue(String keyType, String property) {
-        return strategy.tryColumnIndex(keyType, property)
-                .map(index -> line[index])
-                .map(val -> Strings.emptyToNull(val.trim()));
+        int index = strategy.columnIndex(keyType, property);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        return getValue(index);
     }
 
     public Optional<String> getValue(Integer index) {
         return Optional.ofNullable(line[index])
                 .map(val -> Strings.emptyToNull(val.trim()));
     }
+
+    Optional<Object> getConvertedValue(HeaderElement header) {
+        if (convertedValues != null && header.index < convertedValues.length) {
+            Object value = convertedValues[header.index];
+            if (value != UNRESOLVED) {
+                return Optional.ofNullable(value);
+            }
+        }
+        return Optional.ofNullable(convert(header));
+    }
+
+    private Object convert(HeaderElement header) {
+        String field = line[header.index];
+        if (field == null) {
+            return null;
+        }
+        String value = field.trim();
+        return value.isEmpty() ? null : header.converter.convert(value);
+    }
 }
@@ -0,0 +1,165 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.livingobjects.neo4j.helper.UniqueElementFactory;
+import com.livingobjects.neo4j.model.exception.InvalidScopeException;
+import com.livingobjects.neo4j.model.exception.MissingElementException;
+import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
+import com.livingobjects.neo4j.model.iwan.Labels;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import reactor.util.function.Tuple2;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.NAME;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.SCOPE_GLOBAL_ATTRIBUTE;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.TAG;
+
+/**
+ * Rejects, before anything is written, the lines that would fail to import for a reason that can be known in advance :
+ * conflicting delete actions, element out of its authorized scopes, unknown schema applied to a scope, or required
+ * parent missing for an element to create.
+ * <p>
+ * The validation is conservative : a rejected line would have failed with the same error once written, but a line
+ * passing the validation may still fail. In a dry run, the elements written by the previous lines are seen as the
+ * import would see them, see {@link DryRunElements}.
+ */
+final class LineValidator {
+
+    private final MetaSchema metaSchema;
+    private final UniqueElementFactory networkElementFactory;
+    private final DryRunElements dryRunElements;
+    private final Set<String> knownSchemas = Sets.newHashSet();
+
+    LineValidator(MetaSchema metaSchema, UniqueElementFactory networkElementFactory) {
+        this(metaSchema, networkElementFactory, DryRunElements.NONE);
+    }
+
+    LineValidator(MetaSchema metaSchema, UniqueElementFactory networkElementFactory, DryRunElements dryRunElements) {
+        this.metaSchema = metaSchema;
+        this.networkElementFactory = networkElementFactory;
+        this.dryRunElements = dryRunElements;
+    }
+
+    static void checkDeleteActions(Map<String, Action> markedToDelete, Map<Tuple2<String, String>, Action> xRelationsToDelete) {
+        if (markedToDelete.values().stream()
+                .distinct()
+                .count() > 1) {
+            throw new IllegalArgumentException("Several elements have been marked to delete with different strategy : " + markedToDelete);
+        }
+
+        if (xRelationsToDelete.values().stream()
+                .anyMatch(action -> action != Action.DELETE_NO_CASCADE)) {
+            throw new IllegalArgumentException("At least one relation is marked to delete with any other strategy than DELETE_NO_CASCADE : "
+                    + markedToDelete);
+        }
+    }
+
+    void validate(ParsedLine parsedLine, Transaction tx) {
+        LineMappingStrategy line = parsedLine.mapping;
+        Map<String, Action> markedToDelete = line.getElementsToDelete();
+        checkDeleteActions(markedToDelete, line.getRelationsToDelete());
+        if (!markedToDelete.isEmpty()) {
+            // Deleted elements and their children are not imported, leave the line to the import
+            return;
+        }
+
+        ImportPlan plan = line.strategy.getImportPlan(parsedLine.scopeKeyTypes);
+        for (String keyType : plan.elementsToCreate) {
+            if (SCOPE_GLOBAL_ATTRIBUTE.equals(keyType)) continue;
+            Optional<String> tag = line.getValue(keyType, TAG);
+            if (tag.isEmpty()) continue;
+
+            String scopeAttribute = line.guessScopeAttributeInLine(keyType);
+            if (metaSchema.isScope(keyType)) {
+                checkSchemasExist(line, keyType, tx);
+            } else if (!metaSchema.isOverridable(keyType)) {
+                checkRequiredParentsInLine(plan, line, keyType, tag.get(), scopeAttribute, parsedLine.index, tx);
+            }
+        }
+    }
+
+    /**
+     * Checks the required properties of the elements of the line can be found, as the import infers them : in the line
+     * first, then on the element and its required parents in the graph. Only reads the graph.
+     */
+    void checkRequiredProperties(ParsedLine parsedLine, Transaction tx) {
+        LineMappingStrategy line = parsedLine.mapping;
+        if (!line.getElementsToDelete().isEmpty()) {
+            return;
+        }
+        ImportPlan plan = line.strategy.getImportPlan(parsedLine.scopeKeyTypes);
+        for (String keyType : Iterables.concat(plan.elementsToUpdate, plan.elementsToCreate)) {
+            if (line.getValue(keyType, TAG).isEmpty()) continue;
+            for (ImportPlan.RequiredProperty requiredProperty : plan.getRequiredProperties(keyType)) {
+                if (!isInLine(requiredProperty, line) && !isInGraph(line, requiredProperty, parsedLine.index, tx)) {
+                    throw new IllegalArgumentException(String.format("%s.%s required column is missing. Cannot be inferred from parents neither. Line not imported.", keyType, requiredProperty.name));
+                }
+            }
+        }
+    }
+
+    private static boolean isInLine(ImportPlan.RequiredProperty requiredProperty, LineMappingStrategy line) {
+        for (int column : requiredProperty.columns) {
+            if (line.getValue(column).isPresent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInGraph(LineMappingStrategy line, ImportPlan.RequiredProperty requiredProperty, int lineIndex, Transaction tx) {
+        for (String keyType : requiredProperty.sourceKeyTypes) {
+            Optional<String> tag = line.getValue(keyType, TAG);
+            if (tag.isPresent()) {
+                if (dryRunElements.isWrittenBefore(tag.get(), requiredProperty.name, lineIndex)) {
+                    return true;
+                }
+                Node node = networkElementFactory.getWithOutcome(TAG, tag.get(), tx);
+                if (node != null && node.hasProperty(requiredProperty.name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void checkSchemasExist(LineMappingStrategy line, String keyType, Transaction tx) {
+        if (line.getValue(keyType, NAME).isEmpty()) {
+            return;
+        }
+        Optional<String> schemas = line.getValue(keyType, GraphModelConstants.SCHEMA);
+        if (schemas.isEmpty()) {
+            return;
+        }
+        for (String schema : Splitter.on(',').omitEmptyStrings().trimResults().split(schemas.get())) {
+            if (!knownSchemas.contains(schema)) {
+                if (tx.findNode(Labels.SCHEMA, GraphModelConstants.ID, schema) == null) {
+                    throw new InvalidScopeException(String.format("Unable to apply schema '%s' for node '%s'. Schema not found.", schema, keyType));
+                }
+                knownSchemas.add(schema);
+            }
+        }
+    }
+
+    private void checkRequiredParentsInLine(ImportPlan plan, LineMappingStrategy line, String keyType, String tag,
+                                            String scopeAttribute, int lineIndex, Transaction tx) {
+        for (ImportPlan.ParentLink parentLink : plan.getParentLinks(keyType)) {
+            if (!GraphModelConstants.CARDINALITY_UNIQUE_PARENT.equals(parentLink.cardinality)
+                    || SCOPE_GLOBAL_ATTRIBUTE.equals(parentLink.keyType)
+                    || (metaSchema.isScope(parentLink.keyType) && !scopeAttribute.equals(parentLink.keyType))) {
+                continue;
+            }
+            if (line.getValue(parentLink.keyType, TAG).isEmpty()
+                    && !dryRunElements.isCreatedBefore(tag, lineIndex)
+                    && networkElementFactory.getWithOutcome(TAG, tag, tx) == null) {
+                throw new MissingElementException(String.format("Unable to import '%s' because its required parent of type '%s' is not found. Line is ignored.", tag, parentLink.keyType));
+            }
+        }
+    }
+}
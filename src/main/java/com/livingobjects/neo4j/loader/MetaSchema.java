@@ -21,10 +21,9 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.CARDINALITY;
 import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.CARDINALITY_UNIQUE_PARENT;
@@ -40,6 +39,12 @@ import static com.livingobjects.neo4j.model.iwan.RelationshipTypes.PARENT;
 import static org.neo4j.graphdb.Direction.INCOMING;
 import static org.neo4j.graphdb.Direction.OUTGOING;
 
+/**
+ * Snapshot of the meta schema : the attributes, their parent relations and cross attributes relations.
+ * <p>
+ * The snapshot is read from the database once and does not need a transaction afterwards. The parents, children,
+ * authorized scopes and lineages of the attributes are resolved when it is built, every lookup is a map read.
+ */
 public final class MetaSchema {
 
     private final long theGlobalNode;
@@ -47,18 +52,28 @@ public final class MetaSchema {
     private final ImmutableMap<String, ImmutableSet<String>> requiredProperties;
     private final ImmutableMap<String, Optional<String>> defaultScopes;
     private final ImmutableSet<String> scopeTypes;
-    private final ImmutableMap<String, ImmutableList<Long>> childrenRelations;
-    private final ImmutableMap<String, ImmutableList<Long>> parentRelations;
+    // keytype -> relations to its children, and to its parents
+    private final ImmutableMap<String, ImmutableList<MetaRelation>> childrenRelations;
+    private final ImmutableMap<String, ImmutableList<MetaRelation>> parentRelations;
     // origin_type -> <dest_type, rel_type>
     private final ImmutableMap<String, ImmutableSet<Tuple2<String, String>>> crossAttributesRelations;
 
     private final ImmutableList<ImmutableList<String>> metaLineages;
 
+    private final ImmutableMap<String, ImmutableList<String>> monoParents;
+    private final ImmutableMap<String, ImmutableList<String>> requiredParents;
+    private final ImmutableMap<String, ImmutableList<String>> allChildren;
+    private final ImmutableMap<String, ImmutableList<String>> strongChildren;
+    private final ImmutableMap<String, ImmutableSet<String>> authorizedScopes;
+    // keytype -> all its ancestors through mono parent relations
+    private final ImmutableMap<String, ImmutableSet<String>> monoAncestors;
+    private final Map<Map.Entry<String, String>, ImmutableList<ImmutableList<String>>> upwardPaths = new ConcurrentHashMap<>();
+
     // Comparator for 2 attributes: o1 > o2 => o2 -[:Parent*0..n]-> o1
-    private final Function<Transaction, Comparator<String>> lineageComparator = tx -> (o1, o2) -> {
-        if (recursiveLineageComparator(tx, o1, o2)) {
+    private final Comparator<String> lineageComparator = (o1, o2) -> {
+        if (isMonoAncestor(o1, o2)) {
             return 1;
-        } else if (recursiveLineageComparator(tx, o2, o1)) {
+        } else if (isMonoAncestor(o2, o1)) {
             return -1;
         } else {
             return o1.compareTo(o2);
@@ -72,8 +87,8 @@ public final class MetaSchema {
 
         ImmutableMap.Builder<String, Node> importableKeyTypesBldr = ImmutableMap.builder();
         ImmutableSet.Builder<String> overrideBldr = ImmutableSet.builder();
-        ImmutableMap.Builder<String, ImmutableList<Long>> childrenRelationsBldr = ImmutableMap.builder();
-        ImmutableMap.Builder<String, ImmutableList<Long>> parentRelationsBldr = ImmutableMap.builder();
+        ImmutableMap.Builder<String, ImmutableList<MetaRelation>> childrenRelationsBldr = ImmutableMap.builder();
+        ImmutableMap.Builder<String, ImmutableList<MetaRelation>> parentRelationsBldr = ImmutableMap.builder();
         ImmutableMap.Builder<String, ImmutableSet<Tuple2<String, String>>> crossAttributesRelationsBldr = ImmutableMap.builder();
         ImmutableMap.Builder<String, ImmutableSet<String>> requiredPropertiesBldr = ImmutableMap.builder();
         ImmutableMap.Builder<String, Optional<String>> defaultScopesBldr = ImmutableMap.builder();
@@ -112,15 +127,15 @@ public final class MetaSchema {
                 if (GraphModelConstants.IMPORTABLE_KEY_TYPES.contains(keytype)) {
                     importableKeyTypesBldr.put(key, n);
                 }
-                ImmutableList.Builder<Long> crels = ImmutableList.builder();
-                ImmutableList.Builder<Long> prels = ImmutableList.builder();
-                n.getRelationships(INCOMING, PARENT).forEach(r -> crels.add(r.getId()));
-                n.getRelationships(OUTGOING, PARENT).forEach(r -> prels.add(r.getId()));
+                ImmutableList.Builder<MetaRelation> crels = ImmutableList.builder();
+                ImmutableList.Builder<MetaRelation> prels = ImmutableList.builder();
+                n.getRelationships(INCOMING, PARENT).forEach(r -> crels.add(new MetaRelation(getKeyAttribute(r.getStartNode()), r)));
+                n.getRelationships(OUTGOING, PARENT).forEach(r -> prels.add(new MetaRelation(getKeyAttribute(r.getEndNode()), r)));
                 ImmutableSet<Tuple2<String, String>> crossAttributes = CsvLoaderHelper.getCrossAttributes(n);
                 if (!GraphModelConstants.LABEL_TYPE.equals(keytype) && prels.build().isEmpty()) {
                     scopesBldr.put(n, key);
                 }
-                ImmutableList<Long> childrenRelations = crels.build();
+                ImmutableList<MetaRelation> childrenRelations = crels.build();
                 childrenRelationsBldr.put(key, childrenRelations);
                 parentRelationsBldr.put(key, prels.build());
                 crossAttributesRelationsBldr.put(key, crossAttributes);
@@ -153,6 +168,92 @@ public final class MetaSchema {
 
         this.requiredProperties = requiredPropertiesBldr.build();
         this.defaultScopes = defaultScopesBldr.build();
+
+        this.monoParents = ImmutableMap.copyOf(Maps.transformValues(parentRelations, relations -> filterRelations(relations,
+                cardinality -> !GraphModelConstants.CARDINALITY_MULTIPLE.equals(cardinality))));
+        this.requiredParents = ImmutableMap.copyOf(Maps.transformValues(parentRelations, relations -> filterRelations(relations,
+                GraphModelConstants.CARDINALITY_UNIQUE_PARENT::equals)));
+
+        Map<String, ImmutableList<String>> strongChildrenMemo = Maps.newHashMap();
+        ImmutableMap.Builder<String, ImmutableList<String>> allChildrenBldr = ImmutableMap.builder();
+        ImmutableMap.Builder<String, ImmutableList<String>> strongChildrenBldr = ImmutableMap.builder();
+        Map<String, ImmutableSet<String>> authorizedScopesMemo = Maps.newHashMap();
+        Map<String, ImmutableSet<String>> monoAncestorsMemo = Maps.newHashMap();
+        for (String keyAttribute : parentRelations.keySet()) {
+            allChildrenBldr.put(keyAttribute, resolveChildren(keyAttribute, cardinality -> true, strongChildrenMemo));
+            strongChildrenBldr.put(keyAttribute, resolveStrongChildren(keyAttribute, strongChildrenMemo));
+            resolveAuthorizedScopes(keyAttribute, authorizedScopesMemo);
+            resolveMonoAncestors(keyAttribute, monoAncestorsMemo);
+        }
+        this.allChildren = allChildrenBldr.build();
+        this.strongChildren = strongChildrenBldr.build();
+        this.authorizedScopes = ImmutableMap.copyOf(authorizedScopesMemo);
+        this.monoAncestors = ImmutableMap.copyOf(monoAncestorsMemo);
+    }
+
+    private static ImmutableList<String> filterRelations(ImmutableList<MetaRelation> relations, Predicate<String> cardinalityFilter) {
+        return relations.stream()
+                .filter(relation -> cardinalityFilter.test(relation.cardinality))
+                .map(relation -> relation.keyType)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private ImmutableList<String> resolveStrongChildren(String keyAttribute, Map<String, ImmutableList<String>> memo) {
+        ImmutableList<String> resolved = memo.get(keyAttribute);
+        if (resolved == null) {
+            resolved = resolveChildren(keyAttribute, CARDINALITY_UNIQUE_PARENT::equals, memo);
+            memo.put(keyAttribute, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * The children of the given cardinality, each one followed by its strong children.
+     */
+    private ImmutableList<String> resolveChildren(String keyAttribute, Predicate<String> expectedCardinality, Map<String, ImmutableList<String>> memo) {
+        ImmutableList.Builder<String> children = ImmutableList.builder();
+        for (MetaRelation relation : childrenRelations.getOrDefault(keyAttribute, ImmutableList.of())) {
+            if (expectedCardinality.test(relation.cardinality)) {
+                children.add(relation.keyType);
+                children.addAll(resolveStrongChildren(relation.keyType, memo));
+            }
+        }
+        return children.build();
+    }
+
+    private ImmutableSet<String> resolveAuthorizedScopes(String keyAttribute, Map<String, ImmutableSet<String>> memo) {
+        ImmutableSet<String> resolved = memo.get(keyAttribute);
+        if (resolved == null) {
+            if (scopeTypes.contains(keyAttribute)) {
+                resolved = ImmutableSet.of(keyAttribute);
+            } else {
+                ImmutableSet.Builder<String> scopes = ImmutableSet.builder();
+                for (String parent : monoParents.getOrDefault(keyAttribute, ImmutableList.of())) {
+                    if (scopeTypes.contains(parent)) {
+                        scopes.add(parent);
+                    } else {
+                        scopes.addAll(resolveAuthorizedScopes(parent, memo));
+                    }
+                }
+                resolved = scopes.build();
+            }
+            memo.put(keyAttribute, resolved);
+        }
+        return resolved;
+    }
+
+    private ImmutableSet<String> resolveMonoAncestors(String keyAttribute, Map<String, ImmutableSet<String>> memo) {
+        ImmutableSet<String> resolved = memo.get(keyAttribute);
+        if (resolved == null) {
+            ImmutableSet.Builder<String> ancestors = ImmutableSet.builder();
+            for (String parent : monoParents.getOrDefault(keyAttribute, ImmutableList.of())) {
+                ancestors.add(parent);
+                ancestors.addAll(resolveMonoAncestors(parent, memo));
+            }
+            resolved = ancestors.build();
+            memo.put(keyAttribute, resolved);
+        }
+        return resolved;
     }
 
     /**
@@ -174,8 +275,8 @@ public final class MetaSchema {
         return builder.build();
     }
 
-    public Comparator<String> getLineageComparator(Transaction tx) {
-        return lineageComparator.apply(tx);
+    public Comparator<String> getLineageComparator() {
+        return lineageComparator;
     }
 
     public ImmutableSet<String> getScopeTypes() {
@@ -211,27 +312,18 @@ public final class MetaSchema {
         return ImmutableSet.copyOf(collect);
     }
 
-    public ImmutableList<Relationship> getChildren(Transaction tx, String current) {
+    public ImmutableList<String> getChildren(String current) {
         return childrenRelations.getOrDefault(current, ImmutableList.of()).stream()
-                .map(tx::getRelationshipById)
+                .map(relation -> relation.keyType)
                 .collect(ImmutableList.toImmutableList());
     }
 
-    public ImmutableList<String> getAllChildren(Transaction tx, String current) {
-        return getChildrenOfCardinality(tx, current, (s) -> true);
-    }
-
-    public ImmutableList<String> getStrongChildren(Transaction tx, String current) {
-        return getChildrenOfCardinality(tx, current, CARDINALITY_UNIQUE_PARENT::equals);
+    public ImmutableList<String> getAllChildren(String current) {
+        return allChildren.getOrDefault(current, ImmutableList.of());
     }
 
-    private ImmutableList<String> getChildrenOfCardinality(Transaction tx, String current, Predicate<String> expectedCardinaly) {
-        return ImmutableList.copyOf(getChildren(tx, current).stream()
-                .filter(r -> expectedCardinaly.test(r.getProperty(CARDINALITY, "").toString()))
-                .map(Relationship::getStartNode)
-                .map(this::getKeyAttribute)
-                .flatMap(child -> Stream.concat(Stream.of(child), getStrongChildren(tx, child).stream()))
-                .collect(Collectors.toList()));
+    public ImmutableList<String> getStrongChildren(String current) {
+        return strongChildren.getOrDefault(current, ImmutableList.of());
     }
 
     public int scopeLevel(String scopeTag) {
@@ -250,64 +342,41 @@ public final class MetaSchema {
                 .orElseGet(() -> Optional.ofNullable(scopes.get(attributeNode)));
     }
 
-    public Stream<String> getMonoParentRelations(Transaction tx, String keyAttribute) {
-        return filterParentRelations(tx, keyAttribute, cardinality -> !GraphModelConstants.CARDINALITY_MULTIPLE.equals(cardinality));
+    public ImmutableList<String> getMonoParentRelations(String keyAttribute) {
+        return monoParents.getOrDefault(keyAttribute, ImmutableList.of());
     }
 
-    public Optional<String> getRequiredParent(Transaction tx, String keyAttribute) {
-        return getRequiredParents(tx, keyAttribute)
+    public Optional<String> getRequiredParent(String keyAttribute) {
+        return getRequiredParents(keyAttribute).stream()
                 .findFirst();
     }
 
-    public ImmutableMap<String, ImmutableList<Relationship>> getParentRelations(Transaction tx) {
-        return parentRelations.entrySet().stream()
-                .map(entry -> {
-                    ImmutableList<Relationship> relationships = entry.getValue().stream()
-                            .map(tx::getRelationshipById)
-                            .collect(ImmutableList.toImmutableList());
-                    return Maps.immutableEntry(entry.getKey(), relationships);
-                })
-                .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
-    }
-
-    public Stream<String> getRequiredParents(Transaction tx, String keyAttribute) {
-        return filterParentRelations(tx, keyAttribute, cardinality -> cardinality == null || GraphModelConstants.CARDINALITY_UNIQUE_PARENT.equals(cardinality));
+    /**
+     * @return the relations of the attribute to its parents.
+     */
+    public ImmutableList<MetaRelation> getParentRelations(String keyAttribute) {
+        return parentRelations.getOrDefault(keyAttribute, ImmutableList.of());
     }
 
-    private Stream<String> filterParentRelations(Transaction tx, String keyAttribute, Function<String, Boolean> cardinalityFilter) {
-        return parentRelations.get(keyAttribute).stream()
-                .map(tx::getRelationshipById)
-                .filter(r -> cardinalityFilter.apply(r.getProperty(GraphModelConstants.CARDINALITY, "").toString()))
-                .map(Relationship::getEndNode)
-                .map(this::getKeyAttribute);
+    public ImmutableList<String> getRequiredParents(String keyAttribute) {
+        return requiredParents.getOrDefault(keyAttribute, ImmutableList.of());
     }
 
-    private String getKeyAttribute(Node node) {
+    private static String getKeyAttribute(Node node) {
         return node.getProperty(_TYPE).toString() + KEYTYPE_SEPARATOR + node.getProperty(NAME).toString();
     }
 
-    public ImmutableSet<String> getAuthorizedScopes(Transaction tx, String keyAttribute) {
-        if (scopeTypes.contains(keyAttribute)) {
-            return ImmutableSet.of(keyAttribute);
-        } else {
-            return ImmutableSet.copyOf(getMonoParentRelations(tx, keyAttribute)
-                    .flatMap(parent -> {
-                        if (scopeTypes.contains(parent)) {
-                            return Stream.of(parent);
-                        } else {
-                            return getAuthorizedScopes(tx, parent).stream();
-                        }
-                    })
-                    .collect(Collectors.toSet()));
-        }
+    public ImmutableSet<String> getAuthorizedScopes(String keyAttribute) {
+        return authorizedScopes.getOrDefault(keyAttribute,
+                scopeTypes.contains(keyAttribute) ? ImmutableSet.of(keyAttribute) : ImmutableSet.of());
     }
 
     public boolean keyAttributeExists(String keyAttribute) {
         return parentRelations.get(keyAttribute) != null;
     }
 
-    public boolean isMultiScope(Transaction tx, String keyAttribute) {
-        return getAuthorizedScopes(tx, keyAttribute).size() > 1;
+    public boolean isMultiScope(String keyAttribute) {
+        return getAuthorizedScopes(keyAttribute).size() > 1;
     }
 
     public Optional<String> getDefaultScope(String keyAttribute) {
@@ -340,32 +409,51 @@ public final class MetaSchema {
      * If destType is not a parent of originType, this method will always return an empty List
      * If destType and originType are the same, this method will return a List containing the empty List
      */
-    public ImmutableList<ImmutableList<String>> getUpwardPath(Transaction tx, String originType, String destType) {
+    public ImmutableList<ImmutableList<String>> getUpwardPath(String originType, String destType) {
         if (destType.equals(originType)) {
             return ImmutableList.of(ImmutableList.of());
         }
-        return ImmutableList.copyOf(getParentRelations(tx)
-                .get(originType)
-                .stream()
-                .map(Relationship::getEndNode)
-                .map(this::getKeyAttribute)
-                .flatMap(parentType -> parentType.equals(destType) ?
-                        ImmutableList.of(ImmutableList.of(parentType)).stream() :
-                        getUpwardPath(tx, parentType, destType).stream()
-                                .map(path -> ImmutableList.<String>builder()
-                                        .add(parentType)
-                                        .addAll(path)
-                                        .build()))
-                .collect(Collectors.toList()));
-    }
-
-    private boolean recursiveLineageComparator(Transaction tx, String o1, String o2) {
-        if (getMonoParentRelations(tx, o1)
-                .anyMatch(o2::equals)) {
-            return true;
-        } else {
-            return getMonoParentRelations(tx, o1)
-                    .anyMatch(s -> recursiveLineageComparator(tx, s, o2));
+        Map.Entry<String, String> key = Maps.immutableEntry(originType, destType);
+        ImmutableList<ImmutableList<String>> paths = upwardPaths.get(key);
+        if (paths == null) {
+            paths = ImmutableList.copyOf(getParentRelations(originType)
+                    .stream()
+                    .map(relation -> relation.keyType)
+                    .flatMap(parentType -> parentType.equals(destType) ?
+                            ImmutableList.of(ImmutableList.of(parentType)).stream() :
+                            getUpwardPath(parentType, destType).stream()
+                                    .map(path -> ImmutableList.<String>builder()
+                                            .add(parentType)
+                                            .addAll(path)
+                                            .build()))
+                    .collect(Collectors.toList()));
+            upwardPaths.putIfAbsent(key, paths);
+        }
+        return paths;
+    }
+
+    private boolean isMonoAncestor(String keyAttribute, String ancestor) {
+        return monoAncestors.getOrDefault(keyAttribute, ImmutableSet.of()).contains(ancestor);
+    }
+
+    /**
+     * Relation of an attribute to one of its parents or children.
+     */
+    public static final class MetaRelation {
+
+        /**
+         * The keytype of the attribute at the other end of the relation.
+         */
+        public final String keyType;
+
+        /**
+         * The cardinality of the relation, empty when not specified.
+         */
+        public final String cardinality;
+
+        private MetaRelation(String keyType, Relationship relationship) {
+            this.keyType = keyType;
+            this.cardinality = relationship.getProperty(CARDINALITY, "").toString();
         }
     }
 }
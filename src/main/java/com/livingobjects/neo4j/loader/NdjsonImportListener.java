@@ -0,0 +1,95 @@
+package com.livingobjects.neo4j.loader;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.livingobjects.neo4j.model.result.Neo4jErrorResult;
+import com.livingobjects.neo4j.model.result.Neo4jLoadResult;
+import com.livingobjects.neo4j.model.result.TypedScope;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * Writes the outcome of a CSV import as newline delimited JSON, one object per line :
+ * <ul>
+ * <li>{@code {"type":..., "scope":..., "tag":...}} for each imported element,</li>
+ * <li>{@code {"line":..., "error":...}} for each failing line,</li>
+ * <li>{@code {"result":...}} for the result once the import is over,</li>
+ * <li>or {@code {"error":{"code":..., "message":...}}} instead when the import fails.</li>
+ * </ul>
+ * The output is flushed after each committed transaction.
+ */
+public final class NdjsonImportListener implements ImportListener, AutoCloseable {
+
+    private final ObjectMapper mapper;
+    private final JsonGenerator generator;
+
+    public NdjsonImportListener(ObjectMapper mapper, OutputStream out) throws IOException {
+        this.mapper = mapper;
+        this.generator = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void imported(TypedScope scope, Collection<String> tags) {
+        try {
+            for (String tag : tags) {
+                generator.writeStartObject();
+                generator.writeStringField("type", scope.type);
+                generator.writeStringField("scope", scope.scope);
+                generator.writeStringField("tag", tag);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void failed(int line, String error) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("line", line);
+            generator.writeStringField("error", error);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void batchCommitted() {
+        try {
+            generator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void result(Neo4jLoadResult result) throws IOException {
+        writeLine("result", result);
+    }
+
+    public void error(Neo4jErrorResult error) throws IOException {
+        writeLine("error", error);
+    }
+
+    private void writeLine(String field, Object value) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(field);
+        mapper.writeValue(generator, value);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
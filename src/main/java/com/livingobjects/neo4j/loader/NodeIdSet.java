@@ -0,0 +1,79 @@
+package com.livingobjects.neo4j.loader;
+
+import java.util.Arrays;
+
+/**
+ * Set of node ids kept in insertion order, without boxing : the ids are stored in an array, and in an open addressing
+ * hash table for the lookups. From 20 to 40 bytes per id, however scattered the ids are.
+ * <p>
+ * Not thread safe.
+ */
+final class NodeIdSet {
+
+    private static final int INITIAL_CAPACITY = 64;
+    // The table is grown once it is three quarters full
+    private static final int MAX_LOAD_SHIFT = 2;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private long[] order = new long[INITIAL_CAPACITY];
+    // Ids plus one, 0 marking an empty slot
+    private long[] table = new long[INITIAL_CAPACITY * 2];
+    private int size = 0;
+
+    /**
+     * @return true if the id was not in the set yet.
+     */
+    boolean add(long nodeId) {
+        int slot = slot(table, nodeId);
+        if (table[slot] != 0) {
+            return false;
+        }
+        table[slot] = nodeId + 1;
+        if (size == order.length) {
+            order = Arrays.copyOf(order, size * 2);
+        }
+        order[size++] = nodeId;
+        if (size > table.length - (table.length >>> MAX_LOAD_SHIFT)) {
+            rehash();
+        }
+        return true;
+    }
+
+    boolean contains(long nodeId) {
+        return table[slot(table, nodeId)] != 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index from 0, in insertion order.
+     */
+    long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of %d node id(s)", index, size));
+        }
+        return order[index];
+    }
+
+    private void rehash() {
+        long[] grown = new long[table.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[slot(grown, order[i])] = order[i] + 1;
+        }
+        table = grown;
+    }
+
+    /**
+     * @return the slot holding the id, or the empty slot where to add it.
+     */
+    private static int slot(long[] table, long nodeId) {
+        int mask = table.length - 1;
+        int slot = (int) ((nodeId * GOLDEN_RATIO) >>> 32) & mask;
+        while (table[slot] != 0 && table[slot] != nodeId + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
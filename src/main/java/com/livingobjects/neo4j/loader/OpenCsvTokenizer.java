@@ -0,0 +1,39 @@
+package com.livingobjects.neo4j.loader;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.enums.CSVReaderNullFieldIndicator;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.BitSet;
+
+/**
+ * The opencsv reader, reading all the columns whatever the retained ones.
+ */
+final class OpenCsvTokenizer implements CsvTokenizer {
+
+    private final CSVReader reader;
+
+    OpenCsvTokenizer(Reader reader) {
+        this.reader = new CSVReaderBuilder(reader)
+                .withFieldAsNull(CSVReaderNullFieldIndicator.EMPTY_SEPARATORS)
+                .build();
+    }
+
+    @Override
+    public String[] readNext() throws IOException, CsvValidationException {
+        return reader.readNext();
+    }
+
+    @Override
+    public void retainColumns(BitSet columns) {
+        // Each line is split in strings by opencsv anyway
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
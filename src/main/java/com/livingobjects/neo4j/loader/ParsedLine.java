@@ -0,0 +1,41 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A CSV line as handed from the parser stage to the writer stage of the {@link CsvImportPipeline}.
+ * Holds everything that could be resolved without touching the graph, or the failure raised while doing it.
+ */
+final class ParsedLine {
+
+    final int index;
+    final String[] line;
+    final ImmutableSet<String> scopeKeyTypes;
+    final LineMappingStrategy mapping;
+    // Client scope the line is written with when the import is partitioned by scope, null for the serialized lane
+    final String partitionScope;
+    final RuntimeException failure;
+
+    private ParsedLine(int index, String[] line, ImmutableSet<String> scopeKeyTypes, LineMappingStrategy mapping,
+                       String partitionScope, RuntimeException failure) {
+        this.index = index;
+        this.line = line;
+        this.scopeKeyTypes = scopeKeyTypes;
+        this.mapping = mapping;
+        this.partitionScope = partitionScope;
+        this.failure = failure;
+    }
+
+    static ParsedLine parsed(int index, String[] line, ImmutableSet<String> scopeKeyTypes, LineMappingStrategy mapping,
+                             String partitionScope) {
+        return new ParsedLine(index, line, scopeKeyTypes, mapping, partitionScope, null);
+    }
+
+    static ParsedLine failed(int index, String[] line, RuntimeException failure) {
+        return new ParsedLine(index, line, ImmutableSet.of(), null, null, failure);
+    }
+
+    boolean isFailed() {
+        return failure != null;
+    }
+}
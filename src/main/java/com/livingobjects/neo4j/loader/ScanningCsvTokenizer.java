@@ -0,0 +1,272 @@
+package com.livingobjects.neo4j.loader;
+
+import com.opencsv.exceptions.CsvMalformedLineException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Single pass tokenizer reproducing the opencsv parser defaults : ',' separator, '"' quote, '\' escape, quotes in the
+ * middle of a field kept as in opencsv, and the lines of a quoted field joined with '\n'.
+ * <p>
+ * The characters of a line are unescaped into a buffer reused from line to line, each field being an offset and a
+ * length in it : a string is only created for the non-empty fields of the retained columns.
+ */
+final class ScanningCsvTokenizer implements CsvTokenizer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int END_OF_STREAM = -1;
+    private static final int END_OF_LINE = -2;
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final char ESCAPE = '\\';
+
+    private final Reader reader;
+    private final char[] input = new char[BUFFER_SIZE];
+    private int inputPosition = 0;
+    private int inputLength = 0;
+    private long lineNumber = 0;
+
+    // Unescaped characters of the current line
+    private char[] chars = new char[1024];
+    private int charCount;
+    // Start and end of each field in chars, a null field ending at -1
+    private int[] fieldStarts = new int[64];
+    private int[] fieldEnds = new int[64];
+    private int fieldCount;
+
+    private boolean[] retained = null;
+
+    ScanningCsvTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public void retainColumns(BitSet columns) {
+        boolean[] retainedColumns = new boolean[columns.length()];
+        columns.stream().forEach(column -> retainedColumns[column] = true);
+        this.retained = retainedColumns;
+    }
+
+    @Override
+    public String[] readNext() throws IOException {
+        int c = next();
+        if (c == END_OF_STREAM) {
+            return null;
+        }
+        lineNumber++;
+        charCount = 0;
+        fieldCount = 0;
+
+        boolean inQuotes = false;
+        boolean inField = false;
+        boolean fromQuotedField = false;
+        boolean retainedField = isRetained(0);
+        int fieldStart = 0;
+        // Position in the physical line, and previous character of the physical line, as read by opencsv
+        int position = 0;
+        int previous = END_OF_LINE;
+
+        while (true) {
+            if (c == END_OF_LINE || c == END_OF_STREAM) {
+                if (!inQuotes) {
+                    endField(fieldStart, retainedField, fromQuotedField);
+                    return fields();
+                }
+                if (c == END_OF_STREAM) {
+                    throw new CsvMalformedLineException("Unterminated quoted field at end of CSV file", lineNumber,
+                            new String(chars, fieldStart, charCount - fieldStart));
+                }
+                // The quoted field goes on the next line
+                if (retainedField) {
+                    append('\n');
+                }
+                if (inField) {
+                    fromQuotedField = true;
+                }
+                lineNumber++;
+                position = 0;
+                previous = END_OF_LINE;
+                c = next();
+                continue;
+            }
+
+            char ch = (char) c;
+            if (ch == ESCAPE) {
+                // Escapes any character, dropped at the end of the line
+                int following = peek();
+                if (following >= 0) {
+                    next();
+                    if (retainedField) {
+                        append((char) following);
+                    }
+                    position++;
+                    ch = (char) following;
+                    fromQuotedField = true;
+                }
+                inField = true;
+            } else if (ch == QUOTE) {
+                int following = peek();
+                if ((inQuotes || inField) && following == QUOTE) {
+                    next();
+                    if (retainedField) {
+                        append(QUOTE);
+                    }
+                    position++;
+                    ch = QUOTE;
+                } else {
+                    inQuotes = !inQuotes;
+                    if (charCount == fieldStart) {
+                        fromQuotedField = true;
+                    }
+                    // A quote in the middle of a field is kept
+                    if (position > 2 && previous != SEPARATOR && following >= 0 && following != SEPARATOR && retainedField) {
+                        if (charCount > fieldStart && isWhitespace(fieldStart)) {
+                            charCount = fieldStart;
+                        } else {
+                            append(QUOTE);
+                        }
+                    }
+                }
+                inField = !inField;
+            } else if (ch == SEPARATOR && !inQuotes) {
+                endField(fieldStart, retainedField, fromQuotedField);
+                fieldStart = charCount;
+                retainedField = isRetained(fieldCount);
+                inField = false;
+                fromQuotedField = false;
+            } else {
+                // The run of ordinary characters following in the buffer is copied at once
+                int runEnd = inputPosition;
+                while (runEnd < inputLength && isOrdinary(input[runEnd])) {
+                    runEnd++;
+                }
+                int run = runEnd - inputPosition;
+                if (retainedField) {
+                    append(ch);
+                    append(input, inputPosition, run);
+                }
+                if (run > 0) {
+                    ch = input[runEnd - 1];
+                    position += run;
+                    inputPosition = runEnd;
+                }
+                inField = true;
+                fromQuotedField = true;
+            }
+            previous = ch;
+            position++;
+            c = next();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean isRetained(int column) {
+        return retained == null || (column < retained.length && retained[column]);
+    }
+
+    private boolean isWhitespace(int from) {
+        for (int i = from; i < charCount; i++) {
+            if (!Character.isWhitespace(chars[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOrdinary(char c) {
+        return c != SEPARATOR && c != QUOTE && c != ESCAPE && c != '\n' && c != '\r';
+    }
+
+    private void append(char[] source, int offset, int length) {
+        if (charCount + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+        }
+        System.arraycopy(source, offset, chars, charCount, length);
+        charCount += length;
+    }
+
+    private void append(char c) {
+        if (charCount == chars.length) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        chars[charCount++] = c;
+    }
+
+    private void endField(int fieldStart, boolean retainedField, boolean fromQuotedField) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = fieldStart;
+        boolean nullField = !retainedField || (charCount == fieldStart && !fromQuotedField);
+        fieldEnds[fieldCount] = nullField ? -1 : charCount;
+        fieldCount++;
+    }
+
+    private String[] fields() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            int end = fieldEnds[i];
+            if (end >= 0) {
+                int start = fieldStarts[i];
+                fields[i] = (start == end) ? "" : new String(chars, start, end - start);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return the next character, END_OF_LINE for a line break ('\n', '\r' or "\r\n") or END_OF_STREAM.
+     */
+    private int next() throws IOException {
+        if (inputPosition == inputLength && !fill()) {
+            return END_OF_STREAM;
+        }
+        char c = input[inputPosition++];
+        if (c == '\n') {
+            return END_OF_LINE;
+        }
+        if (c == '\r') {
+            if (inputPosition < inputLength || fill()) {
+                if (input[inputPosition] == '\n') {
+                    inputPosition++;
+                }
+            }
+            return END_OF_LINE;
+        }
+        return c;
+    }
+
+    /**
+     * @return the next character of the physical line without consuming it, a negative value at its end.
+     */
+    private int peek() throws IOException {
+        if (inputPosition == inputLength && !fill()) {
+            return END_OF_STREAM;
+        }
+        char c = input[inputPosition];
+        return (c == '\n' || c == '\r') ? END_OF_LINE : c;
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(input, 0, input.length);
+        } while (read == 0);
+        if (read < 0) {
+            inputPosition = inputLength = 0;
+            return false;
+        }
+        inputPosition = 0;
+        inputLength = read;
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.livingobjects.neo4j.model.result.ScopeAdmissionStatus;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Admission of the imports of a database by the client scopes they write : the imports of a scope are admitted one at a
+ * time, in arrival order, while the imports of distinct scopes run together. An import not stating its scopes is
+ * admitted at once, as before the admission existed, and only counted.
+ * <p>
+ * The scopes of an import are acquired in a fixed order, so that two imports waiting for each other's scopes cannot
+ * happen. The imports waiting and running on each scope, and how long they waited, are counted in {@link #status()}.
+ */
+public final class ScopeAdmission {
+
+    /**
+     * Key counting all the imports, the ones not stating their scopes included.
+     */
+    public static final String ALL_SCOPES = "*";
+
+    private static final Map<String, ScopeAdmission> ADMISSIONS = new ConcurrentHashMap<>();
+
+    // Never waited for, counts the running imports whatever their scopes
+    private final ScopeQueue allScopes = new ScopeQueue(ALL_SCOPES, Integer.MAX_VALUE);
+    private final Map<String, ScopeQueue> scopes = new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    ScopeAdmission() {
+    }
+
+    public static ScopeAdmission of(GraphDatabaseService graphDb) {
+        return ADMISSIONS.computeIfAbsent(graphDb.databaseName(), databaseName -> new ScopeAdmission());
+    }
+
+    /**
+     * Waits for the given scopes to be free, does not wait when empty.
+     *
+     * @return the permit of the import, to close once it is over.
+     */
+    public Permit admit(Collection<String> importScopes) throws InterruptedException {
+        ImmutableSortedSet<String> sortedScopes = ImmutableSortedSet.copyOf(importScopes);
+        allScopes.acquire(1);
+        ImmutableList.Builder<ScopeQueue> acquired = ImmutableList.builder();
+        try {
+            for (String scope : sortedScopes) {
+                ScopeQueue queue = scopes.computeIfAbsent(scope, key -> new ScopeQueue(key, 1));
+                queue.acquire(1);
+                acquired.add(queue);
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            acquired.build().forEach(queue -> queue.release(1));
+            allScopes.release(1);
+            throw e;
+        }
+        return new Permit(acquired.build());
+    }
+
+    /**
+     * @return the imports running and waiting by scope, and their wait times, all the imports first.
+     */
+    public List<ScopeAdmissionStatus> status() {
+        ImmutableList.Builder<ScopeAdmissionStatus> statuses = ImmutableList.builder();
+        statuses.add(allScopes.status());
+        scopes.values().stream()
+                .sorted(Comparator.comparing(queue -> queue.scope))
+                .forEach(queue -> statuses.add(queue.status()));
+        return statuses.build();
+    }
+
+    /**
+     * The scopes held by a running import.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final ImmutableList<ScopeQueue> acquired;
+        private boolean released = false;
+
+        private Permit(ImmutableList<ScopeQueue> acquired) {
+            this.acquired = acquired;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            acquired.reverse().forEach(queue -> queue.release(1));
+            allScopes.release(1);
+        }
+    }
+
+    /**
+     * The imports of a scope, admitted in arrival order.
+     */
+    private static final class ScopeQueue {
+
+        final String scope;
+        private final Semaphore semaphore;
+
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong admitted = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+        ScopeQueue(String scope, int permits) {
+            this.scope = scope;
+            this.semaphore = new Semaphore(permits, true);
+        }
+
+        void acquire(int importPermits) throws InterruptedException {
+            long start = System.nanoTime();
+            waiting.incrementAndGet();
+            try {
+                semaphore.acquire(importPermits);
+            } finally {
+                waiting.decrementAndGet();
+            }
+            long waitNanos = System.nanoTime() - start;
+            running.incrementAndGet();
+            admitted.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulate(waitNanos);
+        }
+
+        void release(int importPermits) {
+            running.decrementAndGet();
+            semaphore.release(importPermits);
+        }
+
+        ScopeAdmissionStatus status() {
+            long admittedImports = admitted.get();
+            long averageWaitNanos = admittedImports == 0 ? 0 : totalWaitNanos.get() / admittedImports;
+            return new ScopeAdmissionStatus(scope, running.get(), waiting.get(), admittedImports,
+                    TimeUnit.NANOSECONDS.toMillis(averageWaitNanos), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        }
+    }
+}
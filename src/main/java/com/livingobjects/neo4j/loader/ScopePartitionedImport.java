@@ -0,0 +1,292 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.livingobjects.neo4j.model.result.Neo4jLoadResult;
+import com.livingobjects.neo4j.model.result.TransactionBatch;
+import com.livingobjects.neo4j.model.result.TypedScope;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Writes a CSV import by client scope : the lines whose elements all belong to the same client scope, see
+ * {@link ParsedLine#partitionScope}, are written by the partition writer of that scope, the partitions being written in
+ * parallel, each one with its own transactions. The other lines (global and SP scope elements, several scopes, deletes)
+ * go through the serialized lane, written by the caller thread.
+ * <p>
+ * The lines of a scope are written in file order by the same writer. The partitions commit the lines read before a line
+ * of the serialized lane before it is written, and the serialized lane is committed before the partitions write the
+ * lines read after it. Each writer validates, commits and isolates the failures of its lines as a sequential import does.
+ * The partition writers run on the import threads of the database, see {@link ImportExecutors}.
+ */
+final class ScopePartitionedImport implements AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final Object END_OF_IMPORT = new Object();
+
+    private final CsvTopologyLoader.CsvImport serialLane;
+    private final ImmutableList<Partition> partitions;
+    private final ImportProgress progress;
+    private final int maxErrors;
+    private final List<Future<?>> writerTasks = Lists.newArrayList();
+
+    // Lines written by the serialized lane and not committed yet
+    private boolean serialLaneDirty = false;
+    private volatile boolean aborted = false;
+
+    /**
+     * @throws RejectedExecutionException if the database runs too many imports to start the writers, which are then closed.
+     */
+    ScopePartitionedImport(CsvTopologyLoader.CsvImport serialLane, List<CsvTopologyLoader.CsvImport> partitionWriters,
+                           ImportProgress progress, int maxErrors, ImportExecutors executors) {
+        this.serialLane = serialLane;
+        this.partitions = partitionWriters.stream().map(Partition::new).collect(ImmutableList.toImmutableList());
+        this.progress = progress;
+        this.maxErrors = maxErrors;
+        try {
+            for (Partition partition : partitions) {
+                writerTasks.add(executors.importThreads.submit(partition));
+            }
+        } catch (RejectedExecutionException e) {
+            writerTasks.forEach(task -> task.cancel(true));
+            partitions.forEach(partition -> partition.writer.close());
+            serialLane.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return a listener shared by the writers, calling the given one by one thread at a time.
+     */
+    static ImportListener synchronizedListener(ImportListener listener) {
+        return new ImportListener() {
+            @Override
+            public synchronized void imported(TypedScope scope, Collection<String> tags) {
+                listener.imported(scope, tags);
+            }
+
+            @Override
+            public synchronized void failed(int line, String error) {
+                listener.failed(line, error);
+            }
+
+            @Override
+            public synchronized void batchCommitted() {
+                listener.batchCommitted();
+            }
+        };
+    }
+
+    /**
+     * Writes the lines of the pipeline until its end or the cancellation of the import, and commits all the writers.
+     */
+    void importAll(CsvImportPipeline pipeline) throws IOException, CsvValidationException {
+        ParsedLine parsedLine;
+        while (!progress.isCancelled() && (parsedLine = pipeline.next()) != null) {
+            if (parsedLine.isFailed()) {
+                // Nothing is written for this line, it does not depend on the other ones
+                serialLane.importLine(parsedLine);
+            } else if (parsedLine.partitionScope == null) {
+                commitPartitions();
+                serialLane.importLine(parsedLine);
+                serialLaneDirty = true;
+            } else {
+                if (serialLaneDirty) {
+                    serialLane.commit();
+                    serialLaneDirty = false;
+                }
+                partitions.get(Math.floorMod(parsedLine.partitionScope.hashCode(), partitions.size())).send(parsedLine);
+            }
+        }
+        commitPartitions();
+        serialLane.commit();
+    }
+
+    Neo4jLoadResult result(CsvInput input) {
+        List<Neo4jLoadResult> results = Lists.newArrayList(serialLane.result(input));
+        partitions.forEach(partition -> results.add(partition.writer.result(input)));
+
+        int imported = 0;
+        int replayed = 0;
+        int errorCount = 0;
+        long tagCacheHits = 0;
+        long tagCacheMisses = 0;
+        int skippedRelocalizations = 0;
+        int transientRetries = 0;
+        Map<Integer, String> errors = Maps.newHashMap();
+        Map<TypedScope, Set<String>> importedElementsByScope = Maps.newHashMap();
+        Map<TypedScope, Integer> importedCountByScope = Maps.newHashMap();
+        Map<String, Integer> unchangedElements = Maps.newHashMap();
+        Map<String, Integer> changedElements = Maps.newHashMap();
+        List<TransactionBatch> batches = Lists.newArrayList();
+        for (Neo4jLoadResult result : results) {
+            imported += result.imported;
+            replayed += result.replayed;
+            errorCount += result.errorCount;
+            tagCacheHits += result.tagCacheHits;
+            tagCacheMisses += result.tagCacheMisses;
+            skippedRelocalizations += result.skippedRelocalizations;
+            transientRetries += result.transientRetries;
+            for (Map.Entry<Integer, String> error : result.errorLines.entrySet()) {
+                if (errors.size() < maxErrors) {
+                    errors.put(error.getKey(), error.getValue());
+                }
+            }
+            result.importedElementsByScope.forEach((scope, tags) ->
+                    importedElementsByScope.computeIfAbsent(scope, k -> Sets.newHashSet()).addAll(tags));
+            result.importedCountByScope.forEach((scope, count) -> importedCountByScope.merge(scope, count, Integer::sum));
+            result.unchangedElementsByKeyType.forEach((keyType, count) -> unchangedElements.merge(keyType, count, Integer::sum));
+            result.changedElementsByKeyType.forEach((keyType, count) -> changedElements.merge(keyType, count, Integer::sum));
+            batches.addAll(result.batches);
+        }
+        return Neo4jLoadResult.builder()
+                .imported(imported)
+                .errorLines(errors)
+                .errorCount(errorCount)
+                .importedElementsByScope(importedElementsByScope)
+                .importedCountByScope(importedCountByScope)
+                .replayed(replayed)
+                .batches(batches)
+                .tagCacheHits(tagCacheHits)
+                .tagCacheMisses(tagCacheMisses)
+                .skippedRelocalizations(skippedRelocalizations)
+                .unchangedElementsByKeyType(unchangedElements)
+                .changedElementsByKeyType(changedElements)
+                .cancelled(progress.isCancelled())
+                .bytesReceived(input.bytesReceived())
+                .bytesDecompressed(input.bytesDecompressed())
+                .transientRetries(transientRetries)
+                .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The lines still queued are only there when the import failed, they are not written
+        aborted = true;
+        try {
+            for (Partition partition : partitions) {
+                partition.queue.put(END_OF_IMPORT);
+            }
+            for (Future<?> writerTask : writerTasks) {
+                writerTask.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerTasks.forEach(task -> task.cancel(true));
+            throw new IOException("CSV import interrupted", e);
+        } catch (ExecutionException e) {
+            // The writers keep their failures for the next commit request
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            partitions.forEach(partition -> partition.writer.close());
+            serialLane.close();
+        }
+    }
+
+    /**
+     * Waits for the partitions having written lines since their last commit to commit them.
+     */
+    private void commitPartitions() throws IOException {
+        List<Partition> dirty = partitions.stream().filter(partition -> partition.dirty).collect(ImmutableList.toImmutableList());
+        if (dirty.isEmpty()) {
+            return;
+        }
+        CountDownLatch committed = new CountDownLatch(dirty.size());
+        for (Partition partition : dirty) {
+            partition.send(committed);
+            partition.dirty = false;
+        }
+        try {
+            committed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("CSV import interrupted", e);
+        }
+        for (Partition partition : dirty) {
+            if (partition.failure != null) {
+                throw partition.failure;
+            }
+        }
+    }
+
+    /**
+     * The writer of a part of the client scopes, run by a thread of its own, with the lines to write and the commit
+     * requests of the serialized lane.
+     */
+    private final class Partition implements Runnable {
+
+        final CsvTopologyLoader.CsvImport writer;
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        // Lines sent since the last commit request, only used by the caller thread
+        boolean dirty = false;
+        // Failure of the writer, the import ends at the next commit request
+        volatile RuntimeException failure;
+
+        Partition(CsvTopologyLoader.CsvImport writer) {
+            this.writer = writer;
+        }
+
+        void send(Object message) throws IOException {
+            try {
+                queue.put(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("CSV import interrupted", e);
+            }
+            dirty = dirty || message instanceof ParsedLine;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Object message;
+                while ((message = queue.take()) != END_OF_IMPORT) {
+                    if (message instanceof ParsedLine) {
+                        write((ParsedLine) message);
+                    } else {
+                        commit((CountDownLatch) message);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(ParsedLine parsedLine) {
+            if (failure != null || aborted) {
+                return;
+            }
+            try {
+                writer.importLine(parsedLine);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private void commit(CountDownLatch committed) {
+            try {
+                if (failure == null) {
+                    writer.commit();
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                committed.countDown();
+            }
+        }
+    }
+}
@@ -1,83 +1,120 @@
 package com.livingobjects.neo4j.loader;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.livingobjects.neo4j.helper.PropertyConverter;
+import com.livingobjects.neo4j.helper.TagNodeCache;
 import com.livingobjects.neo4j.helper.UniqueElementFactory;
 import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
 import com.livingobjects.neo4j.model.iwan.Labels;
 import com.livingobjects.neo4j.model.iwan.Relationship;
 import com.livingobjects.neo4j.model.iwan.RelationshipStatus;
-import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
+import com.livingobjects.neo4j.schema.SchemaMetadata;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 public final class TopologyLoader {
 
+    private static final int TAG_CACHE_CAPACITY = 16_384;
+
     private final GraphDatabaseService graphDb;
 
+    private final TagNodeCache tagCache = new TagNodeCache(TAG_CACHE_CAPACITY);
+
+    private final TransientRetry transientRetry = new TransientRetry(TransientRetry.DEFAULT_BUDGET);
+
     private final UniqueElementFactory networkElementFactory;
 
     private final ImmutableMap<String, ImmutableSet<String>> crossAttributeRelationships;
 
     private final TopologyLoaderUtils topologyLoaderUtils;
 
-    public TopologyLoader(GraphDatabaseService graphDb) {
-        try (Transaction tx = graphDb.beginTx()) {
-            this.networkElementFactory = UniqueElementFactory.networkElementFactory(graphDb);
-
-            Map<String, Set<String>> rels = Maps.newHashMap();
-            tx.findNodes(Labels.ATTRIBUTE)
-                    .forEachRemaining(a -> {
-                        for (org.neo4j.graphdb.Relationship relationship : a.getRelationships(Direction.OUTGOING, RelationshipTypes.CROSS_ATTRIBUTE)) {
-                            Node startNode = relationship.getStartNode();
-                            Node endNode = relationship.getEndNode();
-                            String from = startNode.getProperty(GraphModelConstants._TYPE).toString() + ':' + startNode.getProperty(GraphModelConstants.NAME).toString();
-                            String to = endNode.getProperty(GraphModelConstants._TYPE).toString() + ':' + endNode.getProperty(GraphModelConstants.NAME).toString();
-                            rels.computeIfAbsent(from, k -> Sets.newHashSet()).add(to);
-                        }
-                    });
-            this.crossAttributeRelationships = ImmutableMap.copyOf(Maps.transformValues(rels, ImmutableSet::copyOf));
-
-            UniqueElementFactory scopeElementFactory = new UniqueElementFactory(graphDb, Labels.SCOPE, Optional.empty());
+    public TopologyLoader(GraphDatabaseService graphDb, SchemaMetadata schemaMetadata) {
+        this.networkElementFactory = UniqueElementFactory.networkElementFactory(graphDb, tagCache);
+        this.crossAttributeRelationships = schemaMetadata.crossAttributeRelationships;
 
-            this.topologyLoaderUtils = new TopologyLoaderUtils(scopeElementFactory);
-        }
+        UniqueElementFactory scopeElementFactory = new UniqueElementFactory(graphDb, Labels.SCOPE, Optional.empty());
+        this.topologyLoaderUtils = new TopologyLoaderUtils(scopeElementFactory);
 
         this.graphDb = graphDb;
     }
 
-    public void loadRelationships(List<Relationship> relationships, Consumer<RelationshipStatus> relationshipStatusConsumer, boolean updateOnly) {
-        try (Transaction tx = graphDb.beginTx()) {
-            List<RelationshipStatus> statuses = Lists.newArrayList();
-            for (Relationship relationship : relationships) {
-                try {
-                    loadRelationship(relationship, updateOnly, tx);
-                    statuses.add(new RelationshipStatus(relationship.type, relationship.from, relationship.to, true, null));
-                } catch (Throwable e) {
-                    statuses.add(new RelationshipStatus(relationship.type, relationship.from, relationship.to, false, e.getMessage()));
+    /**
+     * Loads the relationships in one transaction, retried when it fails for a transient reason, see {@link TransientRetry}.
+     * The relationships are written ordered by their elements, so that concurrent transactions lock the elements in the
+     * same order, the statuses being still given in the order of the relationships.
+     *
+     * @return the commit time of the transaction, in nanoseconds, empty when it could not be committed.
+     */
+    public OptionalLong loadRelationships(List<Relationship> relationships, Consumer<RelationshipStatus> relationshipStatusConsumer, boolean updateOnly) {
+        Comparator<String> tagOrder = Comparator.nullsFirst(Comparator.naturalOrder());
+        int[] writeOrder = IntStream.range(0, relationships.size()).boxed()
+                .sorted(Comparator.comparing((Integer index) -> relationships.get(index).from, tagOrder)
+                        .thenComparing(index -> relationships.get(index).to, tagOrder))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        for (int attempt = 1; ; attempt++) {
+            Stopwatch commitWatch = Stopwatch.createUnstarted();
+            try (Transaction tx = graphDb.beginTx()) {
+                RelationshipStatus[] statuses = new RelationshipStatus[relationships.size()];
+                for (int index : writeOrder) {
+                    Relationship relationship = relationships.get(index);
+                    try {
+                        loadRelationship(relationship, updateOnly, tx);
+                        statuses[index] = new RelationshipStatus(relationship.type, relationship.from, relationship.to, true, null);
+                    } catch (Throwable e) {
+                        if (TransientRetry.isTransient(e)) {
+                            // The transaction cannot be committed anymore
+                            throw e;
+                        }
+                        statuses[index] = new RelationshipStatus(relationship.type, relationship.from, relationship.to, false, e.getMessage());
+                    }
                 }
+                commitWatch.start();
+                tx.commit();
+                commitWatch.stop();
+                tagCache.committed();
+                Arrays.asList(statuses).forEach(relationshipStatusConsumer);
+                return OptionalLong.of(commitWatch.elapsed(TimeUnit.NANOSECONDS));
+            } catch (Throwable e) {
+                tagCache.rolledBack();
+                if (transientRetry.shouldRetry(e, attempt)) {
+                    transientRetry.backoff(attempt);
+                    continue;
+                }
+                String message = e.getMessage();
+                relationships.forEach(relationship -> relationshipStatusConsumer.accept(new RelationshipStatus(relationship.type, relationship.from, relationship.to, false, message)));
+                return OptionalLong.empty();
             }
-            tx.commit();
-            statuses.forEach(relationshipStatusConsumer);
-        } catch (Throwable e) {
-            String message = e.getMessage();
-            relationships.forEach(relationship -> relationshipStatusConsumer.accept(new RelationshipStatus(relationship.type, relationship.from, relationship.to, false, message)));
         }
     }
 
+    /**
+     * @return the number of transactions retried after a transient failure.
+     */
+    public int transientRetries() {
+        return transientRetry.retries();
+    }
+
+    public TagNodeCache getTagCache() {
+        return tagCache;
+    }
+
     private void loadRelationship(Relationship relationship, boolean updateOnly, Transaction tx) {
         ImportRelationship relationshipType = ImportRelationship.of(relationship.type);
         if (relationshipType != null) {
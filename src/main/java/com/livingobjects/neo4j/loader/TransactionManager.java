@@ -5,15 +5,48 @@ import org.neo4j.graphdb.Transaction;
 
 import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public final class TransactionManager {
+
+    /**
+     * Notified of the outcome of the transactions ended by the manager.
+     */
+    public interface TransactionListener {
+        void committed();
+
+        void rolledBack();
+    }
+
+    private static final TransactionListener NO_LISTENER = new TransactionListener() {
+        @Override
+        public void committed() {
+        }
+
+        @Override
+        public void rolledBack() {
+        }
+    };
+
     private final GraphDatabaseService graphDb;
+    private final TransactionListener listener;
+    private final TransientRetry retry;
 
     public TransactionManager(GraphDatabaseService graphDb) {
+        this(graphDb, NO_LISTENER);
+    }
+
+    public TransactionManager(GraphDatabaseService graphDb, TransactionListener listener) {
+        this(graphDb, listener, new TransientRetry(TransientRetry.DEFAULT_BUDGET));
+    }
+
+    public TransactionManager(GraphDatabaseService graphDb, TransactionListener listener, TransientRetry retry) {
         this.graphDb = graphDb;
+        this.listener = listener;
+        this.retry = retry;
     }
 
-    public Transaction properlyRenewTransaction(Transaction tx, List<String[]> currentTransaction, BiConsumer<String[], Transaction> consumer) {
+    public <T> Transaction properlyRenewTransaction(Transaction tx, List<T> currentTransaction, BiConsumer<T, Transaction> consumer) {
         tx = renewTransaction(tx, true);
         tx = reloadValidTransactionLines(tx, currentTransaction, consumer);
         currentTransaction.clear();
@@ -26,18 +59,129 @@ public final class TransactionManager {
 
     public Transaction renewTransaction(Transaction tx, boolean asFailure) {
         if (asFailure) {
-            tx.rollback();
+            rollback(tx);
         } else {
-            tx.commit();
+            commit(tx);
         }
         tx.close();
         return graphDb.beginTx();
     }
 
-    public Transaction reloadValidTransactionLines(Transaction tx, List<String[]> lines, BiConsumer<String[], Transaction> consumer) {
+    /**
+     * Commits the transaction in which the lines are written. When the commit fails for a transient reason, the lines
+     * are written again in a new transaction and committed, see {@link TransientRetry}.
+     *
+     * @return a new transaction.
+     */
+    public <T> Transaction renewTransaction(Transaction tx, List<T> lines, BiConsumer<T, Transaction> consumer) {
+        return commitRetrying(tx, lines, consumer, true);
+    }
+
+    private <T> Transaction commitRetrying(Transaction tx, List<T> lines, BiConsumer<T, Transaction> consumer, boolean written) {
+        Transaction current = tx;
+        for (int attempt = 1; ; attempt++) {
+            RuntimeException failure = null;
+            if (!written || attempt > 1) {
+                try {
+                    for (T line : lines) {
+                        consumer.accept(line, current);
+                    }
+                } catch (RuntimeException e) {
+                    rollback(current);
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                try {
+                    commit(current);
+                    current.close();
+                    return graphDb.beginTx();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            current.close();
+            if (!retry.shouldRetry(failure, attempt)) {
+                throw failure;
+            }
+            retry.backoff(attempt);
+            current = graphDb.beginTx();
+        }
+    }
+
+    public void commit(Transaction tx) {
+        try {
+            tx.commit();
+        } catch (RuntimeException e) {
+            listener.rolledBack();
+            throw e;
+        }
+        listener.committed();
+    }
+
+    public void rollback(Transaction tx) {
+        tx.rollback();
+        listener.rolledBack();
+    }
+
+    /**
+     * Imports the lines in a new transaction and commits it. When a line fails, the lines before and after it are
+     * imported again in their own transactions. When the commit fails, the lines are split in two halves imported
+     * separately, until the lines which cannot be committed are isolated. A transient failure is retried with the same
+     * lines first, see {@link TransientRetry}.
+     *
+     * @param onFailure called with each line that could not be imported and the cause.
+     * @param onCommit  called with each group of lines once committed.
+     */
+    public <T> void commitIsolatingFailures(List<T> lines, BiConsumer<T, Transaction> consumer,
+                                            BiConsumer<T, RuntimeException> onFailure, Consumer<List<T>> onCommit) {
+        commitIsolatingFailures(lines, consumer, onFailure, onCommit, 1);
+    }
+
+    private <T> void commitIsolatingFailures(List<T> lines, BiConsumer<T, Transaction> consumer,
+                                             BiConsumer<T, RuntimeException> onFailure, Consumer<List<T>> onCommit, int attempt) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        int failing = -1;
+        RuntimeException failure = null;
+        try (Transaction tx = graphDb.beginTx()) {
+            for (int i = 0; i < lines.size(); i++) {
+                failing = i;
+                consumer.accept(lines.get(i), tx);
+            }
+            failing = -1;
+            tx.commit();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        if (failure == null) {
+            listener.committed();
+            onCommit.accept(lines);
+            return;
+        }
+
+        listener.rolledBack();
+        if (retry.shouldRetry(failure, attempt)) {
+            retry.backoff(attempt);
+            commitIsolatingFailures(lines, consumer, onFailure, onCommit, attempt + 1);
+        } else if (lines.size() == 1) {
+            onFailure.accept(lines.get(0), failure);
+        } else if (failing >= 0) {
+            commitIsolatingFailures(lines.subList(0, failing), consumer, onFailure, onCommit);
+            onFailure.accept(lines.get(failing), failure);
+            commitIsolatingFailures(lines.subList(failing + 1, lines.size()), consumer, onFailure, onCommit);
+        } else {
+            int middle = lines.size() / 2;
+            commitIsolatingFailures(lines.subList(0, middle), consumer, onFailure, onCommit);
+            commitIsolatingFailures(lines.subList(middle, lines.size()), consumer, onFailure, onCommit);
+        }
+    }
+
+    public <T> Transaction reloadValidTransactionLines(Transaction tx, List<T> lines, BiConsumer<T, Transaction> consumer) {
         if (!lines.isEmpty()) {
-            lines.forEach(l -> consumer.accept(l, tx));
-            return renewTransaction(tx);
+            return commitRetrying(tx, lines, consumer, false);
         }
         return tx;
     }
@@ -0,0 +1,82 @@
+package com.livingobjects.neo4j.loader;
+
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.kernel.api.exceptions.Status;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retry of the transactions failing for a transient reason, a deadlock or a lock timeout : such a failure says nothing
+ * about the written data, the same writes are expected to succeed once the concurrent transaction is over.
+ * <p>
+ * A transaction is retried at most {@link #MAX_ATTEMPTS} times, after a random wait growing with the attempts so that
+ * the transactions in conflict do not retry together. The retries of an import are also limited by a budget : under a
+ * lasting contention, the import reports the failures instead of retrying each transaction.
+ */
+public final class TransientRetry {
+
+    public static final int MAX_ATTEMPTS = 5;
+    public static final int DEFAULT_BUDGET = 100;
+
+    private static final long BASE_BACKOFF_MILLIS = 20;
+    private static final long MAX_BACKOFF_MILLIS = 1000;
+
+    private final int budget;
+    private final AtomicInteger retries = new AtomicInteger();
+
+    public TransientRetry(int budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return true for a deadlock, a lock timeout or any failure classified as transient by Neo4j, whatever its wrapping.
+     */
+    public static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientFailureException) {
+                return true;
+            }
+            if (cause instanceof Status.HasStatus
+                    && ((Status.HasStatus) cause).status().code().classification() == Status.Classification.TransientError) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param attempt number of the attempt which just failed, from 1.
+     * @return true if the failure is transient and the attempts and the budget allow a retry, which is then counted.
+     */
+    public boolean shouldRetry(Throwable failure, int attempt) {
+        if (attempt > MAX_ATTEMPTS || !isTransient(failure)) {
+            return false;
+        }
+        return retries.getAndUpdate(count -> count < budget ? count + 1 : count) < budget;
+    }
+
+    /**
+     * Waits before the next attempt, a random time up to twice the previous maximum.
+     */
+    public void backoff(int attempt) {
+        long maxMillis = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(maxMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of transactions retried so far.
+     */
+    public int retries() {
+        return retries.get();
+    }
+
+    public void reset() {
+        retries.set(0);
+    }
+}
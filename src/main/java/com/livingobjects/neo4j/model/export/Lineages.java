@@ -9,7 +9,6 @@ import com.livingobjects.neo4j.loader.MetaSchema;
 import com.livingobjects.neo4j.model.export.query.ExportQuery;
 import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
 import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Transaction;
 
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -31,7 +30,6 @@ public final class Lineages {
     public final ImmutableSet<String> attributesToExtract;
     public final ImmutableSortedSet<String> attributesToExport;
     public final ImmutableSet<String> orderedLeafAttributes;
-    private final Transaction tx;
     public final boolean noResult;
     public final boolean parentsCardinality;
 
@@ -40,14 +38,13 @@ public final class Lineages {
     private final ImmutableMap<String, Set<String>> columnsToExport;
     private final boolean includeMetadata;
 
-    public Lineages(Transaction tx, MetaSchema metaSchema, ExportQuery exportQuery, Set<String> commonChilds, ImmutableList<String> relAttrToExport) {
-        this.tx = tx;
+    public Lineages(MetaSchema metaSchema, ExportQuery exportQuery, Set<String> commonChilds, ImmutableList<String> relAttrToExport) {
         this.noResult = exportQuery.noResult;
 
         this.parentsCardinality = exportQuery.parentsCardinality;
 
         Set<String> attributesToExport = Sets.union(exportQuery.parentAttributes, exportQuery.requiredAttributes);
-        Comparator<String> lineageComparator = metaSchema.getLineageComparator(tx);
+        Comparator<String> lineageComparator = metaSchema.getLineageComparator();
         this.attributesToExport = ImmutableSortedSet.copyOf(lineageComparator, attributesToExport);
 
         Set<String> filterKeyAttributes = exportQuery.filter.columns()
@@ -84,7 +81,7 @@ public final class Lineages {
 
     private void addScopeColumn(ImmutableSet<String> attributesToExport, MetaSchema metaSchema) {
         for (String keyAttribute : attributesToExport) {
-            if (metaSchema.isMultiScope(tx, keyAttribute) && filterColumn(keyAttribute, GraphModelConstants.SCOPE)) {
+            if (metaSchema.isMultiScope(keyAttribute) && filterColumn(keyAttribute, GraphModelConstants.SCOPE)) {
                 getKeyAttributePropertiesType(keyAttribute).put(GraphModelConstants.SCOPE, "STRING");
             }
         }
@@ -1,5 +1,6 @@
 package com.livingobjects.neo4j.model.header;
 
+import com.livingobjects.neo4j.helper.PropertyConverter;
 import com.livingobjects.neo4j.model.PropertyType;
 
 import java.util.Optional;
@@ -22,12 +23,18 @@ public abstract class HeaderElement {
     public final boolean isArray;
     public final int index;
 
+    /**
+     * Converts the values of the column to its type.
+     */
+    public final PropertyConverter.Converter converter;
+
     HeaderElement(String elementName, String propertyName, PropertyType type, boolean isArray, int idx) {
         this.elementName = elementName;
         this.propertyName = propertyName;
         this.type = type;
         this.isArray = isArray;
         this.index = idx;
+        this.converter = PropertyConverter.converter(type, isArray);
     }
 
     public static HeaderElement of(String columnName, int idx) {
@@ -37,10 +37,11 @@ public final class GraphModelConstants {
     public static final String UPDATED_AT = "updatedAt";
     public static final String UPDATED_BY = "updatedBy";
     public static final String _OVERRIDABLE = "_overridable";
+    public static final String _FINGERPRINT = "_fingerprint";
     public static final String OVERRIDE = "override";
     public static final String CONTEXT = "context";
 
     public static final ImmutableSet<String> RESERVED_PROPERTIES =
-            ImmutableSet.of(Action.STATUS_HEADER, TAG, SCOPE, _TYPE, CREATED_AT, UPDATED_AT, CREATED_BY, UPDATED_BY);
+            ImmutableSet.of(Action.STATUS_HEADER, TAG, SCOPE, _TYPE, CREATED_AT, UPDATED_AT, CREATED_BY, UPDATED_BY, _FINGERPRINT);
 
 }
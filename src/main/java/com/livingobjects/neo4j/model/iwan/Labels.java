@@ -15,4 +15,6 @@ public final class Labels {
     public static final Label VERSION = Label.label("Version");
     public static final Label COUNTER = Label.label("Counter");
     public static final Label KPI = Label.label("KPI");
+    public static final Label IMPORT_CHECKPOINT = Label.label("ImportCheckpoint");
+    public static final Label IMPORT_CHECKPOINT_ERRORS = Label.label("ImportCheckpointErrors");
 }
@@ -14,5 +14,6 @@ public class RelationshipTypes {
     public static final RelationshipType EXTEND = RelationshipType.withName("Extend");
     public static final RelationshipType APPLIED_TO = RelationshipType.withName("AppliedTo");
     public static final RelationshipType VAR = RelationshipType.withName("Var");
+    public static final RelationshipType IMPORT_ERRORS = RelationshipType.withName("ImportErrors");
 
 }
@@ -0,0 +1,67 @@
+package com.livingobjects.neo4j.model.result;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public final class BulkDeleteResult {
+
+    /**
+     * Distinct tags asked for deletion.
+     */
+    public final int requested;
+
+    /**
+     * Elements deleted, the requested ones and their children.
+     */
+    public final int deleted;
+
+    /**
+     * Requested tags without element.
+     */
+    public final List<String> missingTags;
+
+    /**
+     * Requested tags not deleted, with the reason.
+     */
+    public final Map<String, String> rejectedTags;
+
+    public BulkDeleteResult(@JsonProperty("requested") int requested,
+                            @JsonProperty("deleted") int deleted,
+                            @JsonProperty("missingTags") List<String> missingTags,
+                            @JsonProperty("rejectedTags") Map<String, String> rejectedTags) {
+        this.requested = requested;
+        this.deleted = deleted;
+        this.missingTags = missingTags;
+        this.rejectedTags = rejectedTags;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BulkDeleteResult that = (BulkDeleteResult) o;
+        return requested == that.requested &&
+                deleted == that.deleted &&
+                Objects.equals(missingTags, that.missingTags) &&
+                Objects.equals(rejectedTags, that.rejectedTags);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(requested, deleted, missingTags, rejectedTags);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("requested", requested)
+                .add("deleted", deleted)
+                .add("missingTags", missingTags)
+                .add("rejectedTags", rejectedTags)
+                .toString();
+    }
+}
@@ -0,0 +1,107 @@
+package com.livingobjects.neo4j.model.result;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.util.Objects;
+
+public final class ImportJobStatus {
+
+    public final String id;
+
+    public final String username;
+
+    /**
+     * QUEUED, RUNNING, DONE, CANCELLED or FAILED.
+     */
+    public final String state;
+
+    /**
+     * Epoch milliseconds, 0 until the job reaches the step.
+     */
+    public final long submittedAt;
+
+    public final long startedAt;
+
+    public final long finishedAt;
+
+    public final long linesRead;
+
+    public final long linesCommitted;
+
+    public final long linesFailed;
+
+    /**
+     * Lines committed per second, smoothed over the last transactions.
+     */
+    public final double linesPerSecond;
+
+    /**
+     * Why the job failed, null unless FAILED.
+     */
+    public final String error;
+
+    public ImportJobStatus(@JsonProperty("id") String id,
+                           @JsonProperty("username") String username,
+                           @JsonProperty("state") String state,
+                           @JsonProperty("submittedAt") long submittedAt,
+                           @JsonProperty("startedAt") long startedAt,
+                           @JsonProperty("finishedAt") long finishedAt,
+                           @JsonProperty("linesRead") long linesRead,
+                           @JsonProperty("linesCommitted") long linesCommitted,
+                           @JsonProperty("linesFailed") long linesFailed,
+                           @JsonProperty("linesPerSecond") double linesPerSecond,
+                           @JsonProperty("error") String error) {
+        this.id = id;
+        this.username = username;
+        this.state = state;
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.linesRead = linesRead;
+        this.linesCommitted = linesCommitted;
+        this.linesFailed = linesFailed;
+        this.linesPerSecond = linesPerSecond;
+        this.error = error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ImportJobStatus that = (ImportJobStatus) o;
+        return submittedAt == that.submittedAt &&
+                startedAt == that.startedAt &&
+                finishedAt == that.finishedAt &&
+                linesRead == that.linesRead &&
+                linesCommitted == that.linesCommitted &&
+                linesFailed == that.linesFailed &&
+                Double.compare(that.linesPerSecond, linesPerSecond) == 0 &&
+                Objects.equals(id, that.id) &&
+                Objects.equals(username, that.username) &&
+                Objects.equals(state, that.state) &&
+                Objects.equals(error, that.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, username, state, submittedAt, startedAt, finishedAt, linesRead, linesCommitted, linesFailed, linesPerSecond, error);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("username", username)
+                .add("state", state)
+                .add("submittedAt", submittedAt)
+                .add("startedAt", startedAt)
+                .add("finishedAt", finishedAt)
+                .add("linesRead", linesRead)
+                .add("linesCommitted", linesCommitted)
+                .add("linesFailed", linesFailed)
+                .add("linesPerSecond", linesPerSecond)
+                .add("error", error)
+                .toString();
+    }
+}
@@ -1,26 +1,132 @@
 package com.livingobjects.neo4j.model.result;
 
-import com.google.common.base.MoreObjects;
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
 public final class Neo4jLoadResult {
 
+    /**
+     * Tags of the imported elements by scope, empty unless the result mode lists the elements.
+     */
     public final Map<TypedScope, Set<String>> importedElementsByScope;
 
+    /**
+     * Number of imported elements by scope, an element imported by several lines being counted once per line.
+     */
+    public final Map<TypedScope, Integer> importedCountByScope;
+
     public final int imported;
 
+    /**
+     * Error of each failing line, up to the maximum number of errors kept.
+     */
     public final Map<Integer, String> errorLines;
 
-    public Neo4jLoadResult(@JsonProperty("imported") int imported,
-                           @JsonProperty("errorLines") Map<Integer, String> errorLines,
-                           @JsonProperty("importedElementsByScope") Map<TypedScope, Set<String>> importedElementsByScope) {
+    /**
+     * Number of failing lines, including the ones not kept in errorLines.
+     */
+    public final int errorCount;
+
+    /**
+     * Number of lines imported again because of a failing line in the same transaction.
+     */
+    public final int replayed;
+
+    public final List<TransactionBatch> batches;
+
+    /**
+     * Element references resolved from the import cache, and resolved from the database.
+     */
+    public final long tagCacheHits;
+
+    public final long tagCacheMisses;
+
+    /**
+     * Number of imported elements kept on their planet because neither their scope nor the properties their planet
+     * depends on changed.
+     */
+    public final int skippedRelocalizations;
+
+    /**
+     * When skipping unchanged elements, number of elements by keytype imported with the fingerprint they were last
+     * imported with : nothing was written for them.
+     */
+    public final Map<String, Integer> unchangedElementsByKeyType;
+
+    /**
+     * When skipping unchanged elements, number of elements by keytype created or imported with a new fingerprint.
+     */
+    public final Map<String, Integer> changedElementsByKeyType;
+
+    /**
+     * True if the import was cancelled before the end of the file : only the lines read until then were imported.
+     */
+    public final boolean cancelled;
+
+    /**
+     * Size of the CSV stream as received, and once decompressed : the same when it is not compressed.
+     */
+    public final long bytesReceived;
+
+    public final long bytesDecompressed;
+
+    /**
+     * Transactions written again after a deadlock or a lock timeout.
+     */
+    public final int transientRetries;
+
+    /**
+     * Lines skipped by a resumed import, committed or failing in the previous uploads.
+     */
+    public final int resumedLines;
+
+    @JsonCreator
+    private Neo4jLoadResult(@JsonProperty("imported") int imported,
+                            @JsonProperty("errorLines") Map<Integer, String> errorLines,
+                            @JsonProperty("importedElementsByScope") Map<TypedScope, Set<String>> importedElementsByScope,
+                            @JsonProperty("replayed") int replayed,
+                            @JsonProperty("batches") List<TransactionBatch> batches,
+                            @JsonProperty("tagCacheHits") long tagCacheHits,
+                            @JsonProperty("tagCacheMisses") long tagCacheMisses,
+                            @JsonProperty("skippedRelocalizations") int skippedRelocalizations,
+                            @JsonProperty("unchangedElementsByKeyType") Map<String, Integer> unchangedElementsByKeyType,
+                            @JsonProperty("changedElementsByKeyType") Map<String, Integer> changedElementsByKeyType,
+                            @JsonProperty("cancelled") boolean cancelled,
+                            @JsonProperty("importedCountByScope") Map<TypedScope, Integer> importedCountByScope,
+                            @JsonProperty("errorCount") int errorCount,
+                            @JsonProperty("bytesReceived") long bytesReceived,
+                            @JsonProperty("bytesDecompressed") long bytesDecompressed,
+                            @JsonProperty("transientRetries") int transientRetries,
+                            @JsonProperty("resumedLines") int resumedLines) {
         this.importedElementsByScope = importedElementsByScope;
         this.imported = imported;
         this.errorLines = errorLines;
+        this.replayed = replayed;
+        this.batches = batches;
+        this.tagCacheHits = tagCacheHits;
+        this.tagCacheMisses = tagCacheMisses;
+        this.skippedRelocalizations = skippedRelocalizations;
+        this.unchangedElementsByKeyType = unchangedElementsByKeyType;
+        this.changedElementsByKeyType = changedElementsByKeyType;
+        this.cancelled = cancelled;
+        this.importedCountByScope = importedCountByScope;
+        this.errorCount = errorCount;
+        this.bytesReceived = bytesReceived;
+        this.bytesDecompressed = bytesDecompressed;
+        this.transientRetries = transientRetries;
+        this.resumedLines = resumedLines;
+    }
+
+    public static Builder builder() {
+        return new Builder();
     }
 
     @Override
@@ -29,13 +135,29 @@ public final class Neo4jLoadResult {
         if (o == null || getClass() != o.getClass()) return false;
         Neo4jLoadResult that = (Neo4jLoadResult) o;
         return imported == that.imported &&
+                replayed == that.replayed &&
+                tagCacheHits == that.tagCacheHits &&
+                tagCacheMisses == that.tagCacheMisses &&
+                skippedRelocalizations == that.skippedRelocalizations &&
+                cancelled == that.cancelled &&
+                errorCount == that.errorCount &&
+                bytesReceived == that.bytesReceived &&
+                bytesDecompressed == that.bytesDecompressed &&
+                transientRetries == that.transientRetries &&
+                resumedLines == that.resumedLines &&
+                Objects.equals(importedCountByScope, that.importedCountByScope) &&
                 Objects.equals(importedElementsByScope, that.importedElementsByScope) &&
-                Objects.equals(errorLines, that.errorLines);
+                Objects.equals(errorLines, that.errorLines) &&
+                Objects.equals(batches, that.batches) &&
+                Objects.equals(unchangedElementsByKeyType, that.unchangedElementsByKeyType) &&
+                Objects.equals(changedElementsByKeyType, that.changedElementsByKeyType);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(importedElementsByScope, imported, errorLines);
+        return Objects.hash(importedElementsByScope, imported, errorLines, replayed, batches, tagCacheHits, tagCacheMisses, skippedRelocalizations,
+                unchangedElementsByKeyType, changedElementsByKeyType, cancelled, importedCountByScope, errorCount,
+                bytesReceived, bytesDecompressed, transientRetries, resumedLines);
     }
 
     @Override
@@ -44,7 +166,132 @@ public final class Neo4jLoadResult {
                 .add("importedElementsByScope", importedElementsByScope)
                 .add("imported", imported)
                 .add("errorLines", errorLines)
+                .add("replayed", replayed)
+                .add("batches", batches)
+                .add("tagCacheHits", tagCacheHits)
+                .add("tagCacheMisses", tagCacheMisses)
+                .add("skippedRelocalizations", skippedRelocalizations)
+                .add("unchangedElementsByKeyType", unchangedElementsByKeyType)
+                .add("changedElementsByKeyType", changedElementsByKeyType)
+                .add("cancelled", cancelled)
+                .add("importedCountByScope", importedCountByScope)
+                .add("errorCount", errorCount)
+                .add("bytesReceived", bytesReceived)
+                .add("bytesDecompressed", bytesDecompressed)
+                .add("transientRetries", transientRetries)
+                .add("resumedLines", resumedLines)
                 .toString();
     }
 
+    public static class Builder {
+
+        private int imported = 0;
+        private Map<Integer, String> errorLines = ImmutableMap.of();
+        private Map<TypedScope, Set<String>> importedElementsByScope = ImmutableMap.of();
+        private int replayed = 0;
+        private List<TransactionBatch> batches = ImmutableList.of();
+        private long tagCacheHits = 0;
+        private long tagCacheMisses = 0;
+        private int skippedRelocalizations = 0;
+        private Map<String, Integer> unchangedElementsByKeyType = ImmutableMap.of();
+        private Map<String, Integer> changedElementsByKeyType = ImmutableMap.of();
+        private boolean cancelled = false;
+        private Map<TypedScope, Integer> importedCountByScope = ImmutableMap.of();
+        private int errorCount = 0;
+        private long bytesReceived = 0;
+        private long bytesDecompressed = 0;
+        private int transientRetries = 0;
+        private int resumedLines = 0;
+
+        public Builder imported(int imported) {
+            this.imported = imported;
+            return this;
+        }
+
+        public Builder errorLines(Map<Integer, String> errorLines) {
+            this.errorLines = errorLines;
+            return this;
+        }
+
+        public Builder importedElementsByScope(Map<TypedScope, Set<String>> importedElementsByScope) {
+            this.importedElementsByScope = importedElementsByScope;
+            return this;
+        }
+
+        public Builder replayed(int replayed) {
+            this.replayed = replayed;
+            return this;
+        }
+
+        public Builder batches(List<TransactionBatch> batches) {
+            this.batches = batches;
+            return this;
+        }
+
+        public Builder tagCacheHits(long tagCacheHits) {
+            this.tagCacheHits = tagCacheHits;
+            return this;
+        }
+
+        public Builder tagCacheMisses(long tagCacheMisses) {
+            this.tagCacheMisses = tagCacheMisses;
+            return this;
+        }
+
+        public Builder skippedRelocalizations(int skippedRelocalizations) {
+            this.skippedRelocalizations = skippedRelocalizations;
+            return this;
+        }
+
+        public Builder unchangedElementsByKeyType(Map<String, Integer> unchangedElementsByKeyType) {
+            this.unchangedElementsByKeyType = unchangedElementsByKeyType;
+            return this;
+        }
+
+        public Builder changedElementsByKeyType(Map<String, Integer> changedElementsByKeyType) {
+            this.changedElementsByKeyType = changedElementsByKeyType;
+            return this;
+        }
+
+        public Builder cancelled(boolean cancelled) {
+            this.cancelled = cancelled;
+            return this;
+        }
+
+        public Builder importedCountByScope(Map<TypedScope, Integer> importedCountByScope) {
+            this.importedCountByScope = importedCountByScope;
+            return this;
+        }
+
+        public Builder errorCount(int errorCount) {
+            this.errorCount = errorCount;
+            return this;
+        }
+
+        public Builder bytesReceived(long bytesReceived) {
+            this.bytesReceived = bytesReceived;
+            return this;
+        }
+
+        public Builder bytesDecompressed(long bytesDecompressed) {
+            this.bytesDecompressed = bytesDecompressed;
+            return this;
+        }
+
+        public Builder transientRetries(int transientRetries) {
+            this.transientRetries = transientRetries;
+            return this;
+        }
+
+        public Builder resumedLines(int resumedLines) {
+            this.resumedLines = resumedLines;
+            return this;
+        }
+
+        public Neo4jLoadResult build() {
+            return new Neo4jLoadResult(imported, errorLines, importedElementsByScope, replayed, batches, tagCacheHits, tagCacheMisses,
+                    skippedRelocalizations, unchangedElementsByKeyType, changedElementsByKeyType, cancelled, importedCountByScope,
+                    errorCount, bytesReceived, bytesDecompressed, transientRetries, resumedLines);
+        }
+    }
 }
@@ -0,0 +1,71 @@
+package com.livingobjects.neo4j.model.result;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.util.Objects;
+
+public final class ScopeAdmissionStatus {
+
+    /**
+     * The scope stated by the imports, or * for all the imports : the ones not stating their scopes wait there.
+     */
+    public final String scope;
+
+    public final int running;
+
+    public final int waiting;
+
+    /**
+     * Imports admitted since the start of the server.
+     */
+    public final long admitted;
+
+    public final long averageWaitMillis;
+
+    public final long maxWaitMillis;
+
+    public ScopeAdmissionStatus(@JsonProperty("scope") String scope,
+                                @JsonProperty("running") int running,
+                                @JsonProperty("waiting") int waiting,
+                                @JsonProperty("admitted") long admitted,
+                                @JsonProperty("averageWaitMillis") long averageWaitMillis,
+                                @JsonProperty("maxWaitMillis") long maxWaitMillis) {
+        this.scope = scope;
+        this.running = running;
+        this.waiting = waiting;
+        this.admitted = admitted;
+        this.averageWaitMillis = averageWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ScopeAdmissionStatus that = (ScopeAdmissionStatus) o;
+        return running == that.running &&
+                waiting == that.waiting &&
+                admitted == that.admitted &&
+                averageWaitMillis == that.averageWaitMillis &&
+                maxWaitMillis == that.maxWaitMillis &&
+                Objects.equals(scope, that.scope);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(scope, running, waiting, admitted, averageWaitMillis, maxWaitMillis);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("scope", scope)
+                .add("running", running)
+                .add("waiting", waiting)
+                .add("admitted", admitted)
+                .add("averageWaitMillis", averageWaitMillis)
+                .add("maxWaitMillis", maxWaitMillis)
+                .toString();
+    }
+}
@@ -0,0 +1,44 @@
+package com.livingobjects.neo4j.model.result;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.MoreObjects;
+
+import java.util.Objects;
+
+/**
+ * Size and commit time of one transaction of an import.
+ */
+public final class TransactionBatch {
+
+    public final int lines;
+
+    public final long commitMillis;
+
+    public TransactionBatch(@JsonProperty("lines") int lines,
+                            @JsonProperty("commitMillis") long commitMillis) {
+        this.lines = lines;
+        this.commitMillis = commitMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TransactionBatch that = (TransactionBatch) o;
+        return lines == that.lines &&
+                commitMillis == that.commitMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lines, commitMillis);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("lines", lines)
+                .add("commitMillis", commitMillis)
+                .toString();
+    }
+}
@@ -606,6 +606,8 @@ public final class SchemaLoader {
                                    Transaction tx) {
         boolean modified = false;
 
+        // Held until the end of the transaction : a concurrent merge of the same parent waits to see the created segment
+        tx.acquireWriteLock(parentNode);
         Node segmentNode = null;
         for (Relationship relationship : parentNode.getRelationships(OUTGOING, MEMDEXPATH)) {
             Node childNode = relationship.getEndNode();
@@ -0,0 +1,76 @@
+package com.livingobjects.neo4j.schema;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.livingobjects.neo4j.helper.PlanetByContext;
+import com.livingobjects.neo4j.helper.TemplatedPlanetFactory;
+import com.livingobjects.neo4j.loader.MetaSchema;
+import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
+import com.livingobjects.neo4j.model.iwan.Labels;
+import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the schema read by the imports and exports : the meta schema, the planet templates and the
+ * cross attribute relationships, as of a version of the schema.
+ */
+public final class SchemaMetadata {
+
+    public final long version;
+
+    public final MetaSchema metaSchema;
+
+    // keytype -> planet templates by context
+    public final ImmutableMap<String, PlanetByContext> planetTemplates;
+
+    // keytype -> keytypes it may have a cross attribute relationship to
+    public final ImmutableMap<String, ImmutableSet<String>> crossAttributeRelationships;
+
+    private SchemaMetadata(long version,
+                           MetaSchema metaSchema,
+                           ImmutableMap<String, PlanetByContext> planetTemplates,
+                           ImmutableMap<String, ImmutableSet<String>> crossAttributeRelationships) {
+        this.version = version;
+        this.metaSchema = metaSchema;
+        this.planetTemplates = planetTemplates;
+        this.crossAttributeRelationships = crossAttributeRelationships;
+    }
+
+    public static SchemaMetadata load(GraphDatabaseService graphDb) {
+        return load(graphDb, 0);
+    }
+
+    static SchemaMetadata load(GraphDatabaseService graphDb, long version) {
+        try (Transaction tx = graphDb.beginTx()) {
+            return new SchemaMetadata(
+                    version,
+                    new MetaSchema(tx),
+                    TemplatedPlanetFactory.loadPlanetTemplateName(tx),
+                    loadCrossAttributeRelationships(tx));
+        }
+    }
+
+    private static ImmutableMap<String, ImmutableSet<String>> loadCrossAttributeRelationships(Transaction tx) {
+        Map<String, Set<String>> rels = Maps.newHashMap();
+        tx.findNodes(Labels.ATTRIBUTE)
+                .forEachRemaining(a -> {
+                    for (Relationship relationship : a.getRelationships(Direction.OUTGOING, RelationshipTypes.CROSS_ATTRIBUTE)) {
+                        Node startNode = relationship.getStartNode();
+                        Node endNode = relationship.getEndNode();
+                        String from = startNode.getProperty(GraphModelConstants._TYPE).toString() + ':' + startNode.getProperty(GraphModelConstants.NAME).toString();
+                        String to = endNode.getProperty(GraphModelConstants._TYPE).toString() + ':' + endNode.getProperty(GraphModelConstants.NAME).toString();
+                        rels.computeIfAbsent(from, k -> Sets.newHashSet()).add(to);
+                    }
+                });
+        return ImmutableMap.copyOf(Maps.transformValues(rels, ImmutableSet::copyOf));
+    }
+}
@@ -0,0 +1,195 @@
+package com.livingobjects.neo4j.schema;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.livingobjects.neo4j.model.iwan.Labels;
+import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves the {@link SchemaMetadata} of a database to all the extensions, instead of reading the schema on each request.
+ * <p>
+ * A transaction event listener bumps the schema version each time a committed transaction touches an Attribute or
+ * PlanetTemplate node, or their Parent, Attribute or CrossAttribute relationships. The snapshot is then rebuilt in
+ * background, the previous one is served until the new one is ready.
+ */
+public final class SchemaMetadataService {
+
+    private static final Map<String, SchemaMetadataService> SERVICES = new ConcurrentHashMap<>();
+
+    private static final ImmutableSet<Label> SCHEMA_LABELS = ImmutableSet.of(Labels.ATTRIBUTE, Labels.PLANET_TEMPLATE);
+    private static final ImmutableSet<String> SCHEMA_RELATIONSHIP_TYPES = ImmutableSet.of(
+            RelationshipTypes.PARENT.name(), RelationshipTypes.ATTRIBUTE.name(), RelationshipTypes.CROSS_ATTRIBUTE.name());
+
+    private static final ExecutorService REBUILD_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("schema-metadata-rebuild-%d")
+            .setDaemon(true)
+            .build());
+
+    private final GraphDatabaseService graphDb;
+    private final SchemaChangeListener listener = new SchemaChangeListener();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<SchemaMetadata> snapshot = new AtomicReference<>();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private SchemaMetadataService(GraphDatabaseService graphDb) {
+        this.graphDb = graphDb;
+    }
+
+    /**
+     * @return the service of the database, listening to its transactions from the first call. A database restarted or
+     * created again under the same name gets a new service, the one of the previous instance stops listening.
+     */
+    public static SchemaMetadataService of(DatabaseManagementService dbms, GraphDatabaseService graphDb) {
+        return SERVICES.compute(graphDb.databaseName(), (databaseName, previous) -> {
+            if (previous != null && previous.graphDb == graphDb) {
+                return previous;
+            }
+            if (previous != null) {
+                unregister(dbms, databaseName, previous);
+            }
+            SchemaMetadataService service = new SchemaMetadataService(graphDb);
+            dbms.registerTransactionEventListener(databaseName, service.listener);
+            return service;
+        });
+    }
+
+    private static void unregister(DatabaseManagementService dbms, String databaseName, SchemaMetadataService service) {
+        try {
+            dbms.unregisterTransactionEventListener(databaseName, service.listener);
+        } catch (RuntimeException ignored) {
+            // Already gone with the previous instance of the database
+        }
+    }
+
+    /**
+     * @return the latest snapshot of the schema. It is read on the first call, later calls do not read the database.
+     */
+    public SchemaMetadata get() {
+        SchemaMetadata current = snapshot.get();
+        if (current == null) {
+            SchemaMetadata loaded = SchemaMetadata.load(graphDb, version.get());
+            current = snapshot.updateAndGet(previous -> newest(previous, loaded));
+        }
+        return current;
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Marks the current snapshot as outdated and rebuilds it in background.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            REBUILD_EXECUTOR.execute(this::rebuild);
+        }
+    }
+
+    private void rebuild() {
+        // Changes committed from now on schedule another rebuild
+        rebuildScheduled.set(false);
+        long rebuiltVersion = version.get();
+        SchemaMetadata outdated = snapshot.get();
+        try {
+            SchemaMetadata loaded = SchemaMetadata.load(graphDb, rebuiltVersion);
+            snapshot.updateAndGet(previous -> newest(previous, loaded));
+        } catch (RuntimeException e) {
+            // The next request reads the schema again and reports the error, unless a newer snapshot is already served
+            snapshot.compareAndSet(outdated, null);
+        }
+    }
+
+    private static SchemaMetadata newest(SchemaMetadata previous, SchemaMetadata loaded) {
+        return (previous == null || previous.version < loaded.version) ? loaded : previous;
+    }
+
+    private static boolean touchesSchema(TransactionData data) {
+        for (LabelEntry entry : data.assignedLabels()) {
+            if (SCHEMA_LABELS.contains(entry.label())) return true;
+        }
+        // Includes the labels of the deleted nodes
+        for (LabelEntry entry : data.removedLabels()) {
+            if (SCHEMA_LABELS.contains(entry.label())) return true;
+        }
+        for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+            if (isSchemaNode(data, entry.entity())) return true;
+        }
+        for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+            if (isSchemaNode(data, entry.entity())) return true;
+        }
+        for (Relationship relationship : data.createdRelationships()) {
+            if (isSchemaRelationship(data, relationship)) return true;
+        }
+        for (Relationship relationship : data.deletedRelationships()) {
+            if (isSchemaRelationship(data, relationship)) return true;
+        }
+        for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+            if (isSchemaRelationship(data, entry.entity())) return true;
+        }
+        for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+            if (isSchemaRelationship(data, entry.entity())) return true;
+        }
+        return false;
+    }
+
+    private static boolean isSchemaNode(TransactionData data, Node node) {
+        // A deleted schema node has already been seen in the removed labels
+        return !data.isDeleted(node) && hasSchemaLabel(node);
+    }
+
+    private static boolean isSchemaRelationship(TransactionData data, Relationship relationship) {
+        RelationshipType type = relationship.getType();
+        if (!SCHEMA_RELATIONSHIP_TYPES.contains(type.name())) {
+            return false;
+        }
+        // Elements are also linked to their planet by Attribute relationships, only the ones of the schema nodes count
+        return isSchemaNode(data, relationship.getStartNode());
+    }
+
+    private static boolean hasSchemaLabel(Node node) {
+        for (Label label : SCHEMA_LABELS) {
+            if (node.hasLabel(label)) return true;
+        }
+        return false;
+    }
+
+    private final class SchemaChangeListener implements TransactionEventListener<Boolean> {
+
+        @Override
+        public Boolean beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+            return touchesSchema(data);
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Boolean touchesSchema, GraphDatabaseService databaseService) {
+            if (Boolean.TRUE.equals(touchesSchema)) {
+                invalidate();
+            }
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Boolean touchesSchema, GraphDatabaseService databaseService) {
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.livingobjects.neo4j.benchmark;
+
+import com.livingobjects.neo4j.loader.CsvTokenizer;
+import com.opencsv.exceptions.CsvValidationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenization of a topology file by opencsv and by the scanning tokenizer : wide lines where most of the columns are
+ * empty, a few quoted values and the tag columns always filled.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvTokenizerBenchmark {
+
+    private static final int LINES = 10_000;
+    private static final int TAG_COLUMNS = 4;
+
+    @Param({"20", "200"})
+    public int columns;
+
+    // Part of the columns having a value
+    @Param({"0.1", "0.9"})
+    public double density;
+
+    private String csv;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int column = 0; column < columns; column++) {
+            builder.append(column == 0 ? "" : ",").append("neType:cpe.property").append(column);
+        }
+        builder.append('\n');
+        for (int line = 0; line < LINES; line++) {
+            for (int column = 0; column < columns; column++) {
+                if (column > 0) {
+                    builder.append(',');
+                }
+                if (column < TAG_COLUMNS) {
+                    builder.append("class=neType,neType=cpe,cpe=").append(line);
+                } else if (random.nextDouble() < density) {
+                    if (random.nextInt(10) == 0) {
+                        builder.append("\"value, ").append(column).append('"');
+                    } else {
+                        builder.append("value").append(column);
+                    }
+                }
+            }
+            builder.append('\n');
+        }
+        csv = builder.toString();
+    }
+
+    @Benchmark
+    public void openCsv(Blackhole blackhole) throws IOException, CsvValidationException {
+        readAll(CsvTokenizer.openCsv(new StringReader(csv)), blackhole);
+    }
+
+    @Benchmark
+    public void scanning(Blackhole blackhole) throws IOException, CsvValidationException {
+        readAll(CsvTokenizer.scanning(new StringReader(csv)), blackhole);
+    }
+
+    private void readAll(CsvTokenizer tokenizer, Blackhole blackhole) throws IOException, CsvValidationException {
+        String[] header = tokenizer.readNext();
+        BitSet headerColumns = new BitSet(header.length);
+        headerColumns.set(0, header.length);
+        tokenizer.retainColumns(headerColumns);
+        String[] line;
+        while ((line = tokenizer.readNext()) != null) {
+            blackhole.consume(line);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(CsvTokenizerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
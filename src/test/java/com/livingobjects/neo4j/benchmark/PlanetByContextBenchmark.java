@@ -0,0 +1,89 @@
+package com.livingobjects.neo4j.benchmark;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.livingobjects.neo4j.helper.PlanetByContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Planet localization of an element, from the element context as built before the templates were compiled (all the
+ * element properties as 'name:value' strings) and from the element properties read on demand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlanetByContextBenchmark {
+
+    private static final String KEY_TYPE = "neType:cpe";
+
+    @Param({"8", "64"})
+    public int templates;
+
+    @Param({"5", "30"})
+    public int elementProperties;
+
+    private PlanetByContext planetByContext;
+    private Map<String, Object> properties;
+
+    @Setup
+    public void setup() {
+        ImmutableMap.Builder<String, ImmutableSet<String>> planets = ImmutableMap.builder();
+        for (int i = 0; i < templates; i++) {
+            planets.put("iwan/{:scopeId}/cpe/" + i, ImmutableSet.of("domain:iwan", KEY_TYPE, "vendor:vendor" + i));
+        }
+        planetByContext = new PlanetByContext(planets.build());
+
+        ImmutableMap.Builder<String, Object> propertiesBuilder = ImmutableMap.builder();
+        propertiesBuilder.put("_type", "neType:cpe");
+        propertiesBuilder.put("tag", "class=neType,neType=cpe,cpe=benchmark");
+        propertiesBuilder.put("vendor", "vendor" + (templates - 1));
+        for (int i = 3; i < elementProperties; i++) {
+            propertiesBuilder.put("property" + i, "value" + i);
+        }
+        properties = propertiesBuilder.build();
+    }
+
+    @Benchmark
+    public String elementContext() {
+        Set<String> context = properties.entrySet().stream()
+                .filter(en -> !en.getKey().startsWith("_"))
+                .map(en -> en.getKey() + ':' + en.getValue())
+                .collect(Collectors.toSet());
+        return planetByContext.bestMatchingContext(Sets.union(context, ImmutableSet.of(KEY_TYPE)));
+    }
+
+    @Benchmark
+    public String elementProperties() {
+        return planetByContext.bestMatchingContext(KEY_TYPE, properties::get);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PlanetByContextBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
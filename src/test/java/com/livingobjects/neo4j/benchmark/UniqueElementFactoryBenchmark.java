@@ -0,0 +1,106 @@
+package com.livingobjects.neo4j.benchmark;
+
+import com.livingobjects.neo4j.helper.UniqueElementFactory;
+import com.livingobjects.neo4j.model.iwan.GraphModelConstants;
+import com.livingobjects.neo4j.model.iwan.Labels;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of the element get-or-create with concurrent writers, each writer creating its own elements.
+ * Run {@link #main(String[])} to measure it with 1 to 16 writers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UniqueElementFactoryBenchmark {
+
+    private static final int ELEMENTS_PER_TRANSACTION = 100;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"false", "true"})
+        public boolean existingElements;
+
+        Neo4j neo4j;
+        GraphDatabaseService graphDb;
+        UniqueElementFactory factory;
+        final AtomicInteger writers = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void start() {
+            neo4j = Neo4jBuilders.newInProcessBuilder().withDisabledServer().build();
+            graphDb = neo4j.defaultDatabaseService();
+            try (Transaction tx = graphDb.beginTx()) {
+                tx.schema().constraintFor(Labels.NETWORK_ELEMENT).assertPropertyIsUnique(GraphModelConstants.TAG).create();
+                tx.commit();
+            }
+            factory = UniqueElementFactory.networkElementFactory(graphDb);
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            neo4j.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        int writer;
+        long transactions;
+
+        @Setup(Level.Trial)
+        public void register(Database database) {
+            writer = database.writers.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public void getOrCreate(Database database, Writer writer) {
+        // Existing elements are read again on each transaction, otherwise each transaction creates new ones
+        long batch = database.existingElements ? 0 : writer.transactions++;
+        try (Transaction tx = database.graphDb.beginTx()) {
+            for (int i = 0; i < ELEMENTS_PER_TRANSACTION; i++) {
+                String tag = "class=benchmark,writer=" + writer.writer + ",element=" + (batch * ELEMENTS_PER_TRANSACTION + i);
+                database.factory.getOrCreateWithOutcome(GraphModelConstants.TAG, tag, tx);
+            }
+            tx.commit();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            Options options = new OptionsBuilder()
+                    .include(UniqueElementFactoryBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
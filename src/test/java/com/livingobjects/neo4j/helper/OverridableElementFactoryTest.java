@@ -0,0 +1,81 @@
+package com.livingobjects.neo4j.helper;
+
+import com.livingobjects.neo4j.loader.Scope;
+import com.livingobjects.neo4j.model.iwan.Labels;
+import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
+import com.livingobjects.neo4j.rules.WithNeo4jImpermanentDatabase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.NAME;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.SCOPE;
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.TAG;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OverridableElementFactoryTest {
+
+    private static final Scope CLIENT_SCOPE = new Scope("1", "class=cluster,client=1,cluster=client");
+    private static final String PLANET_NAME = "iwan/1/application/concurrent";
+    private static final String TAG_VALUE = "class=neType,neType=application,application=concurrent";
+
+    @Rule
+    public WithNeo4jImpermanentDatabase wNeo = new WithNeo4jImpermanentDatabase()
+            .withDatapacks("neo4j-test-database");
+
+    @Test
+    public void should_not_create_twice_an_element_overridden_concurrently() throws Exception {
+        GraphDatabaseService graphDb = wNeo.getGraphDatabaseService();
+        OverridableElementFactory tested = OverridableElementFactory.networkElementFactory(graphDb);
+        try (Transaction tx = graphDb.beginTx()) {
+            Node planet = tx.createNode(Labels.PLANET);
+            planet.setProperty(NAME, PLANET_NAME);
+            planet.setProperty(SCOPE, CLIENT_SCOPE.tag);
+            tx.commit();
+        }
+        CountDownLatch created = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> getOrOverride(tested, created, commit));
+        assertThat(created.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> getOrOverride(tested, new CountDownLatch(1), new CountDownLatch(0)));
+
+        // The second lookup waits for the scope lock of the first transaction
+        Thread.sleep(200);
+        assertThat(second).isNotDone();
+        commit.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isFalse();
+        try (Transaction tx = graphDb.beginTx()) {
+            assertThat(tx.findNodes(Labels.ELEMENT, TAG, TAG_VALUE).stream().count()).isEqualTo(1);
+        }
+    }
+
+    /**
+     * @return whether the element was created.
+     */
+    private boolean getOrOverride(OverridableElementFactory tested, CountDownLatch created, CountDownLatch commit) {
+        GraphDatabaseService graphDb = wNeo.getGraphDatabaseService();
+        try (Transaction tx = graphDb.beginTx()) {
+            UniqueEntity<Node> element = tested.getOrOverride(CLIENT_SCOPE, TAG, TAG_VALUE, "test", tx);
+            if (element.wasCreated) {
+                Node planet = tx.findNode(Labels.PLANET, NAME, PLANET_NAME);
+                element.entity.createRelationshipTo(planet, RelationshipTypes.ATTRIBUTE);
+            }
+            created.countDown();
+            commit.await();
+            tx.commit();
+            return element.wasCreated;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -191,4 +191,43 @@ public class PlanetByContextTest {
         assertThat(planetByContext.distinctAttributes(ImmutableSet.of("iwan/{:scopeId}/cpe/cisco", "iwan/{:scopeId}/cpe/huawei"))).containsExactly("vendor:cisco", "vendor:huawei");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void should_match_element_properties_and_keytype() throws Exception {
+        PlanetByContext planetByContext = new PlanetByContext(ImmutableMap.of(
+                "iwan/{:scopeId}/cpe", ImmutableSet.of("domain:iwan", "neType:cpe"),
+                "iwan/{:scopeId}/cpe/cisco", ImmutableSet.of("domain:iwan", "neType:cpe", "vendor:cisco"),
+                "iwan/{:scopeId}/cpe/huawei", ImmutableSet.of("domain:iwan", "neType:cpe", "vendor:huawei")
+        ));
+        ImmutableMap<String, Object> properties = ImmutableMap.of(
+                "vendor", "huawei",
+                "bandwidth", 1000,
+                "loopback", "172.17.10.22:5000");
+        assertThat(planetByContext.bestMatchingContext("neType:cpe", properties::get)).isEqualTo("iwan/{:scopeId}/cpe/huawei");
+    }
+
+    @Test
+    public void should_fail_on_element_properties_if_cannot_choose() throws Exception {
+        PlanetByContext planetByContext = new PlanetByContext(ImmutableMap.of(
+                "iwan/{:scopeId}/cpevip", ImmutableSet.of("domain:viptela", "neType:cpe"),
+                "iwan/{:scopeId}/cpe", ImmutableSet.of("domain:iwan", "neType:cpe")
+        ));
+        try {
+            planetByContext.bestMatchingContext("neType:cpe", ImmutableMap.<String, Object>of("bandwidth", 1000)::get);
+            fail("Should fail");
+        } catch (Exception e) {
+            assertThat(e).isInstanceOf(InsufficientContextException.class)
+                    .hasMessage("Multiple PlanetTemplate eligible but no sufficient context to choose certainty !");
+            assertThat(((InsufficientContextException) e).missingAttributesToChoose).containsOnly("domain:viptela", "domain:iwan");
+        }
+    }
+
+    @Test
+    public void should_list_properties_read_to_match_an_element() throws Exception {
+        PlanetByContext planetByContext = new PlanetByContext(ImmutableMap.of(
+                "iwan/{:scopeId}/cpe/cisco", ImmutableSet.of("domain:iwan", "neType:cpe", "vendor:cisco"),
+                "iwan/{:scopeId}/cpe/huawei", ImmutableSet.of("_internal:true", "neType:cpe", "vendor:huawei")
+        ));
+        assertThat(planetByContext.propertyNames()).containsOnly("domain", "neType", "vendor");
+    }
+
+}
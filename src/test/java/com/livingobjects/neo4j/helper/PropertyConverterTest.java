@@ -51,4 +51,36 @@ public final class PropertyConverterTest {
 
         assertThat(actual).containsOnly(".1 , hey ho !", ".2", ".3");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void should_convert_column_values_as_convert() {
+        String[] values = {"12", "2147483648", "-0", "0.5", ".5", "1e3", "01", "12 abc", "text", "null", "#KEEP_VALUE"};
+        PropertyConverter.Converter converter = PropertyConverter.converter(PropertyType.NUMBER, false);
+
+        for (String value : values) {
+            assertThat(converter.convert(value)).as(value).isEqualTo(PropertyConverter.convert(value, PropertyType.NUMBER, false));
+        }
+    }
+
+    @Test
+    public void should_convert_number_array_to_type_of_first_number() {
+        PropertyConverter.Converter converter = PropertyConverter.converter(PropertyType.NUMBER, true);
+
+        assertThat(converter.convert("[1, 2.7, 3]")).isEqualTo(new int[]{1, 2, 3});
+        assertThat(converter.convert("[2147483648, 1]")).isEqualTo(new long[]{2147483648L, 1L});
+        assertThat(converter.convert("[0.5, 1]")).isEqualTo(new double[]{0.5, 1});
+        assertThat(converter.convert("[.1, .2]")).isEqualTo(new double[]{.1, .2});
+        assertThat(converter.convert("[]")).isEqualTo(new int[0]);
+        assertThat(converter.convert("[1, a]")).isEqualTo("[1, a]");
+    }
+
+    @Test
+    public void should_convert_boolean_and_string_arrays() {
+        assertThat(PropertyConverter.converter(PropertyType.BOOLEAN, true).convert("[true, false]"))
+                .isEqualTo(new Boolean[]{true, false});
+        assertThat(PropertyConverter.converter(PropertyType.STRING, true).convert("[\"a\", \"b \\\"c\\\"\"]"))
+                .isEqualTo(new String[]{"a", "b \"c\""});
+        assertThat(PropertyConverter.converter(PropertyType.STRING, true).convert("#KEEP_VALUE"))
+                .isEqualTo(PropertyConverter.KEEP_VALUE_TOKEN);
+    }
+}
@@ -0,0 +1,46 @@
+package com.livingobjects.neo4j.helper;
+
+import com.livingobjects.neo4j.model.iwan.RelationshipTypes;
+import com.livingobjects.neo4j.rules.WithNeo4jImpermanentDatabase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RelationshipUtilsTest {
+
+    @Rule
+    public WithNeo4jImpermanentDatabase wNeo = new WithNeo4jImpermanentDatabase();
+
+    @Test
+    public void should_find_relationship_from_either_side() {
+        try (Transaction tx = wNeo.getGraphDatabaseService().beginTx()) {
+            Node hub = tx.createNode();
+            Node leaf = tx.createNode();
+            for (int i = 0; i < 100; i++) {
+                hub.createRelationshipTo(tx.createNode(), RelationshipTypes.CROSS_ATTRIBUTE);
+                tx.createNode().createRelationshipTo(hub, RelationshipTypes.CROSS_ATTRIBUTE);
+            }
+            Relationship fromHub = hub.createRelationshipTo(leaf, RelationshipTypes.CROSS_ATTRIBUTE);
+            Relationship toHub = leaf.createRelationshipTo(hub, RelationshipTypes.CROSS_ATTRIBUTE);
+
+            assertThat(RelationshipUtils.findRelationship(hub, leaf, RelationshipTypes.CROSS_ATTRIBUTE)).contains(fromHub);
+            assertThat(RelationshipUtils.findRelationship(leaf, hub, RelationshipTypes.CROSS_ATTRIBUTE)).contains(toHub);
+        }
+    }
+
+    @Test
+    public void should_not_find_relationship_of_other_direction_or_type() {
+        try (Transaction tx = wNeo.getGraphDatabaseService().beginTx()) {
+            Node hub = tx.createNode();
+            Node leaf = tx.createNode();
+            leaf.createRelationshipTo(hub, RelationshipTypes.CROSS_ATTRIBUTE);
+            hub.createRelationshipTo(leaf, RelationshipTypes.CONNECT);
+
+            assertThat(RelationshipUtils.findRelationship(hub, leaf, RelationshipTypes.CROSS_ATTRIBUTE)).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.livingobjects.neo4j.helper;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TagNodeCacheTest {
+
+    @Test
+    public void should_return_cached_node_and_count_hits() {
+        TagNodeCache tested = new TagNodeCache(10);
+        tested.put("class=cluster,cluster=1", 42);
+
+        assertThat(tested.get("class=cluster,cluster=1")).isEqualTo(42);
+        assertThat(tested.get("class=cluster,cluster=2")).isEqualTo(TagNodeCache.NO_NODE);
+        assertThat(tested.hits()).isEqualTo(1);
+        assertThat(tested.misses()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_evict_least_recently_used_tag_when_full() {
+        TagNodeCache tested = new TagNodeCache(2);
+        tested.put("a", 1);
+        tested.put("b", 2);
+        tested.get("a");
+
+        tested.put("c", 3);
+
+        assertThat(tested.size()).isEqualTo(2);
+        assertThat(tested.get("a")).isEqualTo(1);
+        assertThat(tested.get("b")).isEqualTo(TagNodeCache.NO_NODE);
+        assertThat(tested.get("c")).isEqualTo(3);
+    }
+
+    @Test
+    public void should_evict_uncommitted_tags_on_rollback() {
+        TagNodeCache tested = new TagNodeCache(10);
+        tested.put("a", 1);
+        tested.committed();
+        tested.put("b", 2);
+
+        tested.rolledBack();
+
+        assertThat(tested.get("a")).isEqualTo(1);
+        assertThat(tested.get("b")).isEqualTo(TagNodeCache.NO_NODE);
+    }
+
+    @Test
+    public void should_keep_other_tags_reachable_after_invalidation() {
+        TagNodeCache tested = new TagNodeCache(100);
+        for (int i = 0; i < 100; i++) {
+            tested.put("tag" + i, i);
+        }
+
+        for (int i = 0; i < 100; i += 2) {
+            tested.invalidate("tag" + i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(tested.get("tag" + i)).isEqualTo(i % 2 == 0 ? TagNodeCache.NO_NODE : i);
+        }
+    }
+}
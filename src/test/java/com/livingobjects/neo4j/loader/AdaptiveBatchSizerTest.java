@@ -0,0 +1,73 @@
+package com.livingobjects.neo4j.loader;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveBatchSizerTest {
+
+    @Test
+    public void should_shrink_batch_when_commit_is_slow() {
+        AdaptiveBatchSizer tested = new AdaptiveBatchSizer(500, true);
+
+        tested.committed(500, 0, TimeUnit.MILLISECONDS.toNanos(600));
+
+        assertThat(tested.batchSize()).isEqualTo(250);
+    }
+
+    @Test
+    public void should_grow_batch_at_most_twice_when_commit_is_fast() {
+        AdaptiveBatchSizer tested = new AdaptiveBatchSizer(500, true);
+
+        tested.committed(500, 0, TimeUnit.MILLISECONDS.toNanos(10));
+
+        assertThat(tested.batchSize()).isEqualTo(1000);
+    }
+
+    @Test
+    public void should_converge_to_target_commit_time() {
+        AdaptiveBatchSizer tested = new AdaptiveBatchSizer(500, true);
+
+        // 0.1 ms per line : 2500 lines commit in 250 ms
+        for (int i = 0; i < 20; i++) {
+            int lines = tested.batchSize();
+            tested.committed(lines, 0, TimeUnit.MICROSECONDS.toNanos(100L * lines));
+        }
+
+        assertThat(tested.batchSize()).isEqualTo(2500);
+    }
+
+    @Test
+    public void should_limit_batch_to_transaction_state_budget() {
+        AdaptiveBatchSizer tested = new AdaptiveBatchSizer(500, true);
+        long bytesPerLine = AdaptiveBatchSizer.TRANSACTION_STATE_BUDGET / 400;
+
+        tested.committed(500, 500 * bytesPerLine, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(tested.batchSize()).isEqualTo(400);
+        assertThat(tested.isFull(10, AdaptiveBatchSizer.TRANSACTION_STATE_BUDGET)).isTrue();
+    }
+
+    @Test
+    public void should_shrink_batch_when_commit_fails() {
+        AdaptiveBatchSizer tested = new AdaptiveBatchSizer(500, true);
+
+        tested.failed();
+
+        assertThat(tested.batchSize()).isEqualTo(250);
+    }
+
+    @Test
+    public void should_keep_batch_size_when_not_adaptive() {
+        AdaptiveBatchSizer tested = new AdaptiveBatchSizer(500, false);
+
+        tested.committed(500, 0, TimeUnit.SECONDS.toNanos(10));
+        tested.failed();
+
+        assertThat(tested.batchSize()).isEqualTo(500);
+        assertThat(tested.isFull(499, 0)).isFalse();
+        assertThat(tested.isFull(500, 0)).isTrue();
+    }
+}
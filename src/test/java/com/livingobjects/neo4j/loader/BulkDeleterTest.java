@@ -0,0 +1,157 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.livingobjects.neo4j.model.iwan.Labels;
+import com.livingobjects.neo4j.model.result.BulkDeleteResult;
+import com.livingobjects.neo4j.rules.WithNeo4jImpermanentDatabase;
+import com.livingobjects.neo4j.schema.SchemaMetadata;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.List;
+
+import static com.livingobjects.neo4j.model.iwan.GraphModelConstants.TAG;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkDeleterTest {
+
+    private static final String CPE_1 = "class=neType,cpe=CC_RJ45,neType=cpe";
+    private static final String WAN_LINK_1 = "class=neType,neType=wanLink,wanLink=CC__RJ45_I/42";
+    private static final String WAN_LINK_2 = "class=neType,neType=wanLink,wanLink=CC__RJ45_I/43";
+    private static final String WAN_LINK_3 = "class=neType,neType=wanLink,wanLink=HW__3615_R/42";
+    private static final String NETWORK_1 = "class=cluster,cluster=network,network=1";
+    private static final String NETWORK_3 = "class=cluster,cluster=network,network=3";
+    private static final String SITE_4 = "class=cluster,cluster=site,site=Site_4";
+    private static final String AREA_EUROPE = "area=Europe,class=cluster,cluster=area";
+    private static final String CPE_6 = "class=neType,cpe=cpe6,neType=cpe";
+    private static final String VIEWPOINT_9 = "class=neType,neType=viewpoint,viewpoint=viewpoint9";
+    private static final String VIEWPOINT_13 = "class=neType,neType=viewpoint,viewpoint=viewpoint13";
+
+    @Rule
+    public WithNeo4jImpermanentDatabase wNeo = new WithNeo4jImpermanentDatabase()
+            .withDatapacks("neo4j-test-database");
+
+    private BulkDeleter tested;
+
+    @Before
+    public void setUp() {
+        tested = new BulkDeleter(wNeo.getGraphDatabaseService(), SchemaMetadata.load(wNeo.getGraphDatabaseService()), Mockito.mock(Log.class));
+    }
+
+    @Test
+    public void should_reject_element_whose_strong_children_are_not_deleted() {
+        BulkDeleteResult result = tested.delete(ImmutableList.of(CPE_1), Action.DELETE_NO_CASCADE, BulkDeleter.Progress.NONE);
+
+        assertThat(result).isEqualTo(new BulkDeleteResult(1, 0, ImmutableList.of(),
+                ImmutableMap.of(CPE_1, "Cannot delete " + CPE_1 + ", its children has not been deleted")));
+        assertThat(exists(CPE_1)).isTrue();
+        assertThat(exists(WAN_LINK_1)).isTrue();
+    }
+
+    @Test
+    public void should_delete_element_posted_with_its_strong_children() {
+        BulkDeleteResult result = tested.delete(ImmutableList.of(CPE_1, WAN_LINK_1, WAN_LINK_2), Action.DELETE_NO_CASCADE, BulkDeleter.Progress.NONE);
+
+        assertThat(result).isEqualTo(new BulkDeleteResult(3, 3, ImmutableList.of(), ImmutableMap.of()));
+        assertThat(exists(CPE_1)).isFalse();
+        assertThat(exists(WAN_LINK_1)).isFalse();
+        assertThat(exists(WAN_LINK_2)).isFalse();
+    }
+
+    @Test
+    public void should_reject_element_extended_by_element_whose_strong_children_are_not_deleted() {
+        String extended = "class=cluster,cluster=site,site=Site_extended";
+        execute("MATCH (site:NetworkElement {tag:'" + SITE_4 + "'}), (pSite:Planet {name:'iwan/1/site/cisco'}) " +
+                "CREATE (extended:Element:NetworkElement {tag:'" + extended + "', _type:'cluster:site'})-[:Attribute]->(pSite) " +
+                "CREATE (site)-[:Extend]->(extended)");
+
+        BulkDeleteResult result = tested.delete(ImmutableList.of(extended), Action.DELETE_NO_CASCADE, BulkDeleter.Progress.NONE);
+
+        assertThat(result).isEqualTo(new BulkDeleteResult(1, 0, ImmutableList.of(),
+                ImmutableMap.of(extended, "Cannot delete " + extended + ", its children has not been deleted")));
+        assertThat(exists(extended)).isTrue();
+        assertThat(exists(SITE_4)).isTrue();
+    }
+
+    @Test
+    public void should_list_missing_tags() {
+        String unknown = "class=neType,cpe=UNKNOWN,neType=cpe";
+
+        BulkDeleteResult result = tested.delete(ImmutableList.of(unknown, VIEWPOINT_13), Action.DELETE_NO_CASCADE, BulkDeleter.Progress.NONE);
+
+        assertThat(result).isEqualTo(new BulkDeleteResult(2, 1, ImmutableList.of(unknown), ImmutableMap.of()));
+        assertThat(exists(VIEWPOINT_13)).isFalse();
+    }
+
+    @Test
+    public void should_delete_strong_children_in_cascade() {
+        List<Integer> progress = Lists.newArrayList();
+
+        BulkDeleteResult result = tested.delete(ImmutableList.of(SITE_4), Action.DELETE_CASCADE, (deleted, total) -> progress.add(deleted));
+
+        // The site, its cpe, and the 3 wan links and 4 viewpoints of the cpe
+        assertThat(result).isEqualTo(new BulkDeleteResult(1, 9, ImmutableList.of(), ImmutableMap.of()));
+        assertThat(progress).containsExactly(9);
+        assertThat(exists(SITE_4)).isFalse();
+        assertThat(exists(CPE_6)).isFalse();
+        assertThat(exists(VIEWPOINT_9)).isFalse();
+        assertThat(exists(NETWORK_3)).isTrue();
+        assertThat(exists(AREA_EUROPE)).isTrue();
+    }
+
+    @Test
+    public void should_keep_other_children_in_cascade() {
+        BulkDeleteResult result = tested.delete(ImmutableList.of(NETWORK_1), Action.DELETE_CASCADE, BulkDeleter.Progress.NONE);
+
+        assertThat(result).isEqualTo(new BulkDeleteResult(1, 1, ImmutableList.of(), ImmutableMap.of()));
+        assertThat(exists(NETWORK_1)).isFalse();
+        assertThat(exists(WAN_LINK_1)).isTrue();
+        assertThat(exists(WAN_LINK_3)).isTrue();
+    }
+
+    @Test
+    public void should_delete_all_children_in_cascade_all() {
+        BulkDeleteResult result = tested.delete(ImmutableList.of(NETWORK_1), Action.DELETE_CASCADE_ALL, BulkDeleter.Progress.NONE);
+
+        assertThat(result).isEqualTo(new BulkDeleteResult(1, 3, ImmutableList.of(), ImmutableMap.of()));
+        assertThat(exists(NETWORK_1)).isFalse();
+        assertThat(exists(WAN_LINK_1)).isFalse();
+        assertThat(exists(WAN_LINK_3)).isFalse();
+        assertThat(exists(CPE_1)).isTrue();
+    }
+
+    @Test
+    public void should_detach_scope_from_its_children() {
+        String scope = "class=cluster,client=emptied,cluster=client";
+        String site = "class=cluster,client=emptied,cluster=site,site=Site_1";
+        execute("MATCH (pClient:Planet {name:'iwan/1/client/cisco'}), (pSite:Planet {name:'iwan/1/site/cisco'}) " +
+                "CREATE (scope:Element:NetworkElement:Scope {tag:'" + scope + "', _type:'cluster:client'})-[:Attribute]->(pClient) " +
+                "CREATE (site:Element:NetworkElement {tag:'" + site + "', _type:'cluster:site'})-[:Attribute]->(pSite) " +
+                "CREATE (site)-[:Connect]->(scope)");
+
+        BulkDeleteResult result = tested.delete(ImmutableList.of(scope), Action.DELETE_CASCADE, BulkDeleter.Progress.NONE);
+
+        assertThat(result).isEqualTo(new BulkDeleteResult(1, 1, ImmutableList.of(), ImmutableMap.of()));
+        assertThat(exists(site)).isFalse();
+        assertThat(exists(scope)).isTrue();
+    }
+
+    private boolean exists(String tag) {
+        try (Transaction tx = wNeo.getGraphDatabaseService().beginTx()) {
+            return tx.findNode(Labels.NETWORK_ELEMENT, TAG, tag) != null;
+        }
+    }
+
+    private void execute(String query) {
+        try (Transaction tx = wNeo.getGraphDatabaseService().beginTx()) {
+            tx.execute(query);
+            tx.commit();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.livingobjects.neo4j.helper.UniqueElementFactory;
+import com.livingobjects.neo4j.rules.WithNeo4jImpermanentDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.graphdb.event.TransactionEventListenerAdapter;
+import org.neo4j.kernel.DeadlockDetectedException;
+import org.neo4j.logging.Log;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CascadeDeleteEngineTest {
+
+    private static final String CPE_TAG = "class=neType,cpe=cpe6,neType=cpe";
+    // The cpe, its 3 wan links and its 4 viewpoints
+    private static final int SUBTREE_SIZE = 8;
+    // Their 21 relationships and themselves
+    private static final int SUBTREE_OPERATIONS = 29;
+    private static final int BATCH_OPERATIONS = 5;
+
+    @Rule
+    public WithNeo4jImpermanentDatabase wNeo = new WithNeo4jImpermanentDatabase()
+            .withDatapacks("neo4j-test-database");
+
+    private CascadeDeleteEngine tested;
+    private TransactionEventListener<Object> failingListener;
+
+    @Before
+    public void setUp() {
+        GraphDatabaseService graphDb = wNeo.getGraphDatabaseService();
+        MetaSchema metaSchema;
+        try (Transaction tx = graphDb.beginTx()) {
+            metaSchema = new MetaSchema(tx);
+        }
+        tested = new CascadeDeleteEngine(graphDb, metaSchema, UniqueElementFactory.networkElementFactory(graphDb),
+                Mockito.mock(Log.class), BATCH_OPERATIONS);
+    }
+
+    @After
+    public void tearDown() {
+        if (failingListener != null) {
+            wNeo.getDatabaseManagementService().unregisterTransactionEventListener(wNeo.getGraphDatabaseService().databaseName(), failingListener);
+        }
+    }
+
+    @Test
+    public void should_delete_in_transactions_of_the_given_size() {
+        CascadeDeleteEngine.Plan plan = tested.collect(ImmutableList.of(CPE_TAG), Action.DELETE_CASCADE);
+        List<String> deletedTags = Lists.newArrayList();
+        List<Integer> progress = Lists.newArrayList();
+
+        int deleted = tested.delete(plan, deletedTags::add, progress::add);
+
+        assertThat(plan.size()).isEqualTo(SUBTREE_SIZE);
+        assertThat(deleted).isEqualTo(SUBTREE_SIZE);
+        assertThat(deletedTags).hasSize(SUBTREE_SIZE).contains(CPE_TAG, "class=neType,neType=viewpoint,viewpoint=viewpoint9");
+        // The deletion of an element itself can exceed the size of its transaction by one
+        assertThat(progress).hasSizeGreaterThanOrEqualTo(SUBTREE_OPERATIONS / (BATCH_OPERATIONS + 1)).isSorted();
+        assertThat(progress.get(progress.size() - 1)).isEqualTo(SUBTREE_SIZE);
+        assertThat(countSubtree()).isZero();
+    }
+
+    @Test
+    public void should_go_on_with_the_remaining_elements_after_a_failure() {
+        CascadeDeleteEngine.Plan plan = tested.collect(ImmutableList.of(CPE_TAG), Action.DELETE_CASCADE);
+        failOnCommit(3, () -> new IllegalStateException("Disk full"));
+
+        assertThatThrownBy(() -> tested.delete(plan, tag -> {
+        })).hasStackTraceContaining("Disk full");
+        long remaining = countSubtree();
+        assertThat(remaining).isBetween(1L, SUBTREE_SIZE - 1L);
+
+        CascadeDeleteEngine.Plan resumed = tested.collect(ImmutableList.of(CPE_TAG), Action.DELETE_CASCADE);
+        int deleted = tested.delete(resumed, tag -> {
+        });
+
+        assertThat(resumed.missingTags).isEmpty();
+        assertThat(deleted).isEqualTo(remaining);
+        assertThat(countSubtree()).isZero();
+    }
+
+    @Test
+    public void should_retry_a_transaction_failing_on_a_deadlock() {
+        CascadeDeleteEngine.Plan plan = tested.collect(ImmutableList.of(CPE_TAG), Action.DELETE_CASCADE);
+        AtomicInteger failures = failOnCommit(2, () -> new DeadlockDetectedException("Deadlock"));
+
+        int deleted = tested.delete(plan, tag -> {
+        });
+
+        assertThat(failures.get()).isEqualTo(1);
+        assertThat(deleted).isEqualTo(SUBTREE_SIZE);
+        assertThat(countSubtree()).isZero();
+    }
+
+    @Test
+    public void should_delete_with_the_writes_of_the_given_transaction() {
+        try (Transaction tx = wNeo.getGraphDatabaseService().beginTx()) {
+            CascadeDeleteEngine.Plan plan = tested.collect(ImmutableList.of(CPE_TAG), Action.DELETE_CASCADE, tx);
+
+            assertThat(tested.fitsInTransaction(plan)).isFalse();
+            assertThat(tested.delete(plan, tx, tag -> {
+            })).isEqualTo(SUBTREE_SIZE);
+            // Rolled back
+        }
+        assertThat(countSubtree()).isEqualTo(SUBTREE_SIZE);
+
+        try (Transaction tx = wNeo.getGraphDatabaseService().beginTx()) {
+            CascadeDeleteEngine.Plan plan = tested.collect(ImmutableList.of(CPE_TAG), Action.DELETE_CASCADE, tx);
+            List<String> deletedTags = Lists.newArrayList();
+
+            tested.delete(plan, tx, deletedTags::add);
+            tx.commit();
+
+            assertThat(deletedTags).hasSize(SUBTREE_SIZE).contains(CPE_TAG);
+        }
+        assertThat(countSubtree()).isZero();
+    }
+
+    /**
+     * Fails the given commit once, the next ones succeed.
+     *
+     * @return the number of failed commits.
+     */
+    private AtomicInteger failOnCommit(int commit, Supplier<RuntimeException> failure) {
+        AtomicInteger commits = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        failingListener = new TransactionEventListenerAdapter<Object>() {
+            @Override
+            public Object beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+                if (commits.incrementAndGet() == commit) {
+                    failures.incrementAndGet();
+                    throw failure.get();
+                }
+                return null;
+            }
+        };
+        wNeo.getDatabaseManagementService().registerTransactionEventListener(wNeo.getGraphDatabaseService().databaseName(), failingListener);
+        return failures;
+    }
+
+    private long countSubtree() {
+        try (Transaction tx = wNeo.getGraphDatabaseService().beginTx()) {
+            return (long) tx.execute("MATCH (n:NetworkElement) WHERE n.tag = $cpe OR n.tag STARTS WITH 'class=neType,neType=wanLink,wanLink=cpe6_' " +
+                            "OR n.tag IN ['class=neType,neType=viewpoint,viewpoint=viewpoint9', 'class=neType,neType=viewpoint,viewpoint=viewpoint10', " +
+                            "'class=neType,neType=viewpoint,viewpoint=viewpoint11', 'class=neType,neType=viewpoint,viewpoint=viewpoint12'] " +
+                            "RETURN count(n) AS count",
+                    ImmutableMap.of("cpe", CPE_TAG)).columnAs("count").next();
+        }
+    }
+}
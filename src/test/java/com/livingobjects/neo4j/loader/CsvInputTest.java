@@ -0,0 +1,55 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.io.CharStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CsvInputTest {
+
+    private static final String CSV = "cluster:client.tag,cluster:client.name\nclient:\u00e9,Client \u00e9\n";
+
+    @Test
+    public void should_decompress_gzip_and_count_bytes() throws IOException {
+        byte[] csv = CSV.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(csv);
+        }
+        CsvImportOptions options = CsvImportOptions.builder().compression(CsvImportOptions.Compression.GZIP).build();
+
+        CsvInput tested = CsvInput.open(new ByteArrayInputStream(compressed.toByteArray()), options);
+
+        assertThat(CharStreams.toString(tested.reader())).isEqualTo(CSV);
+        assertThat(tested.bytesReceived()).isEqualTo(compressed.size());
+        assertThat(tested.bytesDecompressed()).isEqualTo(csv.length);
+    }
+
+    @Test
+    public void should_read_with_given_charset() throws IOException {
+        byte[] csv = CSV.getBytes(StandardCharsets.ISO_8859_1);
+        CsvImportOptions options = CsvImportOptions.builder().charset(StandardCharsets.ISO_8859_1).build();
+
+        CsvInput tested = CsvInput.open(new ByteArrayInputStream(csv), options);
+
+        assertThat(CharStreams.toString(tested.reader())).isEqualTo(CSV);
+        assertThat(tested.bytesReceived()).isEqualTo(csv.length);
+        assertThat(tested.bytesDecompressed()).isEqualTo(csv.length);
+    }
+
+    @Test
+    public void should_read_compression_from_content_encoding() {
+        assertThat(CsvImportOptions.Compression.fromEncoding(null)).isEqualTo(CsvImportOptions.Compression.NONE);
+        assertThat(CsvImportOptions.Compression.fromEncoding("identity")).isEqualTo(CsvImportOptions.Compression.NONE);
+        assertThat(CsvImportOptions.Compression.fromEncoding("GZIP")).isEqualTo(CsvImportOptions.Compression.GZIP);
+        assertThat(CsvImportOptions.Compression.fromEncoding("zstd")).isEqualTo(CsvImportOptions.Compression.ZSTD);
+        assertThatThrownBy(() -> CsvImportOptions.Compression.fromEncoding("br")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
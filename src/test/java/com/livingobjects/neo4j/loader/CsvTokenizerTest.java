@@ -0,0 +1,75 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.Lists;
+import com.opencsv.exceptions.CsvMalformedLineException;
+import com.opencsv.exceptions.CsvValidationException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CsvTokenizerTest {
+
+    private static final String[] SAMPLES = {
+            "a,b,c\n1,,3\n",
+            ",,\r\n,\"\",\r\n",
+            "\"a,b\",\"c\"\"d\",e\n",
+            "\"multi\nline\",x\r\ny,\"other\r\nline\"\n",
+            "a\\,b,\\\"c\\\",d\\\n",
+            "ab\"cd\"ef,gh\n",
+            "  \"quoted\" ,x\n",
+            "last,line,without,break",
+            "\n\n",
+    };
+
+    @Test
+    public void should_split_lines_as_opencsv() throws Exception {
+        for (String sample : SAMPLES) {
+            assertThat(readAll(CsvTokenizer.scanning(new StringReader(sample))))
+                    .as(sample)
+                    .containsExactlyElementsOf(readAll(CsvTokenizer.openCsv(new StringReader(sample))));
+        }
+    }
+
+    @Test
+    public void should_read_unquoted_empty_field_as_null() throws Exception {
+        CsvTokenizer tested = CsvTokenizer.scanning(new StringReader("a,,\"\",b\n"));
+
+        assertThat(tested.readNext()).containsExactly("a", null, "", "b");
+        assertThat(tested.readNext()).isNull();
+    }
+
+    @Test
+    public void should_only_read_retained_columns() throws Exception {
+        CsvTokenizer tested = CsvTokenizer.scanning(new StringReader("h1,h2,h3\na,b,c,d\n"));
+        assertThat(tested.readNext()).containsExactly("h1", "h2", "h3");
+        BitSet columns = new BitSet();
+        columns.set(0);
+        columns.set(2);
+
+        tested.retainColumns(columns);
+
+        assertThat(tested.readNext()).containsExactly("a", null, "c", null);
+    }
+
+    @Test
+    public void should_fail_on_unterminated_quoted_field() {
+        CsvTokenizer tested = CsvTokenizer.scanning(new StringReader("a,\"b\nc"));
+
+        assertThatThrownBy(tested::readNext).isInstanceOf(CsvMalformedLineException.class);
+    }
+
+    private static List<List<String>> readAll(CsvTokenizer tokenizer) throws IOException, CsvValidationException {
+        List<List<String>> lines = Lists.newArrayList();
+        String[] line;
+        while ((line = tokenizer.readNext()) != null) {
+            lines.add(Lists.newArrayList(line));
+        }
+        return lines;
+    }
+}
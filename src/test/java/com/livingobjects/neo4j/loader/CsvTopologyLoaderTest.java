@@ -1,16 +1,23 @@
 package com.livingobjects.neo4j.loader;
 
 import com.google.common.collect.ImmutableSet;
+import com.livingobjects.neo4j.model.result.Neo4jLoadResult;
 import com.livingobjects.neo4j.rules.WithNeo4jImpermanentDatabase;
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class CsvTopologyLoaderTest {
 
@@ -38,4 +45,94 @@ public class CsvTopologyLoaderTest {
         Assertions.assertThat(actual.indexOf("cluster:area")).isLessThan(actual.indexOf("cluster:client"));
         Assertions.assertThat(actual.indexOf("neType:application")).isLessThan(actual.indexOf("cluster:application/group"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReportTheErrorsOfTheImportWithoutWritingInDryRun() throws Exception {
+        String csv = twoClientsCsv();
+        Set<String> before = graph(wNeo.getGraphDatabaseService());
+
+        Neo4jLoadResult dryRun = tested.loadFromStream(csv(csv), "test", CsvImportOptions.builder().dryRun(true).build());
+
+        Assertions.assertThat(graph(wNeo.getGraphDatabaseService())).isEqualTo(before);
+        Neo4jLoadResult imported = tested.loadFromStream(csv(csv), "test", CsvImportOptions.DEFAULT);
+        Assertions.assertThat(graph(wNeo.getGraphDatabaseService())).isNotEqualTo(before);
+        Assertions.assertThat(dryRun.errorLines).hasSize(2).isEqualTo(imported.errorLines);
+        Assertions.assertThat(dryRun.errorCount).isEqualTo(imported.errorCount);
+        Assertions.assertThat(dryRun.imported).isEqualTo(imported.imported);
+    }
+
+    @Test
+    public void shouldSeeTheElementsOfThePreviousLinesInDryRun() throws Exception {
+        String csv = "cluster:client.tag,cluster:client.id,cluster:site.tag,cluster:site.name,neType:cpe.tag,neType:cpe.name\n" +
+                line("class=cluster,client=1,cluster=client", "1", "class=cluster,cluster=site,site=Site_Dry", "Site_Dry",
+                        "class=neType,cpe=lo_dry,neType=cpe", "lo_dry") +
+                // Without its site, only imported because the previous line created it
+                line("class=cluster,client=1,cluster=client", "1", "", "", "class=neType,cpe=lo_dry,neType=cpe", "lo_dry_renamed");
+
+        Neo4jLoadResult dryRun = tested.loadFromStream(csv(csv), "test", CsvImportOptions.builder().dryRun(true).build());
+        Neo4jLoadResult imported = tested.loadFromStream(csv(csv), "test", CsvImportOptions.DEFAULT);
+
+        Assertions.assertThat(imported.errorLines).isEmpty();
+        Assertions.assertThat(dryRun.errorLines).isEmpty();
+        Assertions.assertThat(dryRun.imported).isEqualTo(imported.imported);
+    }
+
+    @Test
+    public void shouldWriteTheSameGraphWithScopeWriters() throws Throwable {
+        String csv = twoClientsCsv();
+        WithNeo4jImpermanentDatabase singleWriterNeo = new WithNeo4jImpermanentDatabase()
+                .withDatapacks("neo4j-test-database");
+        singleWriterNeo.before();
+        try {
+            Neo4jLoadResult singleWriter = new CsvTopologyLoader(singleWriterNeo.getGraphDatabaseService(), Mockito.mock(Log.class))
+                    .loadFromStream(csv(csv), "test", CsvImportOptions.DEFAULT);
+
+            Neo4jLoadResult partitioned = tested.loadFromStream(csv(csv), "test", CsvImportOptions.builder().scopeWriters(2).build());
+
+            Assertions.assertThat(partitioned.errorLines).hasSize(2).isEqualTo(singleWriter.errorLines);
+            Assertions.assertThat(partitioned.imported).isEqualTo(singleWriter.imported);
+            Assertions.assertThat(graph(wNeo.getGraphDatabaseService())).isEqualTo(graph(singleWriterNeo.getGraphDatabaseService()));
+        } finally {
+            singleWriterNeo.after();
+        }
+    }
+
+    /**
+     * New sites and cpes of the two clients of the test database, in alternance, and a cpe without site for each.
+     */
+    private static String twoClientsCsv() {
+        StringBuilder csv = new StringBuilder("cluster:client.tag,cluster:client.id,cluster:site.tag,cluster:site.name,neType:cpe.tag,neType:cpe.name\n");
+        for (int i = 0; i < 50; i++) {
+            csv.append(line("class=cluster,client=1,cluster=client", "1", "class=cluster,cluster=site,site=Site_New_" + i / 5, "Site_New_" + i / 5,
+                    "class=neType,cpe=lo_" + i + ",neType=cpe", "lo_" + i));
+            csv.append(line("class=cluster,client=boots,cluster=client", "boots", "class=cluster,client=boots,cluster=site,site=Site_New_" + i / 5,
+                    "SiteBT_New_" + i / 5, "class=neType,cpe=boots_" + i + ",neType=cpe", "boots_" + i));
+            if (i == 25) {
+                csv.append(line("class=cluster,client=1,cluster=client", "1", "", "", "class=neType,cpe=lo_orphan,neType=cpe", "lo_orphan"));
+                csv.append(line("class=cluster,client=boots,cluster=client", "boots", "", "", "class=neType,cpe=boots_orphan,neType=cpe", "boots_orphan"));
+            }
+        }
+        return csv.toString();
+    }
+
+    private static String line(String... values) {
+        return Arrays.stream(values).map(value -> '"' + value + '"').collect(Collectors.joining(",", "", "\n"));
+    }
+
+    private static ByteArrayInputStream csv(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the tags of the elements, with their outgoing relationships and the tag or name of their end.
+     */
+    private static Set<String> graph(GraphDatabaseService graphDb) {
+        try (Transaction tx = graphDb.beginTx()) {
+            return tx.execute("MATCH (element:NetworkElement) OPTIONAL MATCH (element)-[relationship]->(end) " +
+                            "RETURN element.tag + ' ' + coalesce(type(relationship) + ' ' + coalesce(end.tag, end.name), '') AS path")
+                    .stream()
+                    .map(row -> row.get("path").toString())
+                    .collect(Collectors.toSet());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.livingobjects.neo4j.rules.WithNeo4jImpermanentDatabase;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ImportCheckpointTest {
+
+    private static final ImmutableList<String> HEADER = ImmutableList.of("neType:cluster.tag", "neType:cluster.name");
+
+    @Rule
+    public WithNeo4jImpermanentDatabase wNeo = new WithNeo4jImpermanentDatabase()
+            .withDatapacks("neo4j-test-database");
+
+    @Test
+    public void should_keep_a_bounded_number_of_errors() {
+        Map<Integer, String> errors = Maps.newHashMap();
+        for (int line = 0; line < ImportCheckpoint.MAX_ERRORS + 10; line++) {
+            errors.put(line, "error " + line);
+        }
+
+        ImportCheckpoint checkpoint = ImportCheckpoint.of("upload", HEADER, 20_000, 5_000, errors.size(), 0, errors);
+
+        assertThat(checkpoint.errors).hasSize(ImportCheckpoint.MAX_ERRORS);
+        assertThat(checkpoint.errorCount).isEqualTo(ImportCheckpoint.MAX_ERRORS + 10);
+    }
+
+    @Test
+    public void should_bound_the_errors_kept_over_all_the_saves() {
+        Map<Integer, String> errors = Maps.newHashMap();
+        for (int line = 0; line < 10; line++) {
+            errors.put(line, "error " + line);
+        }
+
+        ImportCheckpoint checkpoint = ImportCheckpoint.of("upload", HEADER, 20_000, 5_000, 30_000, ImportCheckpoint.MAX_ERRORS - 4, errors);
+        ImportCheckpoint full = ImportCheckpoint.of("upload", HEADER, 20_000, 5_000, 30_000, ImportCheckpoint.MAX_ERRORS, errors);
+
+        assertThat(checkpoint.errors).hasSize(4);
+        assertThat(full.errors).isEmpty();
+        assertThat(full.errorCount).isEqualTo(30_000);
+    }
+
+    @Test
+    public void should_store_errors_without_message() {
+        Map<Integer, String> errors = Maps.newHashMap();
+        errors.put(3, null);
+
+        ImportCheckpoint checkpoint = ImportCheckpoint.of("upload", HEADER, 3, 3, 1, 0, errors);
+
+        assertThat(checkpoint.errors).containsEntry(3, "");
+    }
+
+    @Test
+    public void should_reject_upload_with_another_header() {
+        ImportCheckpoint checkpoint = ImportCheckpoint.of("upload", HEADER, 3, 4, 0, 0, Maps.newHashMap());
+
+        checkpoint.checkHeader(ImmutableList.copyOf(HEADER));
+        assertThatThrownBy(() -> checkpoint.checkHeader(ImmutableList.of("neType:cluster.tag")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("upload");
+    }
+
+    @Test
+    public void should_add_the_new_errors_to_the_saved_ones() {
+        ImportCheckpoint.of("upload", HEADER, 10, 8, 2, 0, ImmutableMap.of(3, "first", 7, "second")).save(wNeo.getGraphDatabaseService());
+        ImportCheckpoint.of("upload", HEADER, 20, 17, 3, 2, ImmutableMap.of(12, "third")).save(wNeo.getGraphDatabaseService());
+        ImportCheckpoint.of("upload", HEADER, 30, 27, 3, 3, ImmutableMap.of()).save(wNeo.getGraphDatabaseService());
+
+        ImportCheckpoint loaded = ImportCheckpoint.load(wNeo.getGraphDatabaseService(), "upload").orElseThrow(AssertionError::new);
+
+        assertThat(loaded.lastLine).isEqualTo(30);
+        assertThat(loaded.imported).isEqualTo(27);
+        assertThat(loaded.errorCount).isEqualTo(3);
+        assertThat(loaded.errors).containsExactly(entry(3, "first"), entry(7, "second"), entry(12, "third"));
+
+        ImportCheckpoint.delete(wNeo.getGraphDatabaseService(), "upload");
+        assertThat(ImportCheckpoint.load(wNeo.getGraphDatabaseService(), "upload")).isEmpty();
+    }
+}
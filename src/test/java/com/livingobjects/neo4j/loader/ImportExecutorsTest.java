@@ -0,0 +1,46 @@
+package com.livingobjects.neo4j.loader;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ImportExecutorsTest {
+
+    @Test
+    public void should_run_import_tasks_on_daemon_threads() throws Exception {
+        ImportExecutors tested = new ImportExecutors("daemon");
+
+        assertThat(tested.importThreads.submit(() -> Thread.currentThread().isDaemon()).get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(tested.parsers.submit(() -> Thread.currentThread().isDaemon()).get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(tested.validators.submit(() -> Thread.currentThread().isDaemon()).get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void should_reject_import_tasks_beyond_the_limit() throws Exception {
+        ImportExecutors tested = new ImportExecutors("bounded");
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?>[] running = new Future<?>[ImportExecutors.MAX_IMPORT_THREADS];
+        try {
+            for (int i = 0; i < running.length; i++) {
+                running[i] = tested.importThreads.submit(() -> {
+                    release.await();
+                    return null;
+                });
+            }
+
+            assertThatThrownBy(() -> tested.importThreads.submit(() -> {
+            })).isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            release.countDown();
+        }
+        for (Future<?> task : running) {
+            task.get(5, TimeUnit.SECONDS);
+        }
+    }
+}
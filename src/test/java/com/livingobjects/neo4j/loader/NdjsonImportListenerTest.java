@@ -0,0 +1,26 @@
+package com.livingobjects.neo4j.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.livingobjects.neo4j.model.result.Neo4jErrorResult;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NdjsonImportListenerTest {
+
+    @Test
+    public void should_end_the_stream_with_an_error_line() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NdjsonImportListener tested = new NdjsonImportListener(new ObjectMapper(), out)) {
+            tested.failed(3, "Missing column");
+            tested.error(new Neo4jErrorResult("java.lang.IllegalStateException", "Disk full"));
+        }
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"line\":3,\"error\":\"Missing column\"}\n" +
+                        "{\"error\":{\"code\":\"java.lang.IllegalStateException\",\"message\":\"Disk full\"}}\n");
+    }
+}
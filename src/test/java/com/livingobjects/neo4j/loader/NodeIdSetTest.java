@@ -0,0 +1,65 @@
+package com.livingobjects.neo4j.loader;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NodeIdSetTest {
+
+    @Test
+    public void should_add_each_id_once() {
+        NodeIdSet tested = new NodeIdSet();
+
+        assertThat(tested.add(42)).isTrue();
+        assertThat(tested.add(42)).isFalse();
+
+        assertThat(tested.size()).isEqualTo(1);
+        assertThat(tested.contains(42)).isTrue();
+        assertThat(tested.contains(43)).isFalse();
+    }
+
+    @Test
+    public void should_keep_insertion_order() {
+        NodeIdSet tested = new NodeIdSet();
+        long[] ids = {5_000_000_000L, 3, 4096, 4095, 0, 1L << 40};
+
+        for (long id : ids) {
+            tested.add(id);
+        }
+
+        assertThat(tested.size()).isEqualTo(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            assertThat(tested.get(i)).isEqualTo(ids[i]);
+            assertThat(tested.contains(ids[i])).isTrue();
+        }
+        assertThat(tested.contains(4097)).isFalse();
+    }
+
+    @Test
+    public void should_grow_beyond_initial_capacity() {
+        NodeIdSet tested = new NodeIdSet();
+
+        for (long id = 0; id < 100_000; id += 3) {
+            tested.add(id);
+        }
+
+        assertThat(tested.size()).isEqualTo(33_334);
+        assertThat(tested.get(tested.size() - 1)).isEqualTo(99_999);
+        assertThat(tested.contains(99_998)).isFalse();
+    }
+
+    @Test
+    public void should_find_scattered_ids() {
+        NodeIdSet tested = new NodeIdSet();
+
+        for (long id = 0; id < 10_000; id++) {
+            assertThat(tested.add(id << 32)).isTrue();
+        }
+
+        assertThat(tested.size()).isEqualTo(10_000);
+        for (long id = 0; id < 10_000; id++) {
+            assertThat(tested.contains(id << 32)).isTrue();
+            assertThat(tested.contains((id << 32) + 1)).isFalse();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.livingobjects.neo4j.loader;
+
+import com.google.common.collect.ImmutableList;
+import com.livingobjects.neo4j.model.result.ScopeAdmissionStatus;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScopeAdmissionTest {
+
+    @Test
+    public void should_admit_imports_of_distinct_scopes_together() throws Exception {
+        ScopeAdmission tested = new ScopeAdmission();
+
+        try (ScopeAdmission.Permit ignored = tested.admit(ImmutableList.of("client-a"))) {
+            CompletableFuture<ScopeAdmission.Permit> other = admitLater(tested, ImmutableList.of("client-b"));
+
+            other.get(5, TimeUnit.SECONDS).close();
+        }
+    }
+
+    @Test
+    public void should_queue_imports_of_the_same_scope() throws Exception {
+        ScopeAdmission tested = new ScopeAdmission();
+
+        CompletableFuture<ScopeAdmission.Permit> other;
+        try (ScopeAdmission.Permit ignored = tested.admit(ImmutableList.of("client-a", "client-b"))) {
+            other = admitLater(tested, ImmutableList.of("client-b"));
+            awaitWaiting(tested, "client-b");
+
+            assertThat(other).isNotDone();
+        }
+
+        other.get(5, TimeUnit.SECONDS).close();
+        assertThat(status(tested, "client-b").admitted).isEqualTo(2);
+        assertThat(status(tested, "client-b").running).isZero();
+    }
+
+    @Test
+    public void should_admit_imports_not_stating_scopes_at_once() throws Exception {
+        ScopeAdmission tested = new ScopeAdmission();
+
+        try (ScopeAdmission.Permit ignored = tested.admit(ImmutableList.of("client-a"))) {
+            admitLater(tested, ImmutableList.of()).get(5, TimeUnit.SECONDS).close();
+            try (ScopeAdmission.Permit unscoped = tested.admit(ImmutableList.of())) {
+                admitLater(tested, ImmutableList.of("client-b")).get(5, TimeUnit.SECONDS).close();
+                assertThat(status(tested, ScopeAdmission.ALL_SCOPES).running).isEqualTo(2);
+            }
+        }
+
+        assertThat(status(tested, ScopeAdmission.ALL_SCOPES).admitted).isEqualTo(4);
+        assertThat(status(tested, ScopeAdmission.ALL_SCOPES).running).isZero();
+    }
+
+    private static CompletableFuture<ScopeAdmission.Permit> admitLater(ScopeAdmission admission, ImmutableList<String> scopes) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return admission.admit(scopes);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void awaitWaiting(ScopeAdmission admission, String scope) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (status(admission, scope).waiting == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(status(admission, scope).waiting).isEqualTo(1);
+    }
+
+    private static ScopeAdmissionStatus status(ScopeAdmission admission, String scope) {
+        return admission.status().stream()
+                .filter(status -> status.scope.equals(scope))
+                .findFirst()
+                .orElseThrow();
+    }
+}
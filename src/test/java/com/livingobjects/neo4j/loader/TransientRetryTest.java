@@ -0,0 +1,41 @@
+package com.livingobjects.neo4j.loader;
+
+import org.junit.Test;
+import org.neo4j.kernel.DeadlockDetectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransientRetryTest {
+
+    @Test
+    public void should_classify_wrapped_deadlock_as_transient() {
+        assertThat(TransientRetry.isTransient(new IllegalStateException(new DeadlockDetectedException("deadlock")))).isTrue();
+        assertThat(TransientRetry.isTransient(new IllegalArgumentException("bad value"))).isFalse();
+    }
+
+    @Test
+    public void should_not_retry_data_errors() {
+        TransientRetry tested = new TransientRetry(10);
+
+        assertThat(tested.shouldRetry(new IllegalArgumentException("bad value"), 1)).isFalse();
+        assertThat(tested.retries()).isZero();
+    }
+
+    @Test
+    public void should_stop_retrying_after_max_attempts() {
+        TransientRetry tested = new TransientRetry(10);
+
+        assertThat(tested.shouldRetry(new DeadlockDetectedException("deadlock"), TransientRetry.MAX_ATTEMPTS)).isTrue();
+        assertThat(tested.shouldRetry(new DeadlockDetectedException("deadlock"), TransientRetry.MAX_ATTEMPTS + 1)).isFalse();
+    }
+
+    @Test
+    public void should_stop_retrying_once_budget_is_spent() {
+        TransientRetry tested = new TransientRetry(2);
+
+        assertThat(tested.shouldRetry(new DeadlockDetectedException("deadlock"), 1)).isTrue();
+        assertThat(tested.shouldRetry(new DeadlockDetectedException("deadlock"), 1)).isTrue();
+        assertThat(tested.shouldRetry(new DeadlockDetectedException("deadlock"), 1)).isFalse();
+        assertThat(tested.retries()).isEqualTo(2);
+    }
+}
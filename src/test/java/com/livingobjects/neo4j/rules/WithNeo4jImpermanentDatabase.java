@@ -126,6 +126,10 @@ public class WithNeo4jImpermanentDatabase extends ExternalResource {
         return db;
     }
 
+    public DatabaseManagementService getDatabaseManagementService() {
+        return databaseManagementService;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void before() throws Throwable {
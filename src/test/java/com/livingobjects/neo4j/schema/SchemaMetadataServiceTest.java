@@ -0,0 +1,69 @@
+package com.livingobjects.neo4j.schema;
+
+import com.livingobjects.neo4j.rules.WithNeo4jImpermanentDatabase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SchemaMetadataServiceTest {
+
+    @Rule
+    public WithNeo4jImpermanentDatabase wNeo = new WithNeo4jImpermanentDatabase()
+            .withDatapacks("neo4j-test-database");
+
+    @Test
+    public void should_rebuild_the_snapshot_once_the_schema_changes() throws Exception {
+        SchemaMetadataService tested = SchemaMetadataService.of(wNeo.getDatabaseManagementService(), wNeo.getGraphDatabaseService());
+        SchemaMetadata before = tested.get();
+        assertThat(before.metaSchema.keyAttributeExists("neType:probe")).isFalse();
+
+        execute("MATCH (client:Attribute {_type:'cluster', name:'client'}) " +
+                "CREATE (client)<-[:Parent {cardinality:'1..1'}]-(:Attribute {_type:'neType', name:'probe'})");
+
+        assertThat(tested.version()).isGreaterThan(before.version);
+        SchemaMetadata after = awaitRebuild(tested, before.version);
+        assertThat(after.metaSchema.keyAttributeExists("neType:probe")).isTrue();
+    }
+
+    @Test
+    public void should_keep_the_snapshot_when_only_elements_change() {
+        SchemaMetadataService tested = SchemaMetadataService.of(wNeo.getDatabaseManagementService(), wNeo.getGraphDatabaseService());
+        SchemaMetadata before = tested.get();
+
+        execute("CREATE (:Element:NetworkElement {tag:'class=neType,cpe=NEW,neType=cpe', _type:'neType:cpe'})");
+
+        assertThat(tested.version()).isEqualTo(before.version);
+        assertThat(tested.get()).isSameAs(before);
+    }
+
+    @Test
+    public void should_serve_the_current_instance_of_the_database() {
+        SchemaMetadataService tested = SchemaMetadataService.of(wNeo.getDatabaseManagementService(), wNeo.getGraphDatabaseService());
+
+        // Each test runs a new database under the same name, the service of the previous one must not be served
+        assertThat(SchemaMetadataService.of(wNeo.getDatabaseManagementService(), wNeo.getGraphDatabaseService())).isSameAs(tested);
+        assertThat(tested.get().metaSchema.keyAttributeExists("neType:cpe")).isTrue();
+    }
+
+    private void execute(String query) {
+        try (Transaction tx = wNeo.getGraphDatabaseService().beginTx()) {
+            tx.execute(query);
+            tx.commit();
+        }
+    }
+
+    private static SchemaMetadata awaitRebuild(SchemaMetadataService service, long previousVersion) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        SchemaMetadata current = service.get();
+        while (current.version <= previousVersion && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            current = service.get();
+        }
+        assertThat(current.version).isGreaterThan(previousVersion);
+        return current;
+    }
+}